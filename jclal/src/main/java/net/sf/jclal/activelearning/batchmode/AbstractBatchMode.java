@@ -15,8 +15,12 @@
  */
 package net.sf.jclal.activelearning.batchmode;
 
+import java.util.ArrayList;
+import java.util.List;
 import net.sf.jclal.core.IBatchMode;
 import net.sf.jclal.core.IConfigure;
+import net.sf.jclal.core.IQueryStrategy;
+import net.sf.jclal.util.sort.Container;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.ConfigurationRuntimeException;
 
@@ -56,6 +60,30 @@ public abstract class AbstractBatchMode implements IBatchMode, IConfigure {
         this.batchSize = batchSize;
     }
 
+    /**
+     * Select q instances from an array of utilities. By default the utilities
+     * are stored in Containers, whose values are the positions in the array,
+     * and the selection is made by the method that receives the list, so the
+     * batch modes that only implement that method still work.
+     *
+     * @param queryStrategy The query strategy used
+     * @param intanceUtilities Array that stores the utility of each candidate
+     * instance, the position i stores the utility of the i-th candidate
+     * @return A list that contains the positions of the selected instances in
+     * the array of utilities
+     */
+    @Override
+    public List<Integer> instancesSelection(IQueryStrategy queryStrategy, double[] intanceUtilities) {
+
+        List<Container> containers = new ArrayList<Container>(intanceUtilities.length);
+
+        for (int i = 0; i < intanceUtilities.length; i++) {
+            containers.add(new Container<Integer>(intanceUtilities[i], i));
+        }
+
+        return instancesSelection(queryStrategy, containers);
+    }
+
     /**
      *
      * @param configuration The configuration of Abstract Batch Mode.
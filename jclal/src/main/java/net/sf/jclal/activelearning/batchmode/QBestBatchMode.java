@@ -46,28 +46,50 @@ public class QBestBatchMode extends AbstractBatchMode {
 	private static final long serialVersionUID = 1L;
 
 	/**
-     * Order the instances and return according to the type of query strategy.
+     * Selects the best instances according to the type of query strategy. Only
+     * the batch size best instances are ordered, ties are broken in favour of
+     * the lower index.
      *
      * @param queryStrategy To analyze if the strategy is maximal or minimal
      * @param intanceUtilities The utility value for each unlabeled instance
      * @return The index of the select instances
      */
     @Override
-    public List<Integer> instancesSelection(IQueryStrategy queryStrategy, List<Container> intanceUtilities) {
+    public List<Integer> instancesSelection(IQueryStrategy queryStrategy, double[] intanceUtilities) {
 
-        OrderUtils.mergeSort(intanceUtilities, queryStrategy.isMaximal());
+        int[] best = OrderUtils.topK(intanceUtilities, getBatchSize(), queryStrategy.isMaximal());
 
-        List<Integer> selected = new ArrayList<Integer>();
+        List<Integer> selected = new ArrayList<Integer>(best.length);
+
+        for (int index : best) {
+            selected.add(index);
+        }
+
+        return selected;
+    }
+
+    /**
+     * Selects the best instances of a list of Containers, whose values are
+     * the indexes of the instances. The same instances than the method that
+     * receives an array are selected.
+     *
+     * @param queryStrategy To analyze if the strategy is maximal or minimal
+     * @param intanceUtilities The utility value for each unlabeled instance
+     * @return The index of the select instances
+     */
+    @Override
+    public List<Integer> instancesSelection(IQueryStrategy queryStrategy, List<Container> intanceUtilities) {
 
-        for (Container toOrder : intanceUtilities) {
+        double[] utilities = new double[intanceUtilities.size()];
 
-            if (selected.size() < getBatchSize()) {
+        for (int i = 0; i < utilities.length; i++) {
+            utilities[i] = intanceUtilities.get(i).getKey();
+        }
 
-                selected.add(Integer.parseInt(toOrder.getValue().toString()));
+        List<Integer> selected = new ArrayList<Integer>();
 
-            } else {
-                break;
-            }
+        for (int position : instancesSelection(queryStrategy, utilities)) {
+            selected.add(Integer.parseInt(intanceUtilities.get(position).getValue().toString()));
         }
 
         return selected;
@@ -93,6 +93,7 @@ public abstract class AbstractMultiLabelQueryStrategy extends
 
     @Override
     public void algorithmFinished() {
+        super.algorithmFinished();
 
         labelsMetaData = null;
         labelIndices = null;
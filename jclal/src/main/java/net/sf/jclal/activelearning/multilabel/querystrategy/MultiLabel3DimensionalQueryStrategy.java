@@ -86,8 +86,6 @@ public class MultiLabel3DimensionalQueryStrategy extends
      */
     private char weightDimension;
 
-    private MultiLabelLearnerBase classifier;
-
     /**
      * Empty constructor
      */
@@ -106,7 +104,7 @@ public class MultiLabel3DimensionalQueryStrategy extends
 
         try {
 
-            classifier = ((MulanClassifier) getClassifier()).getInternalClassifier();
+            MultiLabelLearnerBase classifier = ((MulanClassifier) getClassifier()).getInternalClassifier();
 
             // Evidence dimension
             MultiLabelOutput mloutput = classifier.makePrediction(instance);
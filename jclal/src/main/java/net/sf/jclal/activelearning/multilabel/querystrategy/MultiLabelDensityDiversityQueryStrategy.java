@@ -15,8 +15,10 @@
  */
 package net.sf.jclal.activelearning.multilabel.querystrategy;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import mulan.data.LabelsMetaData;
@@ -25,7 +27,13 @@ import net.sf.jclal.core.IConfigure;
 import net.sf.jclal.core.IDataset;
 import net.sf.jclal.core.IQueryStrategy;
 import net.sf.jclal.evaluation.measure.AbstractEvaluation;
+import net.sf.jclal.core.ISystem;
+import net.sf.jclal.core.ITool;
+import net.sf.jclal.util.distancefunction.AbstractDensityContainer;
 import net.sf.jclal.util.distancefunction.DistanceContainer;
+import net.sf.jclal.util.distancefunction.DistanceMatrixCache;
+import net.sf.jclal.util.distancefunction.LandmarkDistanceContainer;
+import net.sf.jclal.util.random.IRandGen;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.ConfigurationRuntimeException;
 import weka.core.Instance;
@@ -40,12 +48,12 @@ import weka.core.NormalizableDistance;
  * @author Eduardo Perez Perdomo
  *
  */
-public class MultiLabelDensityDiversityQueryStrategy extends AbstractMultiLabelQueryStrategy {
+public class MultiLabelDensityDiversityQueryStrategy extends AbstractMultiLabelQueryStrategy implements ITool {
 
     private static final long serialVersionUID = -7119231401618234126L;
 
     // It stores the similarity among instances
-    private DistanceContainer distanceValues;
+    private AbstractDensityContainer distanceValues;
 
     // Importance of density
     private double relativeImportanceOfDensity = 1;
@@ -60,6 +68,39 @@ public class MultiLabelDensityDiversityQueryStrategy extends AbstractMultiLabelQ
     //It stores whether the matrix used is stored over a file or the main memory
     private boolean matrixOverFile = false;
 
+    /**
+     * Whether the distances among the unlabeled instances are stored in
+     * single precision, in main memory or over the file.
+     */
+    private boolean floatMatrix = false;
+
+    /**
+     * The directory of the cache of distances, null if the distances are not
+     * cached.
+     */
+    private String distanceCache;
+
+    /**
+     * Whether the accumulative distances are estimated with landmarks instead
+     * of computing the distances among all the unlabeled instances.
+     */
+    private boolean approximateDensity = false;
+
+    /**
+     * Maximum number of landmarks of the approximate density.
+     */
+    private int landmarks = 256;
+
+    /**
+     * Bound of the relative error of the approximate density.
+     */
+    private double densityRelativeError = 0.05;
+
+    /**
+     * The random generator used to draw the landmarks.
+     */
+    private IRandGen randgen;
+
     /**
      * Empty(default) constructor.
      */
@@ -286,13 +327,27 @@ public class MultiLabelDensityDiversityQueryStrategy extends AbstractMultiLabelQ
     }
     
     /**
-     * Return how informative is an instance.
+     * Return how informative is an instance. It looks for the position of the
+     * instance in the unlabeled set, use {@link #utilityInstance(int)} when the
+     * position is known.
      *
      * @param instance Instance to test
      * @return The utility of the instance
      */
     @Override
     public double utilityInstance(Instance instance) {
+        return utilityInstance(getUnlabelledData().getDataset().indexOf(instance));
+    }
+
+    /**
+     * Return how informative is the unlabeled instance stored at the given
+     * position.
+     *
+     * @param indexOfInstance Index of the instance to test in the unlabeled set
+     * @return The utility of the instance
+     */
+    @Override
+    public double utilityInstance(int indexOfInstance) {
 
         Instances unlabelled = subQueryStrategy.getUnlabelledData().getDataset();
 
@@ -302,7 +357,7 @@ public class MultiLabelDensityDiversityQueryStrategy extends AbstractMultiLabelQ
         double step1;
 
         // standard values
-        step1 = subQueryStrategy.utilityInstance(instance);
+        step1 = subQueryStrategy.utilityInstance(indexOfInstance);
 
         //If the utility is equal to 0 then the rest of the process is unnecessary 
         if (step1 == 0) {
@@ -334,16 +389,29 @@ public class MultiLabelDensityDiversityQueryStrategy extends AbstractMultiLabelQ
         // unlabeled set are calculated
         if (distanceValues == null) {
             typeOfDistance.setInstances(unlabelled);
+
+            // the distances are computed in parallel only if it is enabled
+            ForkJoinPool pool = isParallelScoring() ? getScoringPool() : null;
+
             try {
-                distanceValues = new DistanceContainer(unlabelled, typeOfDistance, matrixOverFile);
+                if (approximateDensity) {
+                    distanceValues = new LandmarkDistanceContainer(unlabelled, typeOfDistance,
+                            landmarks, densityRelativeError, randgen,
+                            pool);
+                } else if (distanceCache != null) {
+                    distanceValues = new DistanceContainer(unlabelled, typeOfDistance,
+                            new DistanceMatrixCache(new File(distanceCache)), floatMatrix,
+                            pool);
+                } else {
+                    distanceValues = new DistanceContainer(unlabelled, typeOfDistance, matrixOverFile,
+                            floatMatrix, pool);
+                }
             } catch (Exception ex) {
                 Logger.getLogger(MultiLabelDensityDiversityQueryStrategy.class.getName()).log(Level.SEVERE, null, ex);
             }
         }
 
         // Step 2
-        int indexOfInstance = unlabelled.indexOf(instance);
-
         double step2 = distanceValues.getAcumulativeValue(indexOfInstance);
 
         // step2 is divided by U=numInstancesUnlabeled
@@ -436,6 +504,11 @@ public class MultiLabelDensityDiversityQueryStrategy extends AbstractMultiLabelQ
      * Class: EuclideanDistance || ManhattanDistance || MinkowskiDistance...</p>
      * </li>
      * <li>matrix-file= boolean</li>
+     * <li>float-matrix= boolean</li>
+     * <li>distance-cache= String, the directory of the cache of distances</li>
+     * <li>approximate-density= boolean</li>
+     * <li>landmarks= int</li>
+     * <li>density-relative-error= double</li>
      * <li>
      * <b>sub-query-strategy type= class</b>
      * <p>
@@ -529,6 +602,124 @@ public class MultiLabelDensityDiversityQueryStrategy extends AbstractMultiLabelQ
                 matrixOverFile);
 
         setMatrixOverFile(matrixFile);
+
+        //Set if the distances are stored in single precision
+        boolean currentFloatMatrix = configuration.getBoolean("float-matrix",
+                floatMatrix);
+
+        setFloatMatrix(currentFloatMatrix);
+
+        //Set the directory of the cache of distances
+        String currentCache = configuration.getString("distance-cache", distanceCache);
+
+        setDistanceCache(currentCache);
+
+        //Set if the density is estimated with landmarks
+        boolean approximate = configuration.getBoolean("approximate-density",
+                approximateDensity);
+
+        setApproximateDensity(approximate);
+
+        //Set the maximum number of landmarks
+        int currentLandmarks = configuration.getInt("landmarks", landmarks);
+
+        if (currentLandmarks < 1) {
+            throw new ConfigurationRuntimeException(
+                    "\nIllegal number of landmarks: <landmarks>" + currentLandmarks
+                    + "</landmarks>" + ". The number of landmarks > 0");
+        }
+
+        setLandmarks(currentLandmarks);
+
+        //Set the bound of the relative error of the density
+        double currentError = configuration.getDouble("density-relative-error",
+                densityRelativeError);
+
+        if (currentError <= 0) {
+            throw new ConfigurationRuntimeException(
+                    "\nIllegal density relative error: <density-relative-error>" + currentError
+                    + "</density-relative-error>" + ". The relative error > 0");
+        }
+
+        setDensityRelativeError(currentError);
+    }
+
+    /**
+     * Set whether the accumulative distances are estimated with a sample of
+     * landmark instances, it needs O(n * landmarks) memory instead of the
+     * distances among all the unlabeled instances. The exact distances are
+     * used by default.
+     *
+     * @param approximateDensity The flag
+     */
+    public void setApproximateDensity(boolean approximateDensity) {
+        this.approximateDensity = approximateDensity;
+    }
+
+    /**
+     * Get whether the accumulative distances are estimated with landmarks.
+     *
+     * @return The flag
+     */
+    public boolean isApproximateDensity() {
+        return approximateDensity;
+    }
+
+    /**
+     * Set the maximum number of landmarks of the approximate density.
+     *
+     * @param landmarks The maximum number of landmarks
+     */
+    public void setLandmarks(int landmarks) {
+        this.landmarks = landmarks;
+    }
+
+    /**
+     * Get the maximum number of landmarks of the approximate density.
+     *
+     * @return The maximum number of landmarks
+     */
+    public int getLandmarks() {
+        return landmarks;
+    }
+
+    /**
+     * Set the bound of the relative error of the approximate density. The
+     * landmarks are increased, up to the maximum, until the estimated error
+     * of the accumulative distances is below the bound.
+     *
+     * @param densityRelativeError The bound of the relative error
+     */
+    public void setDensityRelativeError(double densityRelativeError) {
+        this.densityRelativeError = densityRelativeError;
+    }
+
+    /**
+     * Get the bound of the relative error of the approximate density.
+     *
+     * @return The bound of the relative error
+     */
+    public double getDensityRelativeError() {
+        return densityRelativeError;
+    }
+
+    /**
+     * Contextualize the random generator of the landmarks. The generator is
+     * only created if the density is approximated, so the random generators
+     * of the rest of the experiment do not change.
+     *
+     * @param context The context to use.
+     */
+    @Override
+    public void contextualize(ISystem context) {
+
+        if (approximateDensity) {
+            randgen = context.createRandGen();
+        }
+
+        if (subQueryStrategy instanceof ITool) {
+            ((ITool) subQueryStrategy).contextualize(context);
+        }
     }
     
      /**
@@ -547,6 +738,47 @@ public class MultiLabelDensityDiversityQueryStrategy extends AbstractMultiLabelQ
     public boolean isMatrixOverFile() {
         return matrixOverFile;
     }
+
+    /**
+     * Set whether the distances are stored in single precision. It halves
+     * the memory or the size of the file, the accumulative distances are
+     * still summed in double precision.
+     *
+     * @param floatMatrix Flag which indicates whether the distances are stored as floats
+     */
+    public void setFloatMatrix(boolean floatMatrix) {
+        this.floatMatrix = floatMatrix;
+    }
+
+    /**
+     * Get whether the distances are stored in single precision.
+     *
+     * @return Whether the distances are stored as floats
+     */
+    public boolean isFloatMatrix() {
+        return floatMatrix;
+    }
+
+    /**
+     * Set the directory of the cache of distances. The distances among the
+     * unlabeled instances are stored over a file of the directory, and they
+     * are reused by the runs with the same unlabeled set and the same
+     * distance function.
+     *
+     * @param distanceCache The directory, null to not cache the distances
+     */
+    public void setDistanceCache(String distanceCache) {
+        this.distanceCache = distanceCache;
+    }
+
+    /**
+     * Get the directory of the cache of distances.
+     *
+     * @return The directory, null if the distances are not cached
+     */
+    public String getDistanceCache() {
+        return distanceCache;
+    }
     
      /**
      * Free the memory
@@ -559,4 +791,15 @@ public class MultiLabelDensityDiversityQueryStrategy extends AbstractMultiLabelQ
             distanceValues.destroy();
         }
     }
+
+    /**
+     * The distance container is built in the first call, so the pool is scored
+     * sequentially.
+     *
+     * @return false
+     */
+    @Override
+    protected boolean supportsParallelScoring() {
+        return false;
+    }
 }
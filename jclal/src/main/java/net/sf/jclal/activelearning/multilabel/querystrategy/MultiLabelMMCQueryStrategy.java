@@ -268,4 +268,14 @@ public class MultiLabelMMCQueryStrategy extends AbstractMultiLabelQueryStrategy
         return 0;
     }
 
+    /**
+     * The outputs of the binary classifiers are stored in a shared array while
+     * an instance is converted, so the pool is scored sequentially.
+     *
+     * @return false
+     */
+    @Override
+    protected boolean supportsParallelScoring() {
+        return false;
+    }
 }
@@ -17,6 +17,10 @@ package net.sf.jclal.activelearning.querystrategy;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import net.sf.jclal.activelearning.scenario.PoolBasedSamplingScenario;
@@ -25,7 +29,6 @@ import net.sf.jclal.core.IConfigure;
 import net.sf.jclal.core.IDataset;
 import net.sf.jclal.core.IQueryStrategy;
 import net.sf.jclal.evaluation.measure.AbstractEvaluation;
-import net.sf.jclal.util.sort.Container;
 import net.sf.jclal.util.sort.OrderUtils;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.ConfigurationRuntimeException;
@@ -82,6 +85,35 @@ public abstract class AbstractQueryStrategy implements IQueryStrategy,
      */
     private ArrayList<Integer> selectedInstances;
 
+    /**
+     * Indicates whether the unlabeled pool is scored in parallel. By default
+     * the pool is scored sequentially.
+     */
+    private boolean parallelScoring = false;
+
+    /**
+     * Number of worker threads used to score the unlabeled pool. A value lower
+     * than 1 means the number of available processors.
+     */
+    private int scoringThreads = 0;
+
+    /**
+     * Minimum number of instances scored by a single fork-join task.
+     */
+    private static final int MIN_SCORING_CHUNK = 64;
+
+    /**
+     * Pool used to score the unlabeled data in parallel. It is created on
+     * demand and shut down when the algorithm finishes.
+     */
+    private transient ForkJoinPool scoringPool;
+
+    /**
+     * Copy of the classifier owned by the current scoring worker, Weka
+     * classifiers are not thread-safe.
+     */
+    private transient ThreadLocal<IClassifier> workerClassifier;
+
     /**
      *Get the selected instances
      * 
@@ -140,6 +172,16 @@ public abstract class AbstractQueryStrategy implements IQueryStrategy,
      */
     @Override
     public IClassifier getClassifier() {
+
+        // Inside a scoring worker, each thread uses its own copy of the model
+        if (workerClassifier != null) {
+            IClassifier local = workerClassifier.get();
+
+            if (local != null) {
+                return local;
+            }
+        }
+
         return classifier;
     }
 
@@ -262,7 +304,11 @@ public abstract class AbstractQueryStrategy implements IQueryStrategy,
     }
 
     /**
-     * Function that returns the utility of each unlabeled instance.
+     * Function that returns the utility of each unlabeled instance. If the
+     * parallel scoring is enabled and supported by the query strategy, the
+     * unlabeled pool is split into chunks that are scored on a fork-join pool.
+     * The returned values are the same in both cases. If a chunk fails, the
+     * whole pool is scored again sequentially, so no utility is left at 0.
      *
      * @return A array that stores the utility of each unlabeled instance
      */
@@ -272,17 +318,269 @@ public abstract class AbstractQueryStrategy implements IQueryStrategy,
         // found values of all unlabeled instances
         double[] values = new double[getUnlabelledData().getNumInstances()];
 
-        int pos = 0;
+        if (parallelScoring && supportsParallelScoring()
+                && values.length > MIN_SCORING_CHUNK) {
+
+            try {
+
+                scoreParallel(null, values);
 
-        Instances unlabeledInstances = getUnlabelledData().getDataset();
+                return values;
 
-        for (Instance instance : unlabeledInstances) {
-            values[pos++] = utilityInstance(instance);
+            } catch (RuntimeException e) {
+                Logger.getLogger(AbstractQueryStrategy.class.getName()).log(
+                        Level.SEVERE, null, e);
+            }
         }
 
+        utilityInstances(0, values.length, values);
+
         return values;
     }
 
+    /**
+     * Computes the utilities of the unlabeled instances stored at the given
+     * positions, e.g. a subset of candidates of the pool. The same parallel
+     * scoring than testUnlabeledData is used, and each chunk is scored with
+     * utilityInstances(int[], int, int, double[]).
+     *
+     * @param indexes The indexes of the instances in the unlabeled set
+     * @param values The array where the utility of the instance indexes[i] is
+     * stored in the position i
+     */
+    @Override
+    public void utilityInstances(int[] indexes, double[] values) {
+
+        if (parallelScoring && supportsParallelScoring()
+                && indexes.length > MIN_SCORING_CHUNK) {
+
+            try {
+
+                scoreParallel(indexes, values);
+
+                return;
+
+            } catch (RuntimeException e) {
+                Logger.getLogger(AbstractQueryStrategy.class.getName()).log(
+                        Level.SEVERE, null, e);
+            }
+        }
+
+        utilityInstances(indexes, 0, indexes.length, values);
+    }
+
+    /**
+     * Computes the utilities of the instances stored at the positions from
+     * (inclusive) to (exclusive) of the array of indexes. By default the
+     * instances are scored one by one, the query strategies that score blocks
+     * of instances override it.
+     *
+     * @param indexes The indexes of the instances in the unlabeled set
+     * @param from The first position of the array of indexes, inclusive
+     * @param to The last position of the array of indexes, exclusive
+     * @param values The array where the utility of the instance indexes[i] is
+     * stored in the position i
+     */
+    protected void utilityInstances(int[] indexes, int from, int to, double[] values) {
+
+        for (int i = from; i < to; i++) {
+            values[i] = utilityInstance(indexes[i]);
+        }
+    }
+
+    /**
+     * Scores the unlabeled instances on the fork-join pool. Every worker
+     * borrows a copy of the current classifier, so the copies made are bounded
+     * by the number of threads and not by the number of chunks.
+     *
+     * @param indexes The indexes of the instances to score, null to score the
+     * whole pool
+     * @param values The array where the utilities are stored
+     */
+    private void scoreParallel(int[] indexes, double[] values) {
+
+        ForkJoinPool pool = getScoringPool();
+
+        if (workerClassifier == null) {
+            workerClassifier = new ThreadLocal<IClassifier>();
+        }
+
+        int chunk = Math.max(MIN_SCORING_CHUNK, values.length
+                / (pool.getParallelism() * 8));
+
+        pool.invoke(new ScoringTask(indexes, values, 0, values.length, chunk,
+                new ConcurrentLinkedQueue<IClassifier>()));
+    }
+
+    /**
+     * Returns the fork-join pool used to score the unlabeled instances. The
+     * pool is created in the first call with the configured number of threads
+     * and it is shut down when the algorithm finishes.
+     *
+     * @return The scoring pool
+     */
+    protected ForkJoinPool getScoringPool() {
+
+        if (scoringPool == null) {
+            scoringPool = new ForkJoinPool(getScoringThreads());
+        }
+
+        return scoringPool;
+    }
+
+    /**
+     * Fork-join task that scores a range of the unlabeled pool, or a range of
+     * an array of indexes of the pool.
+     */
+    private class ScoringTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] indexes;
+
+        private final double[] values;
+
+        private final int from;
+
+        private final int to;
+
+        private final int chunk;
+
+        private final Queue<IClassifier> copies;
+
+        ScoringTask(int[] indexes, double[] values, int from, int to, int chunk,
+                Queue<IClassifier> copies) {
+            this.indexes = indexes;
+            this.values = values;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+            this.copies = copies;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from > chunk) {
+
+                int middle = (from + to) >>> 1;
+
+                invokeAll(new ScoringTask(indexes, values, from, middle, chunk, copies),
+                        new ScoringTask(indexes, values, middle, to, chunk, copies));
+                return;
+            }
+
+            IClassifier copy = copies.poll();
+
+            try {
+
+                if (copy == null) {
+                    copy = classifier.makeCopy();
+                }
+
+                workerClassifier.set(copy);
+
+                if (indexes == null) {
+                    utilityInstances(from, to, values);
+                } else {
+                    utilityInstances(indexes, from, to, values);
+                }
+
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            } finally {
+                // The calling thread can also execute tasks, it must not keep the copy
+                workerClassifier.remove();
+
+                if (copy != null) {
+                    copies.offer(copy);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the utility of the unlabeled instance stored at the given
+     * position. By default it delegates to the instance based method, the
+     * query strategies that need the position of the instance override it.
+     *
+     * @param instanceIndex The index of the instance in the unlabeled set
+     * @return The utility of the instance
+     */
+    @Override
+    public double utilityInstance(int instanceIndex) {
+        return utilityInstance(getUnlabelledData().instance(instanceIndex));
+    }
+
+    /**
+     * Computes the utilities of the unlabeled instances stored between the
+     * given positions.
+     *
+     * @param from The index of the first instance, inclusive
+     * @param to The index of the last instance, exclusive
+     * @param values The array where the utilities are stored
+     */
+    @Override
+    public void utilityInstances(int from, int to, double[] values) {
+
+        for (int i = from; i < to; i++) {
+            values[i] = utilityInstance(i);
+        }
+    }
+
+    /**
+     * Whether the query strategy can score several unlabeled instances at the
+     * same time. The query strategies that keep a shared state while the
+     * utilities are computed must return false.
+     *
+     * @return True if the utilities can be computed in parallel
+     */
+    protected boolean supportsParallelScoring() {
+        return true;
+    }
+
+    /**
+     * Sets whether the unlabeled pool is scored in parallel.
+     *
+     * @param parallelScoring The flag
+     */
+    public void setParallelScoring(boolean parallelScoring) {
+        this.parallelScoring = parallelScoring;
+    }
+
+    /**
+     * Gets whether the unlabeled pool is scored in parallel.
+     *
+     * @return The flag
+     */
+    public boolean isParallelScoring() {
+        return parallelScoring;
+    }
+
+    /**
+     * Sets the number of threads used to score the unlabeled pool.
+     *
+     * @param scoringThreads The number of threads, a value lower than 1 means
+     * the number of available processors
+     */
+    public void setScoringThreads(int scoringThreads) {
+        this.scoringThreads = scoringThreads;
+    }
+
+    /**
+     * Gets the number of threads used to score the unlabeled pool.
+     *
+     * @return The number of threads
+     */
+    public int getScoringThreads() {
+
+        if (scoringThreads < 1) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+
+        return scoringThreads;
+    }
+
     /**
      * Set the test data.
      * @param testData The instances to prove the effectiveness of the model
@@ -311,7 +609,7 @@ public abstract class AbstractQueryStrategy implements IQueryStrategy,
     public double[] distributionForInstance(Instance instance) {
         try {
 
-            return classifier.distributionForInstance(instance);
+            return getClassifier().distributionForInstance(instance);
 
         } catch (Exception ex) {
             Logger.getLogger(AbstractQueryStrategy.class.getName()).log(
@@ -321,6 +619,44 @@ public abstract class AbstractQueryStrategy implements IQueryStrategy,
         return null;
     }
 
+    /**
+     * Returns the probabilities of the unlabeled instances stored between the
+     * given positions, with a single call to the classifier.
+     *
+     * @param from The index of the first instance, inclusive
+     * @param to The index of the last instance, exclusive
+     * @return The probability for each class of each instance
+     */
+    public double[][] distributionsForInstances(int from, int to) {
+
+        return getClassifier().distributionsForInstances(
+                getUnlabelledData().getDataset(), from, to);
+    }
+
+    /**
+     * Returns the probabilities of the unlabeled instances stored at the
+     * positions from (inclusive) to (exclusive) of an array of indexes, with a
+     * single call to the classifier. The instances are copied to a block, so
+     * the classifier predicts the whole block without copying it again.
+     *
+     * @param indexes The indexes of the instances in the unlabeled set
+     * @param from The first position of the array of indexes, inclusive
+     * @param to The last position of the array of indexes, exclusive
+     * @return The probability for each class of each instance
+     */
+    public double[][] distributionsForInstances(int[] indexes, int from, int to) {
+
+        Instances unlabeled = getUnlabelledData().getDataset();
+
+        Instances block = new Instances(unlabeled, to - from);
+
+        for (int i = from; i < to; i++) {
+            block.add(unlabeled.instance(indexes[i]));
+        }
+
+        return getClassifier().distributionsForInstances(block, 0, block.numInstances());
+    }
+
     /**
      *
      * @param configuration The configuration object for the Abstract query
@@ -331,6 +667,12 @@ public abstract class AbstractQueryStrategy implements IQueryStrategy,
      * <b>maximal= boolean</b>
      * </li>
      * <li>
+     * <b>parallel-scoring= boolean</b>
+     * </li>
+     * <li>
+     * <b>scoring-threads= int</b>
+     * </li>
+     * <li>
      * <b>wrapper-classifier type= class</b>
      * <p>
      * Package: net.sf.jclal.classifier</p>
@@ -347,6 +689,14 @@ public abstract class AbstractQueryStrategy implements IQueryStrategy,
         boolean maximalT = configuration.getBoolean("maximal", isMaximal());
         setMaximal(maximalT);
 
+        // Set the parallel scoring of the unlabeled pool
+        boolean parallelT = configuration.getBoolean("parallel-scoring",
+                parallelScoring);
+        setParallelScoring(parallelT);
+
+        int threadsT = configuration.getInt("scoring-threads", scoringThreads);
+        setScoringThreads(threadsT);
+
         String wrapperError = "wrapper-classifier type= ";
         try {
             // classifier classname
@@ -394,21 +744,22 @@ public abstract class AbstractQueryStrategy implements IQueryStrategy,
     @Override
     public void updateLabeledData() {
 
-        ArrayList<Container> ordered = new ArrayList<Container>();
+        int[] ordered = new int[selectedInstances.size()];
+        int pos = 0;
 
         //Adds the instances to labeled set
         for (int index : selectedInstances) {
             labelledData.add(unlabelledData.instance(index));
-            ordered.add(new Container(index, index));
+            ordered[pos++] = index;
         }
 
         //To order the array in descendent order
-        OrderUtils.mergeSort(ordered, true);
+        OrderUtils.sort(ordered, true);
 
         //Removes the instances from unlabeled set. The deleting operation must be in descendent order
-        for (Container pairValue : ordered) {
+        for (int index : ordered) {
 
-            unlabelledData.remove(Integer.parseInt(pairValue.getValue().toString()));
+            unlabelledData.remove(index);
         }
 
         //Clears the indexes of selected instances
@@ -418,6 +769,11 @@ public abstract class AbstractQueryStrategy implements IQueryStrategy,
 
     @Override
     public void algorithmFinished() {
+
+        if (scoringPool != null) {
+            scoringPool.shutdown();
+            scoringPool = null;
+        }
     }
 
 }
@@ -15,10 +15,7 @@
  */
 package net.sf.jclal.activelearning.scenario;
 
-import java.util.ArrayList;
-import java.util.List;
 import net.sf.jclal.activelearning.querystrategy.AbstractQueryStrategy;
-import net.sf.jclal.util.sort.Container;
 
 /**
  * Implementation of Pool-Based Sampling scenario.
@@ -47,17 +44,7 @@ public class PoolBasedSamplingScenario extends AbstractScenario {
         // found values of all unlabeled instances
         values = getQueryStrategy().testUnlabeledData();
 
-        int unlabeledSize = getQueryStrategy().getUnlabelledData().getNumInstances();
-
-        List<Container> seleccion = new ArrayList<Container>(unlabeledSize);
-
-        for (int i = 0; i < unlabeledSize; i++) {
-
-            seleccion.add(new Container(values[i], i));
-
-        }
-
-        ((AbstractQueryStrategy) getQueryStrategy()).getSelectedInstances().addAll(getBatchMode().instancesSelection(getQueryStrategy(), seleccion));
+        ((AbstractQueryStrategy) getQueryStrategy()).getSelectedInstances().addAll(getBatchMode().instancesSelection(getQueryStrategy(), values));
     }
 
 }
\ No newline at end of file
@@ -15,13 +15,10 @@
  */
 package net.sf.jclal.activelearning.scenario;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 import net.sf.jclal.activelearning.batchmode.AbstractBatchMode;
 import net.sf.jclal.activelearning.querystrategy.AbstractQueryStrategy;
-import net.sf.jclal.util.sort.Container;
 import org.apache.commons.configuration.Configuration;
-import weka.core.Instance;
 import weka.core.Instances;
 
 /**
@@ -77,26 +74,32 @@ public class StreamBasedSelectiveSamplingScenario extends AbstractScenario {
 
         Instances unlabelled = getQueryStrategy().getUnlabelledData().getDataset();
 
-        List<Container> selection = new ArrayList<Container>();
+        int batchSize = ((AbstractBatchMode) getBatchMode()).getBatchSize();
 
-        for (int i = 0; i < unlabelled.numInstances(); i++) {
+        // utilities and indexes of the instances that exceed the threshold
+        double[] utilities = new double[batchSize];
+        int[] indexes = new int[batchSize];
+        int size = 0;
 
-            Instance in = unlabelled.instance(i);
+        for (int i = 0; i < unlabelled.numInstances(); i++) {
 
-            double test = getQueryStrategy().utilityInstance(in);
+            double test = getQueryStrategy().utilityInstance(i);
 
-            if (getQueryStrategy().isMaximal() && test >= threshold) {
-                selection.add(new Container(test, i));
-            } else if (!getQueryStrategy().isMaximal() && test <= threshold) {
-                selection.add(new Container(test, i));
+            if ((getQueryStrategy().isMaximal() && test >= threshold)
+                    || (!getQueryStrategy().isMaximal() && test <= threshold)) {
+                utilities[size] = test;
+                indexes[size++] = i;
             }
 
-            if (selection.size() == ((AbstractBatchMode) getBatchMode()).getBatchSize()) {
+            if (size == batchSize) {
                 break;
             }
         }
 
-        ((AbstractQueryStrategy) getQueryStrategy()).getSelectedInstances().addAll(getBatchMode().instancesSelection(getQueryStrategy(), selection));
+        // the batch mode returns positions in the array of utilities
+        for (int position : getBatchMode().instancesSelection(getQueryStrategy(), Arrays.copyOf(utilities, size))) {
+            ((AbstractQueryStrategy) getQueryStrategy()).getSelectedInstances().add(indexes[position]);
+        }
     }
 
     /**
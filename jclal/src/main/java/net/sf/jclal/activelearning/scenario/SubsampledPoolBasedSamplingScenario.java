@@ -0,0 +1,288 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package net.sf.jclal.activelearning.scenario;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import net.sf.jclal.activelearning.querystrategy.AbstractQueryStrategy;
+import net.sf.jclal.core.IQueryStrategy;
+import net.sf.jclal.core.ISystem;
+import net.sf.jclal.core.ITool;
+import net.sf.jclal.util.random.IRandGen;
+import net.sf.jclal.util.sort.OrderUtils;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConfigurationRuntimeException;
+import weka.core.Utils;
+
+/**
+ * Implementation of Pool-Based Sampling scenario that only analyzes a random
+ * subset of the <b>pool</b> in each iteration. It bounds the cost of each
+ * iteration regardless of the size of the unlabeled set.
+ *
+ * The candidates are drawn with the random generator of the experiment. If the
+ * subset is stratified, the same number of candidates is drawn for each class
+ * predicted by the current model, so that the instances of the minority
+ * predicted classes are also analyzed.
+ *
+ * @author Oscar Gabriel Reyes Pupo
+ * @author Eduardo Perez Perdomo
+ *
+ */
+public class SubsampledPoolBasedSamplingScenario extends PoolBasedSamplingScenario implements ITool {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * In the stratified subset, maximum number of instances drawn per
+     * candidate before the remaining positions are filled with the rejected
+     * instances.
+     */
+    private static final int STRATIFIED_DRAWS_FACTOR = 10;
+
+    /**
+     * Number of unlabeled instances analyzed in each iteration. A value lower
+     * than 1 means the whole pool.
+     */
+    private int candidateSize = 0;
+
+    /**
+     * Whether the candidates are stratified by the predicted class.
+     */
+    private boolean stratified = false;
+
+    /**
+     * The random numbers generator.
+     */
+    private IRandGen randgen;
+
+    /**
+     * Selects the most informative instances of a random subset of the
+     * <b>pool</b> according to the scenario, the query strategy and the batch
+     * mode. Stores the selected indexes of the instances in the query
+     * strategy.
+     */
+    @Override
+    public void instancesSelection() {
+
+        int unlabeledSize = getQueryStrategy().getUnlabelledData().getNumInstances();
+
+        if (candidateSize < 1 || candidateSize >= unlabeledSize) {
+            super.instancesSelection();
+            return;
+        }
+
+        int[] candidates = stratified ? stratifiedCandidates(unlabeledSize)
+                : randomCandidates(unlabeledSize);
+
+        // the candidates are analyzed in the order of the pool
+        OrderUtils.sort(candidates, false);
+
+        double[] values = new double[candidates.length];
+
+        getQueryStrategy().utilityInstances(candidates, values);
+
+        // the batch mode returns positions in the array of candidates
+        for (int position : getBatchMode().instancesSelection(getQueryStrategy(), values)) {
+            ((AbstractQueryStrategy) getQueryStrategy()).getSelectedInstances().add(candidates[position]);
+        }
+    }
+
+    /**
+     * Draws the candidates uniformly without replacement by means of a partial
+     * Fisher-Yates shuffle. O(candidateSize), see SparseShuffle.
+     *
+     * @param unlabeledSize The size of the pool
+     * @return The indexes of the candidates
+     */
+    private int[] randomCandidates(int unlabeledSize) {
+
+        SparseShuffle indexes = new SparseShuffle();
+
+        int[] candidates = new int[candidateSize];
+
+        for (int i = 0; i < candidateSize; i++) {
+            candidates[i] = indexes.swap(i, randgen.choose(i, unlabeledSize));
+        }
+
+        return candidates;
+    }
+
+    /**
+     * Draws the candidates without replacement giving the same quota to each
+     * predicted class. The instances are drawn in random order until every
+     * quota is filled. If the quotas cannot be filled with a bounded number of
+     * draws, the remaining positions are filled with the rejected instances
+     * in the order that they were drawn.
+     *
+     * @param unlabeledSize The size of the pool
+     * @return The indexes of the candidates
+     */
+    private int[] stratifiedCandidates(int unlabeledSize) {
+
+        IQueryStrategy queryStrategy = getQueryStrategy();
+
+        SparseShuffle indexes = new SparseShuffle();
+
+        int[] candidates = new int[candidateSize];
+        int selected = 0;
+
+        int[] rejected = new int[candidateSize];
+        int numRejected = 0;
+
+        int[] quota = null;
+
+        int maxDraws = (int) Math.min(unlabeledSize, (long) candidateSize * STRATIFIED_DRAWS_FACTOR);
+
+        for (int drawn = 0; drawn < maxDraws && selected < candidateSize; drawn++) {
+
+            int index = indexes.swap(drawn, randgen.choose(drawn, unlabeledSize));
+
+            double[] distribution = queryStrategy.distributionForInstance(
+                    queryStrategy.getUnlabelledData().instance(index));
+
+            if (quota == null) {
+                quota = new int[distribution.length];
+                Arrays.fill(quota, (candidateSize + distribution.length - 1) / distribution.length);
+            }
+
+            int predicted = Utils.maxIndex(distribution);
+
+            if (quota[predicted] > 0) {
+                --quota[predicted];
+                candidates[selected++] = index;
+            } else if (numRejected < candidateSize) {
+                rejected[numRejected++] = index;
+            }
+        }
+
+        int fill = Math.min(candidateSize - selected, numRejected);
+
+        System.arraycopy(rejected, 0, candidates, selected, fill);
+
+        return Arrays.copyOf(candidates, selected + fill);
+    }
+
+    /**
+     * The array of indexes of a Fisher-Yates shuffle of the pool, where only
+     * the swapped positions are stored. The position i holds the index i
+     * until it is swapped, so the cost of a draw does not depend on the size
+     * of the pool.
+     */
+    private static class SparseShuffle {
+
+        private final Map<Integer, Integer> swapped = new HashMap<Integer, Integer>();
+
+        private int get(int position) {
+
+            Integer index = swapped.get(position);
+
+            return index == null ? position : index;
+        }
+
+        /**
+         * Swaps two positions and returns the index stored at the first one.
+         */
+        int swap(int i, int j) {
+
+            int indexI = get(i);
+            int indexJ = get(j);
+
+            swapped.put(i, indexJ);
+            swapped.put(j, indexI);
+
+            return indexJ;
+        }
+    }
+
+    /**
+     * Get the number of unlabeled instances analyzed in each iteration.
+     *
+     * @return The number of candidates
+     */
+    public int getCandidateSize() {
+        return candidateSize;
+    }
+
+    /**
+     * Set the number of unlabeled instances analyzed in each iteration.
+     *
+     * @param candidateSize The number of candidates, a value lower than 1
+     * means the whole pool
+     */
+    public void setCandidateSize(int candidateSize) {
+        this.candidateSize = candidateSize;
+    }
+
+    /**
+     * Get whether the candidates are stratified by the predicted class.
+     *
+     * @return The flag
+     */
+    public boolean isStratified() {
+        return stratified;
+    }
+
+    /**
+     * Set whether the candidates are stratified by the predicted class.
+     *
+     * @param stratified The flag
+     */
+    public void setStratified(boolean stratified) {
+        this.stratified = stratified;
+    }
+
+    /**
+     * Contextualize the random generator.
+     *
+     * @param context The context to use.
+     */
+    @Override
+    public void contextualize(ISystem context) {
+        randgen = context.createRandGen();
+    }
+
+    /**
+     *
+     * @param configuration The configuration of the subsampled pool scenario.
+     * The XML labels supported are:
+     * <ul>
+     * <li><b>candidate-size= int</b></li>
+     * <li><b>stratified= boolean</b></li>
+     * </ul>
+     */
+    @Override
+    public void configure(Configuration configuration) {
+
+        super.configure(configuration);
+
+        // Set the number of candidates
+        int candidateT = configuration.getInt("candidate-size", candidateSize);
+
+        if (candidateT < 0) {
+            throw new ConfigurationRuntimeException(
+                    "\nIllegal candidate size: <candidate-size>" + candidateT + "</candidate-size>"
+                    + ". Candidate size >= 0");
+        }
+
+        setCandidateSize(candidateT);
+
+        // Set the stratification by the predicted class
+        boolean stratifiedT = configuration.getBoolean("stratified", stratified);
+
+        setStratified(stratifiedT);
+    }
+}
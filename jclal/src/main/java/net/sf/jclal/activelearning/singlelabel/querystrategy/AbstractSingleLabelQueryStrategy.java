@@ -31,6 +31,7 @@ public abstract class AbstractSingleLabelQueryStrategy extends
      */
     @Override
     public void algorithmFinished() {
+        super.algorithmFinished();
     }
 
 }
@@ -0,0 +1,527 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package net.sf.jclal.activelearning.singlelabel.querystrategy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import net.sf.jclal.activelearning.querystrategy.AbstractQueryStrategy;
+import net.sf.jclal.core.IClassifier;
+import net.sf.jclal.core.IConfigure;
+import net.sf.jclal.core.IDataset;
+import net.sf.jclal.core.IQueryStrategy;
+import net.sf.jclal.core.ISystem;
+import net.sf.jclal.core.ITool;
+import net.sf.jclal.evaluation.measure.AbstractEvaluation;
+import net.sf.jclal.util.sort.OrderUtils;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConfigurationRuntimeException;
+import weka.core.Instance;
+
+/**
+ * Implementation of a two-stage cascade query strategy.
+ *
+ * The unlabeled set is ranked with a cheap prefilter query strategy (e.g.
+ * Entropy or Margin sampling) and only the best candidates are rescored with
+ * an expensive sub-query strategy (e.g. Expected Log Loss or Variance
+ * Reduction). The rest of the unlabeled instances receive the worst utility of
+ * the sub-query strategy, therefore the batch size should not exceed the
+ * number of candidates. The candidates are rescored at once with
+ * utilityInstances(int[], double[]), so the bulk and parallel scoring of the
+ * sub-query strategy are used.
+ *
+ * Variance Reduction solves the distribution q over the whole unlabeled set
+ * whichever instances are asked for, so it gains nothing from the cascade.
+ *
+ * The sub-query strategy owns the model that is evaluated. The prefilter
+ * shares the labeled and unlabeled sets but it is not updated, so it should be
+ * a strategy that does not maintain its own structures over the unlabeled
+ * set. The time spent in each stage is added to the evaluation of the
+ * iteration as "Prefilter time" and "Rescoring time".
+ *
+ * @author Oscar Gabriel Reyes Pupo
+ * @author Eduardo Perez Perdomo
+ *
+ */
+public class CascadeQueryStrategy extends AbstractSingleLabelQueryStrategy implements ITool {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Pointer to the prefilter query strategy used.
+     */
+    private IQueryStrategy prefilterQueryStrategy;
+
+    /**
+     * Pointer to the subQuery strategy used.
+     */
+    private IQueryStrategy subQueryStrategy;
+
+    /**
+     * Number of instances that are rescored with the sub-query strategy. A
+     * value lower than 1 means the whole unlabeled set.
+     */
+    private int candidateSize = 100;
+
+    /**
+     * Time in milliseconds of the prefilter in the last selection.
+     */
+    private long prefilterTime;
+
+    /**
+     * Time in milliseconds of the rescoring in the last selection.
+     */
+    private long rescoringTime;
+
+    /**
+     * Executes the training process of both stages.
+     */
+    @Override
+    public void training() {
+        prefilterQueryStrategy.training();
+        subQueryStrategy.training();
+    }
+
+    /**
+     * Executes the test process, the times of both stages are added to the
+     * evaluation of the current iteration.
+     */
+    @Override
+    public void testModel() {
+
+        subQueryStrategy.testModel();
+
+        List<AbstractEvaluation> evaluationsT = getEvaluations();
+
+        if (!evaluationsT.isEmpty()) {
+
+            AbstractEvaluation evaluation = evaluationsT.get(evaluationsT.size() - 1);
+
+            evaluation.setMetricValue("Prefilter time", prefilterTime);
+            evaluation.setMetricValue("Rescoring time", rescoringTime);
+        }
+    }
+
+    /**
+     * Function that returns the utility of each unlabeled instance. The
+     * unlabeled set is ranked with the prefilter and the best candidates are
+     * rescored with the sub-query strategy.
+     *
+     * @return A array that stores the utility of each unlabeled instance
+     */
+    @Override
+    public double[] testUnlabeledData() {
+
+        int unlabeledSize = getUnlabelledData().getNumInstances();
+
+        if (candidateSize < 1 || candidateSize >= unlabeledSize) {
+
+            long start = System.currentTimeMillis();
+
+            double[] values = subQueryStrategy.testUnlabeledData();
+
+            prefilterTime = 0;
+            rescoringTime = System.currentTimeMillis() - start;
+
+            return values;
+        }
+
+        long start = System.currentTimeMillis();
+
+        // Stage 1: the cheap ranking of the whole unlabeled set
+        int[] candidates = OrderUtils.topK(prefilterQueryStrategy.testUnlabeledData(),
+                candidateSize, prefilterQueryStrategy.isMaximal());
+
+        long middle = System.currentTimeMillis();
+
+        // Stage 2: the expensive rescoring of the candidates
+        double[] values = new double[unlabeledSize];
+
+        Arrays.fill(values, subQueryStrategy.isMaximal()
+                ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY);
+
+        double[] candidateValues = new double[candidates.length];
+
+        subQueryStrategy.utilityInstances(candidates, candidateValues);
+
+        for (int i = 0; i < candidates.length; i++) {
+            values[candidates[i]] = candidateValues[i];
+        }
+
+        prefilterTime = middle - start;
+        rescoringTime = System.currentTimeMillis() - middle;
+
+        return values;
+    }
+
+    /**
+     * Return how informative is an instance according to the sub-query
+     * strategy.
+     *
+     * @param instance Instance to test
+     * @return The utility of the instance
+     */
+    @Override
+    public double utilityInstance(Instance instance) {
+        return subQueryStrategy.utilityInstance(instance);
+    }
+
+    /**
+     * Return how informative is the unlabeled instance stored at the given
+     * position according to the sub-query strategy.
+     *
+     * @param instanceIndex Index of the instance to test in the unlabeled set
+     * @return The utility of the instance
+     */
+    @Override
+    public double utilityInstance(int instanceIndex) {
+        return subQueryStrategy.utilityInstance(instanceIndex);
+    }
+
+    /**
+     * Gets whether the sub-query strategy is maximal or minimal.
+     *
+     * @return Whether the query startegy is maximal or not
+     */
+    @Override
+    public boolean isMaximal() {
+        return subQueryStrategy.isMaximal();
+    }
+
+    /**
+     * Set the test data
+     *
+     * @param testData The instances to prove the effectiveness of the model
+     */
+    @Override
+    public void setTestData(IDataset testData) {
+        subQueryStrategy.setTestData(testData);
+    }
+
+    /**
+     * Get the test data
+     *
+     * @return The instances to prove the effectiveness of the model
+     */
+    @Override
+    public IDataset getTestData() {
+        return subQueryStrategy.getTestData();
+    }
+
+    /**
+     * Returns the probability that has the instance to belong to each class.
+     *
+     * @param instance The instance to test
+     * @return The probability for each instance
+     */
+    @Override
+    public double[] distributionForInstance(Instance instance) {
+        return subQueryStrategy.distributionForInstance(instance);
+    }
+
+    /**
+     * Returns the probabilities of the unlabeled instances stored between the
+     * given positions according to the model of the sub-query strategy.
+     *
+     * @param from The index of the first instance, inclusive
+     * @param to The index of the last instance, exclusive
+     * @return The probability for each class of each instance
+     */
+    @Override
+    public double[][] distributionsForInstances(int from, int to) {
+        return ((AbstractQueryStrategy) subQueryStrategy).distributionsForInstances(from, to);
+    }
+
+    /**
+     * Get the evaluations of the AL process
+     *
+     * @return The evaluations.
+     */
+    @Override
+    public List<AbstractEvaluation> getEvaluations() {
+        return subQueryStrategy.getEvaluations();
+    }
+
+    /**
+     * Set the evaluations of the AL process
+     *
+     * @param evaluations The evaluations
+     */
+    @Override
+    public void setEvaluations(List<AbstractEvaluation> evaluations) {
+        subQueryStrategy.setEvaluations(evaluations);
+    }
+
+    /**
+     * Get the base classifier used
+     *
+     * @return Pointer to current the Classifier.
+     */
+    @Override
+    public IClassifier getClassifier() {
+        return subQueryStrategy.getClassifier();
+    }
+
+    /**
+     * Set the classifier to use on query strategy
+     *
+     * @param classifier The classifier to use
+     */
+    @Override
+    public void setClassifier(IClassifier classifier) {
+        subQueryStrategy.setClassifier(classifier);
+    }
+
+    /**
+     * Get the unlabeled data
+     *
+     * @return Instances unlabeled.
+     */
+    @Override
+    public IDataset getUnlabelledData() {
+        return subQueryStrategy.getUnlabelledData();
+    }
+
+    /**
+     * Set the unlabeled data of both stages
+     *
+     * @param unlabelledData Instances unlabeled
+     */
+    @Override
+    public void setUnlabelledData(IDataset unlabelledData) {
+        prefilterQueryStrategy.setUnlabelledData(unlabelledData);
+        subQueryStrategy.setUnlabelledData(unlabelledData);
+    }
+
+    /**
+     * Get the labeled data
+     *
+     * @return Labeled data.
+     */
+    @Override
+    public IDataset getLabelledData() {
+        return subQueryStrategy.getLabelledData();
+    }
+
+    /**
+     * Set the labeled data of both stages
+     *
+     * @param labelledData Labeled data.
+     */
+    @Override
+    public void setLabelledData(IDataset labelledData) {
+        prefilterQueryStrategy.setLabelledData(labelledData);
+        subQueryStrategy.setLabelledData(labelledData);
+    }
+
+    /**
+     * Update the labeled data. The sets are shared, so only the sub-query
+     * strategy moves the selected instances.
+     */
+    @Override
+    public void updateLabeledData() {
+        subQueryStrategy.updateLabeledData();
+    }
+
+    /**
+     * Get the selected instances
+     *
+     * @return Returns the indexes of the instances selected by the query
+     * strategy.
+     */
+    @Override
+    public ArrayList<Integer> getSelectedInstances() {
+        return ((AbstractQueryStrategy) subQueryStrategy).getSelectedInstances();
+    }
+
+    /**
+     * Sets the indexes of the instances selected by the query strategy.
+     *
+     * @param selectedInstances The indexes of the selected instances
+     */
+    @Override
+    public void setSelectedInstances(ArrayList<Integer> selectedInstances) {
+        ((AbstractQueryStrategy) subQueryStrategy).setSelectedInstances(selectedInstances);
+    }
+
+    /**
+     * Set the prefilter query strategy to use
+     *
+     * @param prefilterQueryStrategy The cheap query strategy of the first stage
+     */
+    public void setPrefilterQueryStrategy(IQueryStrategy prefilterQueryStrategy) {
+        this.prefilterQueryStrategy = prefilterQueryStrategy;
+    }
+
+    /**
+     * Get the prefilter query strategy used
+     *
+     * @return The cheap query strategy of the first stage
+     */
+    public IQueryStrategy getPrefilterQueryStrategy() {
+        return prefilterQueryStrategy;
+    }
+
+    /**
+     * Set the subquery strategy to use
+     *
+     * @param subQueryStrategy The expensive query strategy of the second stage
+     */
+    public void setSubQueryStrategy(IQueryStrategy subQueryStrategy) {
+        this.subQueryStrategy = subQueryStrategy;
+    }
+
+    /**
+     * Get the sub-query strategy used
+     *
+     * @return The expensive query strategy of the second stage
+     */
+    public IQueryStrategy getSubQueryStrategy() {
+        return subQueryStrategy;
+    }
+
+    /**
+     * Get the number of instances rescored with the sub-query strategy.
+     *
+     * @return The number of candidates
+     */
+    public int getCandidateSize() {
+        return candidateSize;
+    }
+
+    /**
+     * Set the number of instances rescored with the sub-query strategy.
+     *
+     * @param candidateSize The number of candidates, a value lower than 1
+     * means the whole unlabeled set
+     */
+    public void setCandidateSize(int candidateSize) {
+        this.candidateSize = candidateSize;
+    }
+
+    /**
+     * Contextualize both stages.
+     *
+     * @param context The context to use.
+     */
+    @Override
+    public void contextualize(ISystem context) {
+
+        if (prefilterQueryStrategy instanceof ITool) {
+            ((ITool) prefilterQueryStrategy).contextualize(context);
+        }
+
+        if (subQueryStrategy instanceof ITool) {
+            ((ITool) subQueryStrategy).contextualize(context);
+        }
+    }
+
+    /**
+     *
+     * @param configuration Configuration object for the cascade strategy.
+     *
+     * The XML labels supported are:
+     * <ul>
+     * <li><b>candidate-size= int</b></li>
+     * <li>
+     * <b>prefilter-query-strategy type= class</b>
+     * <p>
+     * Package: net.sf.jclal.activelearning.querystrategy</p>
+     * <p>
+     * Class: All</p>
+     * </li>
+     * <li>
+     * <b>sub-query-strategy type= class</b>
+     * <p>
+     * Package: net.sf.jclal.activelearning.querystrategy</p>
+     * <p>
+     * Class: All</p>
+     * </li>
+     * </ul>
+     */
+    @Override
+    public void configure(Configuration configuration) {
+
+        // Set the number of candidates
+        int candidateT = configuration.getInt("candidate-size", candidateSize);
+
+        setCandidateSize(candidateT);
+
+        // Set the prefilter and the sub query strategy
+        setPrefilterQueryStrategy(createQueryStrategy(configuration, "prefilter-query-strategy"));
+
+        setSubQueryStrategy(createQueryStrategy(configuration, "sub-query-strategy"));
+    }
+
+    /**
+     * Creates and configures the query strategy defined under the given key.
+     *
+     * @param configuration The configuration object to use
+     * @param key The XML label of the query strategy
+     * @return The query strategy
+     */
+    private IQueryStrategy createQueryStrategy(Configuration configuration, String key) {
+
+        String subError = key + " type= ";
+        try {
+            // Query strategy classname
+            String strategyClassname = configuration.getString(key + "[@type]");
+            subError += strategyClassname;
+            // Query strategy class
+            Class<? extends IQueryStrategy> strategyClass = (Class<? extends IQueryStrategy>) Class
+                    .forName(strategyClassname);
+            // Query strategy instance
+            IQueryStrategy currentStrategy = strategyClass.newInstance();
+
+            // Configure query strategy (if necessary)
+            if (currentStrategy instanceof IConfigure) {
+                ((IConfigure) currentStrategy).configure(configuration.subset(key));
+            }
+
+            return currentStrategy;
+        } catch (ClassNotFoundException e) {
+            throw new ConfigurationRuntimeException(
+                    "Illegal " + key + " classname: " + subError, e);
+        } catch (InstantiationException e) {
+            throw new ConfigurationRuntimeException(
+                    "Illegal " + key + " classname: " + subError, e);
+        } catch (IllegalAccessException e) {
+            throw new ConfigurationRuntimeException(
+                    "Illegal " + key + " classname: " + subError, e);
+        }
+    }
+
+    /**
+     * Free the memory of both stages
+     */
+    @Override
+    public void algorithmFinished() {
+        super.algorithmFinished();
+
+        prefilterQueryStrategy.algorithmFinished();
+        subQueryStrategy.algorithmFinished();
+    }
+
+    /**
+     * The stages manage their own scoring.
+     *
+     * @return false
+     */
+    @Override
+    protected boolean supportsParallelScoring() {
+        return false;
+    }
+}
@@ -15,8 +15,6 @@
  */
 package net.sf.jclal.activelearning.singlelabel.querystrategy;
 
-import weka.core.Instance;
-
 /**
  * Implementation of Entropy Sampling Strategy (Uncertainty Sampling) query
  * strategy.
@@ -46,12 +44,10 @@ public class EntropySamplingQueryStrategy extends UncertaintySamplingQueryStrate
      * The entropy strategy calculate for each instance the sum of Py*log (Py).
      */
     @Override
-    public double utilityInstance(Instance instance) {
+    protected double utilityDistribution(double[] probabilities) {
 
         double sumatoria = 0;
 
-        double[] probabilities = distributionForInstance(instance);
-
         double log;
 
         for (double current : probabilities) {
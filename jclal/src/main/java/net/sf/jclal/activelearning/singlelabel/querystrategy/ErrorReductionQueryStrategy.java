@@ -15,6 +15,17 @@
  */
 package net.sf.jclal.activelearning.singlelabel.querystrategy;
 
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.sf.jclal.classifier.WekaClassifier;
+import net.sf.jclal.core.IClassifier;
+import net.sf.jclal.dataset.WekaDatasetView;
+import weka.core.Instance;
+import weka.core.Instances;
+
 /**
  * Abstract class for Error Reduction family of query strategies. All the query
  * strategies that belong to ErrorReduction category must be extend this class.
@@ -22,6 +33,16 @@ package net.sf.jclal.activelearning.singlelabel.querystrategy;
  * This category of query strategy measures how much its generalization error is
  * likely to be reduced.
  *
+ * For each unlabeled instance and each class, a model is trained with the
+ * labeled set plus the instance labeled with the class, and the loss of the
+ * model is measured over the rest of the unlabeled set. The labeled set is not
+ * copied, the model is trained on a view that shares its instances. If the
+ * Weka classifier supports undoable updates, the instance is added to a copy
+ * of the current model and removed after the loss is measured, so the model
+ * is not trained again. If the parallel scoring is enabled, the (instance,
+ * class) hypotheses are evaluated on the scoring pool, where each worker
+ * reuses its own copy of the model.
+ *
  * Burr Settles. Active Learning Literature Survey. Computer Sciences Technical
  * Report 1648, University ofWisconsin–Madison. 2009.
  *
@@ -35,6 +56,11 @@ public abstract class ErrorReductionQueryStrategy extends AbstractSingleLabelQue
 
     private static final long serialVersionUID = -1290150080123319178L;
 
+    /**
+     * Number of unlabeled instances predicted in a single call to the model.
+     */
+    private static final int LOSS_BLOCK = 1024;
+
     /**
      * Empty(default) contructor.
      */
@@ -43,4 +69,349 @@ public abstract class ErrorReductionQueryStrategy extends AbstractSingleLabelQue
         //By default this type of query strategy is minimalistic
         setMaximal(false);
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the loss of the model over an unlabeled instance.
+     *
+     * @param probabilities The probability for each class of the instance
+     * @return The loss
+     */
+    protected abstract double loss(double[] probabilities);
+
+    /**
+     * Analyzes how informative is an instance. It looks for the position of
+     * the instance in the unlabeled set, use {@link #utilityInstance(int)}
+     * when the position is known.
+     *
+     * @param instance The instance to query.
+     * @return The utility of the instance.
+     */
+    @Override
+    public double utilityInstance(Instance instance) {
+        return utilityInstance(getUnlabelledData().getDataset().indexOf(instance));
+    }
+
+    /**
+     * Analyzes how informative is the unlabeled instance stored at the given
+     * position. It is the expected loss weighted by the probability of each
+     * class.
+     *
+     * @param k The index of the instance in the unlabeled set.
+     * @return The utility of the instance.
+     */
+    @Override
+    public double utilityInstance(int k) {
+
+        try {
+            return utilityInstance(getClassifier().makeCopy(), k);
+        } catch (Exception ex) {
+            Logger.getLogger(ErrorReductionQueryStrategy.class.getName()).log(Level.SEVERE, null, ex);
+        }
+
+        return 0;
+    }
+
+    /**
+     * Analyzes how informative is the unlabeled instance stored at the given
+     * position, evaluating every class with the same copy of the model.
+     *
+     * @param model The copy of the current model used for the hypotheses
+     * @param k The index of the instance in the unlabeled set.
+     * @return The utility of the instance.
+     */
+    private double utilityInstance(IClassifier model, int k) {
+
+        double result = 0;
+
+        try {
+
+            double[] probabilities = distributionForInstance(getUnlabelledData().instance(k));
+
+            for (int i = 0; i < probabilities.length; i++) {
+                result += probabilities[i] * expectedLoss(model, k, i);
+            }
+
+        } catch (Exception ex) {
+            Logger.getLogger(ErrorReductionQueryStrategy.class.getName()).log(Level.SEVERE, null, ex);
+        }
+
+        return result;
+    }
+
+    /**
+     * Computes the utilities of the unlabeled instances stored between the
+     * given positions. If the parallel scoring is enabled, every (instance,
+     * class) hypothesis is evaluated as a separate task on the scoring pool.
+     *
+     * @param from The index of the first instance, inclusive
+     * @param to The index of the last instance, exclusive
+     * @param values The array where the utilities are stored
+     */
+    @Override
+    public void utilityInstances(int from, int to, double[] values) {
+
+        int[] indexes = new int[to - from];
+
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = from + i;
+        }
+
+        double[] utilities = new double[indexes.length];
+
+        utilityInstances(indexes, 0, indexes.length, utilities);
+
+        System.arraycopy(utilities, 0, values, from, utilities.length);
+    }
+
+    /**
+     * Computes the utilities of the instances stored at a range of positions
+     * of an array of indexes, in the same way than the range of the unlabeled
+     * set.
+     *
+     * @param indexes The indexes of the instances in the unlabeled set
+     * @param from The first position of the array of indexes, inclusive
+     * @param to The last position of the array of indexes, exclusive
+     * @param values The array where the utilities are stored
+     */
+    @Override
+    protected void utilityInstances(int[] indexes, int from, int to, double[] values) {
+
+        if (isParallelScoring() && getScoringThreads() > 1) {
+
+            try {
+
+                hypothesesParallel(indexes, from, to, values);
+
+                return;
+
+            } catch (RuntimeException e) {
+                // a failed hypothesis has no loss, the range is evaluated again sequentially
+                Logger.getLogger(ErrorReductionQueryStrategy.class.getName()).log(
+                        Level.SEVERE, null, e);
+            }
+        }
+
+        try {
+
+            // the same copy of the model is used for every instance
+            IClassifier model = getClassifier().makeCopy();
+
+            for (int i = from; i < to; i++) {
+                values[i] = utilityInstance(model, indexes[i]);
+            }
+
+        } catch (Exception ex) {
+            Logger.getLogger(ErrorReductionQueryStrategy.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * Evaluates every (instance, class) hypothesis of a range of the array of
+     * indexes as a separate task on the scoring pool.
+     *
+     * @param indexes The indexes of the instances in the unlabeled set
+     * @param from The first position of the array of indexes, inclusive
+     * @param to The last position of the array of indexes, exclusive
+     * @param values The array where the utilities are stored
+     * @throws RuntimeException If a hypothesis cannot be evaluated
+     */
+    private void hypothesesParallel(int[] indexes, int from, int to, double[] values) {
+
+        double[][] probabilities = new double[to - from][];
+
+        for (int i = from; i < to; i++) {
+            probabilities[i - from] = distributionForInstance(getUnlabelledData().instance(indexes[i]));
+        }
+
+        int numClasses = probabilities.length > 0 ? probabilities[0].length : 0;
+
+        double[] losses = new double[(to - from) * numClasses];
+
+        getScoringPool().invoke(new HypothesisTask(indexes, from, numClasses, losses, 0,
+                losses.length, new ConcurrentLinkedQueue<IClassifier>()));
+
+        for (int i = from; i < to; i++) {
+
+            double result = 0;
+
+            for (int j = 0; j < numClasses; j++) {
+                result += probabilities[i - from][j] * losses[(i - from) * numClasses + j];
+            }
+
+            values[i] = result;
+        }
+    }
+
+    /**
+     * Returns the expected loss over the unlabeled set if the instance is
+     * labeled with the given class.
+     *
+     * @param instanceToAdd The index of the instance in the unlabeled set
+     * @param classValue The class value
+     * @return The expected loss
+     * @throws Exception If the model cannot be trained
+     */
+    public double expectedLoss(int instanceToAdd, int classValue) throws Exception {
+        return expectedLoss(getClassifier().makeCopy(), instanceToAdd, classValue);
+    }
+
+    /**
+     * Trains the model with the labeled set plus the instance labeled with the
+     * given class and returns its loss over the rest of the unlabeled set. The
+     * labeled and unlabeled sets are not copied, so the method can be called
+     * from several threads with different models.
+     *
+     * If the model supports undoable updates, it must be a copy of the current
+     * model: the instance is added to it and removed afterwards. Otherwise the
+     * model is built again and its previous state is discarded.
+     *
+     * @param model The copy of the current model
+     * @param instanceToAdd The index of the instance in the unlabeled set
+     * @param classValue The class value
+     * @return The expected loss
+     * @throws Exception If the model cannot be trained
+     */
+    protected double expectedLoss(IClassifier model, int instanceToAdd,
+            int classValue) throws Exception {
+
+        Instances unlabeled = getUnlabelledData().getDataset();
+
+        //the class settles down on a copy, the unlabeled instance is not modified
+        Instance hypothesis = (Instance) unlabeled.instance(instanceToAdd).copy();
+
+        hypothesis.setClassValue(classValue);
+
+        if (model instanceof WekaClassifier
+                && ((WekaClassifier) model).supportsUndoableUpdate(unlabeled)) {
+
+            WekaClassifier undoable = (WekaClassifier) model;
+
+            undoable.applyUpdate(hypothesis);
+
+            try {
+                return lossOfUnlabeledSet(model, unlabeled, instanceToAdd);
+            } finally {
+                undoable.rollbackUpdate(hypothesis);
+            }
+        }
+
+        model.buildClassifier(new WekaDatasetView(getLabelledData(), hypothesis));
+
+        return lossOfUnlabeledSet(model, unlabeled, instanceToAdd);
+    }
+
+    /**
+     * Returns the loss of the model over the unlabeled set, except the
+     * instance that was hypothetically labeled.
+     *
+     * @param model The trained model
+     * @param unlabeled The unlabeled set
+     * @param instanceToAdd The index of the instance to exclude
+     * @return The loss
+     * @throws Exception If the model cannot classify the unlabeled set
+     */
+    private double lossOfUnlabeledSet(IClassifier model, Instances unlabeled,
+            int instanceToAdd) throws Exception {
+
+        double sum = 0;
+
+        int numInstances = unlabeled.numInstances();
+
+        for (int start = 0; start < numInstances; start += LOSS_BLOCK) {
+
+            int end = Math.min(numInstances, start + LOSS_BLOCK);
+
+            double[][] distributions = model.distributionsForInstances(unlabeled, start, end);
+
+            if (distributions == null) {
+                throw new Exception("The hypothetical model cannot classify the unlabeled set");
+            }
+
+            for (int i = start; i < end; i++) {
+
+                //the instance to add does not belong to the unlabeled set
+                if (i != instanceToAdd) {
+                    sum += loss(distributions[i - start]);
+                }
+            }
+        }
+
+        return sum;
+    }
+
+    /**
+     * The hypotheses are evaluated in parallel by the utilityInstances method.
+     *
+     * @return false
+     */
+    @Override
+    protected boolean supportsParallelScoring() {
+        return false;
+    }
+
+    /**
+     * Fork-join task that evaluates a range of (instance, class) hypotheses.
+     */
+    private class HypothesisTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] indexes;
+
+        private final int first;
+
+        private final int numClasses;
+
+        private final double[] losses;
+
+        private final int from;
+
+        private final int to;
+
+        private final Queue<IClassifier> models;
+
+        HypothesisTask(int[] indexes, int first, int numClasses, double[] losses,
+                int from, int to, Queue<IClassifier> models) {
+            this.indexes = indexes;
+            this.first = first;
+            this.numClasses = numClasses;
+            this.losses = losses;
+            this.from = from;
+            this.to = to;
+            this.models = models;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from > 1) {
+
+                int middle = (from + to) >>> 1;
+
+                invokeAll(new HypothesisTask(indexes, first, numClasses, losses, from, middle, models),
+                        new HypothesisTask(indexes, first, numClasses, losses, middle, to, models));
+                return;
+            }
+
+            IClassifier model = models.poll();
+
+            try {
+
+                if (model == null) {
+                    model = getClassifier().makeCopy();
+                }
+
+                losses[from] = expectedLoss(model, indexes[first + from / numClasses],
+                        from % numClasses);
+
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            } finally {
+
+                if (model != null) {
+                    models.offer(model);
+                }
+            }
+        }
+    }
+}
@@ -15,14 +15,8 @@
  */
 package net.sf.jclal.activelearning.singlelabel.querystrategy;
 
-import java.util.Iterator;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import net.sf.jclal.core.IClassifier;
-import net.sf.jclal.core.IDataset;
-import net.sf.jclal.dataset.WekaDataset;
-import weka.core.Instance;
-import weka.core.Instances;
 import weka.core.Utils;
 
 /**
@@ -38,40 +32,18 @@ import weka.core.Utils;
 public class ExpectedCeroOneLossQueryStrategy extends ErrorReductionQueryStrategy {
 
     /**
-     * Analyzes how informative is an instance and returns a value that
-     * indicates the level of information.
+     * Returns the probability that the prediction of an unlabeled instance is
+     * incorrect.
      *
-     * @param instance The instance to test
-     * @return the utility of the instance
+     * @param probabilities The probability for each class of the instance
+     * @return The loss
      */
     @Override
-    public double utilityInstance(Instance instance) {
-        double result = 0;
+    protected double loss(double[] probabilities) {
 
-        try {
-
-            Instances unlabelled = getUnlabelledData().getDataset();
-
-            int k = unlabelled.indexOf(instance);
-
-            double[] probabilities = distributionForInstance(instance);
-
-            for (int i = 0; i < probabilities.length; i++) {
-
-                double currProb = probabilities[i];
-
-                double currLoss = expectedCeroOneLoss(k, i);
+        double currConf = probabilities[Utils.maxIndex(probabilities)];
 
-                double currentResult = currProb * currLoss;
-
-                result += currentResult;
-            }
-
-        } catch (Exception ex) {
-            Logger.getLogger(ExpectedCeroOneLossQueryStrategy.class.getName()).log(Level.SEVERE, null, ex);
-        }
-
-        return result;
+        return 1.0 - currConf;
     }
 
     /**
@@ -83,59 +55,12 @@ public class ExpectedCeroOneLossQueryStrategy extends ErrorReductionQueryStrateg
      */
     public double expectedCeroOneLoss(int instanceToAdd, int classValue) {
 
-        double sum = 0;
-
         try {
-            //Make a copy of the labeled and unlabeled sets
-            IDataset labeledCopy = new WekaDataset(getLabelledData());
-
-            IDataset unlabeledCopy = new WekaDataset(getUnlabelledData());
-
-            //the class settles down according to the classifier
-            Instance copy = unlabeledCopy.instance(instanceToAdd);
-
-            //The current instance is removed from unlabeled set
-            unlabeledCopy.remove(instanceToAdd);
-
-            copy.setClassValue(classValue);
-
-            //The current instance is added to labeled set
-            labeledCopy.add(copy);
-
-            //it trains the classifier with the new labeled set
-            IClassifier clasificadorTemp = getClassifier().makeCopy();
-            clasificadorTemp.buildClassifier(labeledCopy);
-
-            Iterator<Instance> instanceIterator = unlabeledCopy.getDataset().iterator();
-
-            Instance current;
-            while (instanceIterator.hasNext()) {
-
-                current = instanceIterator.next();
-
-                double[] probabilities;
-                probabilities = clasificadorTemp.distributionForInstance(current);
-
-                double currConf = probabilities[Utils.maxIndex(probabilities)];
-
-                currConf = 1.0 - currConf;
-
-                sum += currConf;
-            }
-
-            labeledCopy.getDataset().clear();
-            labeledCopy = null;
-            unlabeledCopy.getDataset().clear();
-            unlabeledCopy = null;
-            instanceIterator = null;
-            clasificadorTemp = null;
-            copy = null;
-            System.gc();
-
+            return expectedLoss(instanceToAdd, classValue);
         } catch (Exception e) {
             Logger.getLogger(ExpectedCeroOneLossQueryStrategy.class.getName()).log(Level.SEVERE, null, e);
         }
 
-        return sum;
+        return 0;
     }
 }
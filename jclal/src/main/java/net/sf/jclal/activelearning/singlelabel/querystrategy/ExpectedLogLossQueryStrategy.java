@@ -15,14 +15,8 @@
  */
 package net.sf.jclal.activelearning.singlelabel.querystrategy;
 
-import java.util.Iterator;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import net.sf.jclal.core.IClassifier;
-import net.sf.jclal.core.IDataset;
-import net.sf.jclal.dataset.WekaDataset;
-import weka.core.Instance;
-import weka.core.Instances;
 
 /**
  * This class minimizes the expected log-loss, which
@@ -44,38 +38,27 @@ public class ExpectedLogLossQueryStrategy extends ErrorReductionQueryStrategy {
     }
 
     /**
-     * Analyzes how informative is an instance.
+     * Returns the entropy of the distribution of an unlabeled instance.
      *
-     * @param instance The instance to query.
-     * @return The utility of the instance.
+     * @param probabilities The probability for each class of the instance
+     * @return The loss
      */
     @Override
-    public double utilityInstance(Instance instance) {
-        double result = 0;
+    protected double loss(double[] probabilities) {
 
-        try {
-            Instances unlabelled = getUnlabelledData().getDataset();
-
-            int k = unlabelled.indexOf(instance);
-
-            double[] probabilities = distributionForInstance(instance);
-
-            for (int i = 0; i < probabilities.length; i++) {
+        double sum = 0;
 
-                double currConf = probabilities[i];
+        for (int i = 0; i < probabilities.length; i++) {
 
-                double currLoss = expectedLogLoss(k, i);
+            if (probabilities[i] != 0) {
 
-                double currentResult = currConf * currLoss;
+                double tempValue = probabilities[i] * logbase2(probabilities[i]);
 
-                result += currentResult;
+                sum += tempValue;
             }
-
-        } catch (Exception ex) {
-            Logger.getLogger(ExpectedLogLossQueryStrategy.class.getName()).log(Level.SEVERE, null, ex);
         }
 
-        return result;
+        return -sum;
     }
 
     /**
@@ -87,62 +70,14 @@ public class ExpectedLogLossQueryStrategy extends ErrorReductionQueryStrategy {
      */
     public double expectedLogLoss(int instanceToAdd, int classValue) {
 
-        double sum = 0;
-
         try {
-            //Make a copy of the labeled and unlabeled sets
-            IDataset labeledCopy = new WekaDataset(getLabelledData());
-
-            IDataset unlabeledCopy = new WekaDataset(getUnlabelledData());
-
-            //the class settles down according to the classifier
-            Instance copy = unlabeledCopy.instance(instanceToAdd);
-
-            unlabeledCopy.remove(instanceToAdd);
-
-            copy.setClassValue(classValue);
-
-            labeledCopy.add(copy);
-
-            //To train the classifier with the new labeled set
-            IClassifier clasificadorTemp = getClassifier().makeCopy();
-            clasificadorTemp.buildClassifier(labeledCopy);
-
-            Iterator<Instance> instanceIterator = unlabeledCopy.getDataset().iterator();
-
-            Instance current;
-            while (instanceIterator.hasNext()) {
-
-                current = instanceIterator.next();
-
-                double[] probabilities = clasificadorTemp.distributionForInstance(current);
-
-                for (int i = 0; i < probabilities.length; i++) {
-
-                    if (probabilities[i] != 0) {
-
-                        double tempValue = probabilities[i] * logbase2(probabilities[i]);
-
-                        sum += tempValue;
-                    }
-                }
-            }
-
-            labeledCopy.getDataset().clear();
-            labeledCopy = null;
-            unlabeledCopy.getDataset().clear();
-            unlabeledCopy = null;
-            instanceIterator = null;
-            clasificadorTemp = null;
-            copy = null;
-            System.gc();
-
+            return expectedLoss(instanceToAdd, classValue);
         } catch (Exception e) {
             Logger.getLogger(ExpectedLogLossQueryStrategy.class.getName()).log(
                     Level.SEVERE, null, e);
         }
 
-        return -sum;
+        return 0;
     }
 
     /**Compute the logarithmic based 2.
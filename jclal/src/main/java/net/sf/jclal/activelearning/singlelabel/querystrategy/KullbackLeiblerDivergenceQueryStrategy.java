@@ -17,9 +17,9 @@ package net.sf.jclal.activelearning.singlelabel.querystrategy;
 
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import net.sf.jclal.classifier.AbstractClassifier;
 import net.sf.jclal.classifier.WekaComitteClassifier;
 import weka.core.Instance;
+import weka.core.Instances;
 
 /**
  * Implementation of Query By Committee query strategy, variant:
@@ -57,42 +57,129 @@ public class KullbackLeiblerDivergenceQueryStrategy extends QueryByCommittee {
 
         try {
 
-            int committeeSize = ((AbstractClassifier) getClassifier()).getNumberClassifiers();
-
-            double sumatoria = 0;
+            WekaComitteClassifier committee = (WekaComitteClassifier) getClassifier();
 
             //consensus probabilities
-            double[] cprobs = getClassifier().distributionForInstance(instance);
+            double[] cprobs = committee.distributionForInstance(instance);
 
-            for (int i = 0; i < committeeSize; i++) {
+            return divergence(cprobs, committee.distributionsForInstanceByMembers(instance));
 
-                double sumInter = 0;
+        } catch (Exception e) {
 
-                double[] probs = ((WekaComitteClassifier) getClassifier()).distributionForInstanceByMember(instance, i);
+            Logger.getLogger(KullbackLeiblerDivergenceQueryStrategy.class.getName()).log(
+                    Level.SEVERE, null, e);
+        }
+        return 0;
 
-                int p = 0;
+    }
 
-                for (double prob : probs) {
+    /**
+     * Computes the utilities of a range of unlabeled instances. The members
+     * of the committee predict the whole range in a single pass.
+     *
+     * @param from The index of the first instance, inclusive
+     * @param to The index of the last instance, exclusive
+     * @param values The array where the utilities are stored
+     */
+    @Override
+    public void utilityInstances(int from, int to, double[] values) {
 
-                    if (prob != 0) {
-                        sumInter += (prob * logbase2(prob / cprobs[p++]));
-                    }
-                }
+        try {
+
+            WekaComitteClassifier committee = (WekaComitteClassifier) getClassifier();
+
+            Instances unlabelled = getUnlabelledData().getDataset();
 
-                sumatoria += sumInter;
+            double[][][] probs = committee.distributionsForInstancesByMembers(unlabelled, from, to);
+
+            for (int i = from; i < to; i++) {
+
+                //consensus probabilities
+                double[] cprobs = committee.distributionForInstance(unlabelled.instance(i));
+
+                values[i] = divergence(cprobs, probs[i - from]);
             }
 
-            sumatoria /= committeeSize;
+        } catch (Exception e) {
+
+            Logger.getLogger(KullbackLeiblerDivergenceQueryStrategy.class.getName()).log(
+                    Level.SEVERE, null, e);
+
+            super.utilityInstances(from, to, values);
+        }
+    }
 
-            return sumatoria;
+    /**
+     * Computes the utilities of the instances stored at a range of positions
+     * of an array of indexes. The members of the committee predict the whole
+     * range in a single pass.
+     *
+     * @param indexes The indexes of the instances in the unlabeled set
+     * @param from The first position of the array of indexes, inclusive
+     * @param to The last position of the array of indexes, exclusive
+     * @param values The array where the utilities are stored
+     */
+    @Override
+    protected void utilityInstances(int[] indexes, int from, int to, double[] values) {
+
+        try {
+
+            WekaComitteClassifier committee = (WekaComitteClassifier) getClassifier();
+
+            Instances unlabelled = getUnlabelledData().getDataset();
+
+            double[][][] probs = committee.distributionsForInstancesByMembers(unlabelled,
+                    indexes, from, to);
+
+            for (int i = from; i < to; i++) {
+
+                //consensus probabilities
+                double[] cprobs = committee.distributionForInstance(unlabelled.instance(indexes[i]));
+
+                values[i] = divergence(cprobs, probs[i - from]);
+            }
 
         } catch (Exception e) {
 
             Logger.getLogger(KullbackLeiblerDivergenceQueryStrategy.class.getName()).log(
                     Level.SEVERE, null, e);
+
+            super.utilityInstances(indexes, from, to, values);
         }
-        return 0;
+    }
+
+    /**
+     * The mean divergence of the members from the consensus.
+     *
+     * @param cprobs The consensus probabilities
+     * @param probs The probabilities of each member
+     * @return The divergence
+     */
+    private double divergence(double[] cprobs, double[][] probs) {
+
+        int committeeSize = probs.length;
+
+        double sumatoria = 0;
+
+        for (int i = 0; i < committeeSize; i++) {
+
+            double sumInter = 0;
+
+            int p = 0;
+
+            for (double prob : probs[i]) {
+
+                if (prob != 0) {
+                    sumInter += (prob * logbase2(prob / cprobs[p++]));
+                }
+            }
+
+            sumatoria += sumInter;
+        }
+
+        sumatoria /= committeeSize;
 
+        return sumatoria;
     }
 
     /**
@@ -15,7 +15,6 @@
  */
 package net.sf.jclal.activelearning.singlelabel.querystrategy;
 
-import weka.core.Instance;
 import weka.core.Utils;
 
 /**
@@ -48,9 +47,7 @@ public class LeastConfidentSamplingQueryStrategy extends UncertaintySamplingQuer
      * the maximal probability.
      */
     @Override
-    public double utilityInstance(Instance instance) {
-
-        double[] probs = distributionForInstance(instance);
+    protected double utilityDistribution(double[] probs) {
 
         double mayor = probs[Utils.maxIndex(probs)];
 
@@ -15,7 +15,6 @@
  */
 package net.sf.jclal.activelearning.singlelabel.querystrategy;
 
-import weka.core.Instance;
 import weka.core.Utils;
 
 /**
@@ -51,9 +50,7 @@ public class MarginSamplingQueryStrategy extends UncertaintySamplingQueryStrateg
      * Px and Py the maximals probabilities.
      */
     @Override
-    public double utilityInstance(Instance instance) {
-
-        double[] probs = distributionForInstance(instance);
+    protected double utilityDistribution(double[] probs) {
 
         //determine the class with the highest probability
         int ind1 = Utils.maxIndex(probs);
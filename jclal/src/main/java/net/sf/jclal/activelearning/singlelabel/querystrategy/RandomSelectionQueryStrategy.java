@@ -66,4 +66,15 @@ public class RandomSelectionQueryStrategy extends AbstractSingleLabelQueryStrate
     public void contextualize(ISystem context) {
         random = context.createRandGen();
     }
+
+    /**
+     * The utilities depend on the order in which the random numbers are
+     * generated, so the pool is always scored sequentially.
+     *
+     * @return false
+     */
+    @Override
+    protected boolean supportsParallelScoring() {
+        return false;
+    }
 }
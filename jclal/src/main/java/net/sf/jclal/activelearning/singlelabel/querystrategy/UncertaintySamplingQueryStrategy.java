@@ -15,6 +15,8 @@
  */
 package net.sf.jclal.activelearning.singlelabel.querystrategy;
 
+import weka.core.Instance;
+
 /**
  * Abstract class for Uncertainty Sampling family of query strategies.
  *
@@ -32,4 +34,88 @@ package net.sf.jclal.activelearning.singlelabel.querystrategy;
 public abstract class UncertaintySamplingQueryStrategy extends AbstractSingleLabelQueryStrategy {
 
     private static final long serialVersionUID = -775271101825003928L;
+
+    /**
+     * Number of instances whose probabilities are requested to the classifier
+     * at once.
+     */
+    private static final int DISTRIBUTIONS_BLOCK = 1024;
+
+    /**
+     * Computes the utility of an instance from the probability that has the
+     * instance to belong to each class.
+     *
+     * @param probabilities The probabilities of the instance
+     * @return The utility of the instance
+     */
+    protected abstract double utilityDistribution(double[] probabilities);
+
+    /**
+     * Analyzes how informative is an instance.
+     *
+     * @param instance The instance to query.
+     * @return The utility of the instance.
+     */
+    @Override
+    public double utilityInstance(Instance instance) {
+        return utilityDistribution(distributionForInstance(instance));
+    }
+
+    /**
+     * Computes the utilities of a range of unlabeled instances. The
+     * probabilities are requested to the classifier by blocks of instances.
+     *
+     * @param from The index of the first instance, inclusive
+     * @param to The index of the last instance, exclusive
+     * @param values The array where the utilities are stored
+     */
+    @Override
+    public void utilityInstances(int from, int to, double[] values) {
+
+        for (int begin = from; begin < to; begin += DISTRIBUTIONS_BLOCK) {
+
+            int end = Math.min(to, begin + DISTRIBUTIONS_BLOCK);
+
+            double[][] distributions = distributionsForInstances(begin, end);
+
+            if (distributions == null) {
+                super.utilityInstances(begin, end, values);
+                continue;
+            }
+
+            for (int i = begin; i < end; i++) {
+                values[i] = utilityDistribution(distributions[i - begin]);
+            }
+        }
+    }
+
+    /**
+     * Computes the utilities of the instances stored at a range of positions
+     * of an array of indexes. The probabilities are requested to the
+     * classifier by blocks of instances.
+     *
+     * @param indexes The indexes of the instances in the unlabeled set
+     * @param from The first position of the array of indexes, inclusive
+     * @param to The last position of the array of indexes, exclusive
+     * @param values The array where the utilities are stored
+     */
+    @Override
+    protected void utilityInstances(int[] indexes, int from, int to, double[] values) {
+
+        for (int begin = from; begin < to; begin += DISTRIBUTIONS_BLOCK) {
+
+            int end = Math.min(to, begin + DISTRIBUTIONS_BLOCK);
+
+            double[][] distributions = distributionsForInstances(indexes, begin, end);
+
+            if (distributions == null) {
+                super.utilityInstances(indexes, begin, end, values);
+                continue;
+            }
+
+            for (int i = begin; i < end; i++) {
+                values[i] = utilityDistribution(distributions[i - begin]);
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -16,10 +16,14 @@
 package net.sf.jclal.activelearning.singlelabel.querystrategy;
 
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import net.sf.jclal.util.dataset.DatasetUtils;
+import net.sf.jclal.core.IDataset;
+import net.sf.jclal.util.sort.OrderUtils;
 import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConfigurationRuntimeException;
 import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.Utils;
@@ -77,6 +81,53 @@ public class VarianceReductionQueryStrategy extends AbstractSingleLabelQueryStra
      * To control temporary values used for optimization.
      */
     private int unlabelledSize = -1;
+    /**
+     * Minimum number of instances processed by a task of the parallel
+     * kernels.
+     */
+    private static final int KERNEL_GRAIN = 256;
+    /**
+     * Size of the square tiles in which the Fisher matrix is accumulated.
+     */
+    private static final int FISHER_TILE = 64;
+    /**
+     * Number of instances accumulated at once in a tile of the Fisher matrix.
+     */
+    private static final int INSTANCE_BLOCK = 512;
+    /**
+     * Whether the Fisher matrix is kept between iterations and updated with
+     * the changes of the unlabeled set instead of being computed again. The
+     * iterations that find q also start from the previous solution.
+     */
+    private boolean incrementalFisher = false;
+    /**
+     * Maximum difference, relative to the total weight of the unlabeled set,
+     * between the weights of the instances in the kept Fisher matrix and the
+     * current ones. When it is exceeded, the instances with the largest
+     * difference are updated, or the matrix is computed again if they are
+     * most of the unlabeled set.
+     */
+    private double fisherDriftThreshold = 0.05;
+    /**
+     * The features of the unlabeled instances kept with the Fisher matrix.
+     */
+    private transient double[] features;
+    /**
+     * The squared norm of the features of each unlabeled instance.
+     */
+    private transient double[] squaredNorms;
+    /**
+     * The upper triangle of the kept Fisher matrix, without regularization.
+     */
+    private transient double[][] fisher;
+    /**
+     * The weight of each unlabeled instance in the kept Fisher matrix.
+     */
+    private transient double[] fisherWeights;
+    /**
+     * Number of times that the Fisher matrix was computed from scratch.
+     */
+    private transient int fisherRecomputations;
 
     /**
      *
@@ -86,14 +137,43 @@ public class VarianceReductionQueryStrategy extends AbstractSingleLabelQueryStra
     }
 
     /**
-     *
-     * Analyzes how informative is an instance.
+     * Analyzes how informative is an instance. It looks for the position of
+     * the instance in the unlabeled set, use {@link #utilityInstance(int)}
+     * when the position is known.
      *
      * @param instance The instance to query.
      * @return The utility of the instance.
      */
     @Override
     public double utilityInstance(Instance instance) {
+        return utilityInstance(getUnlabelledData().getDataset().indexOf(instance));
+    }
+
+    /**
+     *
+     * Analyzes how informative is the unlabeled instance stored at the given
+     * position.
+     *
+     * The utilities of the whole unlabeled set are computed when the set
+     * changes. The features of the unlabeled instances are copied once to a
+     * row-major block, and the projections of the instances onto the
+     * eigenvectors of the Fisher matrix are computed once, since they do not
+     * change in the iterations that find q.
+     *
+     * If the incremental Fisher matrix is enabled, the matrix of the previous
+     * iteration is downdated with the labeled instances and updated with the
+     * instances whose weight changed the most, see
+     * {@link #setFisherDriftThreshold(double)}.
+     *
+     * Since q is a distribution over the whole unlabeled set, it can not be
+     * solved for a subset of candidates only, e.g. the candidates of a
+     * CascadeQueryStrategy, which therefore gains nothing with this strategy.
+     *
+     * @param instanceIndex The index of the instance in the unlabeled set.
+     * @return The utility of the instance.
+     */
+    @Override
+    public double utilityInstance(int instanceIndex) {
 
         Instances unlabeled = getUnlabelledData().getDataset();
 
@@ -111,67 +191,56 @@ public class VarianceReductionQueryStrategy extends AbstractSingleLabelQueryStra
             //2. pi_sub_i
             double[] piSubI = getPiSubI(unlabeled);
 
-            //to create the Fisher matrix
-            int dimensionMatrix = unlabeled.numAttributes() - 1;
-            int classIndex = unlabeled.classIndex();
+            //the weight of each instance in the Fisher matrix
+            double[] weights = new double[n];
 
-            Matrix matrixFisher = null;
-            try {
-                matrixFisher = new Matrix(dimensionMatrix, dimensionMatrix);
-            } catch (Exception ex) {
-                Logger.getLogger(VarianceReductionQueryStrategy.class.getName()).log(Level.SEVERE, null, ex);
+            for (int i = 0; i < n; i++) {
+                weights[i] = piSubI[i] * (1 - piSubI[i]);
             }
 
-            for (int i = 0; i < piSubI.length; i++) {
-                double mult = piSubI[i] * (1 - piSubI[i]);
-
-                //the values of the instance are had
-                double[] atributos = unlabeled.instance(i).toDoubleArray();
-
-                //the attribute class is eliminated, only the features are left
-                double[] vectorX = DatasetUtils.copyFeatures(atributos, classIndex);
-
-                Matrix current = null;
-                try {
-                    current = new Matrix(vectorX.length, vectorX.length);
-                } catch (Exception ex) {
-                    Logger.getLogger(VarianceReductionQueryStrategy.class.getName()).log(Level.SEVERE, null, ex);
+            //the features of the instances, without the attribute class
+            int d = unlabeled.numAttributes() - 1;
+
+            double[] features;
+            double[][] fisherT;
+
+            if (incrementalFisher && updateFisher(weights, d)) {
+                features = this.features;
+                fisherT = fisher;
+            } else {
+                features = featureBlock(unlabeled);
+                fisherT = fisherMatrix(features, weights, n, d);
+                ++fisherRecomputations;
+
+                if (incrementalFisher) {
+                    this.features = features;
+                    fisher = fisherT;
+                    fisherWeights = weights;
+                    squaredNorms = squaredNorms(features, n, d);
                 }
-
-                productVector(current, vectorX);
-
-                //it multiplies current * multi
-                current.timesEquals(mult);
-
-                //it adds current to matrixFisher
-                //plusEquals saves the result in matrixFisher
-                matrixFisher.plusEquals(current);
-
             }
 
-            double factorRegularizationValue = getFactorRegularization();
-
-            Matrix identity = Matrix.identity(dimensionMatrix, dimensionMatrix);
-
-            identity.timesEquals(factorRegularizationValue);
-
-            //the result joins to matrixFisher
-            matrixFisher.plusEquals(identity);
+            //to create the Fisher matrix, with the regularization factor
+            Matrix matrixFisher = new Matrix(regularized(fisherT, getFactorRegularization()));
 
             //do eigen decomposition
             EigenvalueDecomposition eigen = matrixFisher.eig();
 
-            //in case of file, the matrix v takes the matrix file from eigen
-            //in this case eigen cant not be destroy for the moment
-            Matrix v = eigen.getV();
-
             double[] landa = eigen.getRealEigenvalues();
 
+            //projections of the instances onto the eigenvectors
+            double[] projections = projections(features, eigen.getV(), n, d);
+
             double epsilonValue = getEpsilon();
 
             //variable copies of q to know if there has been some change
             double[] copiaQ = new double[q.length];
-            Arrays.fill(copiaQ, 1.0 / n);
+
+            if (!incrementalFisher || !warmStart(copiaQ)) {
+                Arrays.fill(copiaQ, 1.0 / n);
+            }
+
+            double[] f = new double[landa.length];
 
             //while it finds change in q, it keeps on iterating
             currentEpsilonIteration = 0;
@@ -182,28 +251,434 @@ public class VarianceReductionQueryStrategy extends AbstractSingleLabelQueryStra
                 System.arraycopy(copiaQ, 0, q, 0, q.length);
 
                 //process of finding f_sub_i
-                double[] f = new double[landa.length];
-                for (int j = 0; j < f.length; j++) {
-                    f[j] = 0;
+                computeF(f, q, piSubI, projections, n, d);
+
+                //the first process of finding q of the current iteration
+                computeQ(copiaQ, piSubI, projections, landa, f, n, d);
+
+                //the second step to find q in the iteration
+
+                /*the sum must be out, if it was inside and with copia_q then 
+                 *one would give priority to the last instance and the last one 
+                 * would be always chosen
+                 */
+                double suma = 0;
+                for (int j = 0; j < n; j++) {
+                    suma += copiaQ[j];
+                }
+
+                for (int i = 0; i < n; i++) {
+                    copiaQ[i] = copiaQ[i] / suma;
+                }
+
+            } while (change(q, copiaQ, epsilonValue));
+
+            //the values are saved
+            tempValues = new double[copiaQ.length];
+
+            System.arraycopy(copiaQ, 0, tempValues, 0, copiaQ.length);
+
+        }
+
+        return tempValues[instanceIndex];
+    }
+
+    /**
+     * Copies the features of the instances, without the attribute class, to a
+     * row-major block of n x d values. The missing values are copied as 0,
+     * otherwise the eigen decomposition of the Fisher matrix does not finish.
+     *
+     * @param instances The instances
+     * @return The feature block
+     */
+    private double[] featureBlock(Instances instances) {
+
+        int n = instances.numInstances();
+        int d = instances.numAttributes() - 1;
+        int classIndex = instances.classIndex();
+
+        double[] features = new double[n * d];
+
+        for (int i = 0; i < n; i++) {
+
+            Instance instance = instances.instance(i);
+
+            int k = i * d;
+
+            for (int a = 0; a < instances.numAttributes(); a++) {
+                if (a != classIndex) {
+                    features[k++] = instance.isMissing(a) ? 0 : instance.value(a);
+                }
+            }
+        }
+
+        return features;
+    }
+
+    /**
+     * Computes the upper triangle of the Fisher matrix sum(w_i * x_i * x_i').
+     * The upper triangle is split in tiles that are computed by different
+     * tasks, and every tile is accumulated by blocks of instances. Each
+     * element is accumulated in the order of the instances, so the result
+     * does not depend on the number of threads.
+     *
+     * @param features The feature block
+     * @param weights The weight of each instance
+     * @param n The number of instances
+     * @param d The number of features
+     * @return The upper triangle of the Fisher matrix
+     */
+    private double[][] fisherMatrix(final double[] features, final double[] weights,
+            final int n, final int d) {
+
+        final double[][] fisher = new double[d][d];
+
+        int tiles = (d + FISHER_TILE - 1) / FISHER_TILE;
+
+        //the pairs of tiles of the upper triangle
+        final int[] tileRows = new int[tiles * (tiles + 1) / 2];
+        final int[] tileColumns = new int[tileRows.length];
+
+        int t = 0;
+        for (int a = 0; a < tiles; a++) {
+            for (int b = a; b < tiles; b++) {
+                tileRows[t] = a * FISHER_TILE;
+                tileColumns[t++] = b * FISHER_TILE;
+            }
+        }
+
+        forRange(tileRows.length, 1, new RangeKernel() {
+            @Override
+            void run(int from, int to) {
+                for (int tile = from; tile < to; tile++) {
+                    fisherTile(fisher, features, weights, n, d, tileRows[tile], tileColumns[tile]);
+                }
+            }
+        });
+
+        return fisher;
+    }
+
+    /**
+     * Returns the full Fisher matrix plus the identity multiplied by the
+     * regularization factor.
+     *
+     * @param upper The upper triangle of the Fisher matrix
+     * @param regularization The regularization factor
+     * @return The regularized matrix
+     */
+    private static double[][] regularized(double[][] upper, double regularization) {
+
+        int d = upper.length;
+
+        double[][] matrix = new double[d][d];
+
+        for (int m = 0; m < d; m++) {
+
+            for (int nn = m; nn < d; nn++) {
+                matrix[m][nn] = upper[m][nn];
+                matrix[nn][m] = upper[m][nn];
+            }
+
+            matrix[m][m] += regularization;
+        }
+
+        return matrix;
+    }
+
+    /**
+     * Adds coefficient * x_i * x_i' to the upper triangle of the Fisher
+     * matrix.
+     */
+    private static void rankOneUpdate(double[][] fisher, double[] features,
+            int offset, double coefficient) {
+
+        int d = fisher.length;
+
+        for (int m = 0; m < d; m++) {
+
+            double[] row = fisher[m];
+            double xm = features[offset + m];
+
+            for (int nn = m; nn < d; nn++) {
+                row[nn] += xm * features[offset + nn] * coefficient;
+            }
+        }
+    }
+
+    private static double[] squaredNorms(double[] features, int n, int d) {
+
+        double[] norms = new double[n];
+
+        for (int i = 0; i < n; i++) {
+
+            double sum = 0;
+
+            for (int k = i * d; k < (i + 1) * d; k++) {
+                sum += features[k] * features[k];
+            }
+
+            norms[i] = sum;
+        }
+
+        return norms;
+    }
+
+    /**
+     * Updates the kept Fisher matrix with the current weights of the
+     * instances. The drift of an instance is the difference between its
+     * current weight and its weight in the matrix, multiplied by its squared
+     * norm. If the total drift exceeds the threshold, the instances with the
+     * largest drift are updated until the drift is half the threshold.
+     *
+     * @param weights The current weight of each instance
+     * @param d The number of features
+     * @return False if the matrix must be computed from scratch
+     */
+    private boolean updateFisher(double[] weights, int d) {
+
+        int n = weights.length;
+
+        if (fisher == null || fisherWeights.length != n || fisher.length != d) {
+            return false;
+        }
+
+        double[] drift = new double[n];
+        double mass = 0;
+        double totalDrift = 0;
+
+        for (int i = 0; i < n; i++) {
+            mass += weights[i] * squaredNorms[i];
+            drift[i] = Math.abs(weights[i] - fisherWeights[i]) * squaredNorms[i];
+            totalDrift += drift[i];
+        }
+
+        double allowed = fisherDriftThreshold * mass;
+
+        if (totalDrift <= allowed) {
+            return true;
+        }
+
+        int[] order = OrderUtils.argSort(drift, true);
+
+        int updates = 0;
+
+        while (updates < n && totalDrift > allowed / 2) {
+            totalDrift -= drift[order[updates++]];
+        }
+
+        //if most of the instances changed, it is cheaper to compute the matrix again
+        if (updates > n / 2) {
+            return false;
+        }
+
+        for (int u = 0; u < updates; u++) {
+
+            int i = order[u];
+
+            rankOneUpdate(fisher, features, i * d, weights[i] - fisherWeights[i]);
+
+            fisherWeights[i] = weights[i];
+        }
+
+        return true;
+    }
+
+    /**
+     * Downdates the kept Fisher matrix with the instances that leave the
+     * unlabeled set, and removes them from the kept structures.
+     *
+     * @param removed The indexes of the instances in the unlabeled set
+     */
+    private void removeFromFisher(List<Integer> removed) {
+
+        int n = fisherWeights.length;
+        int d = fisher.length;
+
+        boolean[] isRemoved = new boolean[n];
+        int numRemoved = 0;
+
+        for (int index : removed) {
+
+            if (!isRemoved[index]) {
+
+                isRemoved[index] = true;
+                ++numRemoved;
+
+                rankOneUpdate(fisher, features, index * d, -fisherWeights[index]);
+            }
+        }
 
-                    for (int i = 0; i < n; i++) {
-                        double mult = q[i] * piSubI[i] * (1 - piSubI[i]);
+        int remaining = n - numRemoved;
 
-                        //the values of the instance are had
-                        double[] atributos = unlabeled.instance(i).toDoubleArray();
+        double[] featuresT = new double[remaining * d];
+        double[] normsT = new double[remaining];
+        double[] weightsT = new double[remaining];
+        double[] valuesT = tempValues != null && tempValues.length == n
+                ? new double[remaining] : null;
 
-                        //the attribute class is eliminated, only the features are left
-                        double[] vectorX = DatasetUtils.copyFeatures(atributos, classIndex);
+        int pos = 0;
+
+        for (int i = 0; i < n; i++) {
+
+            if (!isRemoved[i]) {
+
+                System.arraycopy(features, i * d, featuresT, pos * d, d);
+                normsT[pos] = squaredNorms[i];
+                weightsT[pos] = fisherWeights[i];
+
+                if (valuesT != null) {
+                    valuesT[pos] = tempValues[i];
+                }
+
+                ++pos;
+            }
+        }
+
+        features = featuresT;
+        squaredNorms = normsT;
+        fisherWeights = weightsT;
+
+        if (valuesT != null) {
+            tempValues = valuesT;
+        }
+    }
+
+    /**
+     * Starts the iterations that find q from the solution of the previous
+     * iteration, normalized over the remaining instances.
+     *
+     * @param copiaQ The array to fill
+     * @return False if there is not a previous solution for the unlabeled set
+     */
+    private boolean warmStart(double[] copiaQ) {
+
+        if (tempValues == null || tempValues.length != copiaQ.length) {
+            return false;
+        }
+
+        double suma = 0;
+        for (int i = 0; i < copiaQ.length; i++) {
+            suma += tempValues[i];
+        }
+
+        if (!(suma > 0)) {
+            return false;
+        }
+
+        for (int i = 0; i < copiaQ.length; i++) {
+            copiaQ[i] = tempValues[i] / suma;
+        }
+
+        return true;
+    }
+
+    private void clearFisher() {
+        features = null;
+        squaredNorms = null;
+        fisher = null;
+        fisherWeights = null;
+    }
+
+    /**
+     * Accumulates a tile of the upper triangle of the Fisher matrix.
+     */
+    private static void fisherTile(double[][] fisher, double[] features,
+            double[] weights, int n, int d, int rowStart, int columnStart) {
+
+        int rowEnd = Math.min(d, rowStart + FISHER_TILE);
+        int columnEnd = Math.min(d, columnStart + FISHER_TILE);
+
+        for (int block = 0; block < n; block += INSTANCE_BLOCK) {
+
+            int blockEnd = Math.min(n, block + INSTANCE_BLOCK);
+
+            for (int m = rowStart; m < rowEnd; m++) {
+
+                double[] row = fisher[m];
+                int first = Math.max(m, columnStart);
+
+                for (int i = block; i < blockEnd; i++) {
+
+                    int offset = i * d;
+                    double xm = features[offset + m];
+                    double mult = weights[i];
+
+                    for (int nn = first; nn < columnEnd; nn++) {
+                        row[nn] += xm * features[offset + nn] * mult;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the projections of the instances onto the eigenvectors, a
+     * row-major block of n x d values. The blocks of instances are computed by
+     * different tasks.
+     *
+     * @param features The feature block
+     * @param v The matrix of eigenvectors, one eigenvector per column
+     * @param n The number of instances
+     * @param d The number of features
+     * @return The projections
+     */
+    private double[] projections(final double[] features, Matrix v, int n, final int d) {
+
+        final double[] projections = new double[n * d];
+
+        //the eigenvectors are stored by rows to be traversed sequentially
+        final double[][] vectors = v.transpose().getArray();
+
+        forRange(n, KERNEL_GRAIN, new RangeKernel() {
+            @Override
+            void run(int from, int to) {
+                for (int i = from; i < to; i++) {
+
+                    int offset = i * d;
+
+                    for (int j = 0; j < d; j++) {
+
+                        double[] vector = vectors[j];
 
                         //it multiplies vector_x with vector_columna of V
-                        //vector_x it is: 1 X n
-                        //vector_de_V it is: n X 1
-                        //result: a number
                         double multVectores = 0;
-                        for (int k = 0; k < vectorX.length; k++) {
-                            multVectores += vectorX[k] * v.get(k, j);
+                        for (int k = 0; k < d; k++) {
+                            multVectores += features[offset + k] * vector[k];
                         }
 
+                        projections[offset + j] = multVectores;
+                    }
+                }
+            }
+        });
+
+        return projections;
+    }
+
+    /**
+     * Computes f_j = sum(q_i * pi_i * (1 - pi_i) * p_ij^2) for every
+     * eigenvector j. The eigenvectors are split among the tasks, so each f_j
+     * is accumulated in the order of the instances.
+     */
+    private void computeF(final double[] f, final double[] q, final double[] piSubI,
+            final double[] projections, final int n, final int d) {
+
+        forRange(d, Math.max(1, d / 64), new RangeKernel() {
+            @Override
+            void run(int from, int to) {
+
+                Arrays.fill(f, from, to, 0);
+
+                for (int i = 0; i < n; i++) {
+
+                    double mult = q[i] * piSubI[i] * (1 - piSubI[i]);
+                    int offset = i * d;
+
+                    for (int j = from; j < to; j++) {
+
+                        double multVectores = projections[offset + j];
+
                         //the result rises up to the square
                         multVectores *= multVectores;
 
@@ -211,32 +686,32 @@ public class VarianceReductionQueryStrategy extends AbstractSingleLabelQueryStra
                         f[j] += mult * multVectores;
                     }
                 }
+            }
+        });
+    }
 
-                //the first process of finding q of the current iteration       
-                for (int i = 0; i < n; i++) {
-                    double mult = copiaQ[i] * copiaQ[i] * piSubI[i] * (1 - piSubI[i]);
+    /**
+     * Computes q_i = q_i^2 * pi_i * (1 - pi_i) * sum((landa_j * p_ij)^2 /
+     * f_j^2) for every instance, the value is not normalized.
+     */
+    private void computeQ(final double[] copiaQ, final double[] piSubI,
+            final double[] projections, final double[] landa, final double[] f,
+            int n, final int d) {
 
-                    //the values of the instance are had
-                    double[] atributos = unlabeled.instance(i).toDoubleArray();
+        forRange(n, KERNEL_GRAIN, new RangeKernel() {
+            @Override
+            void run(int from, int to) {
+                for (int i = from; i < to; i++) {
 
-                    //the attribute class is eliminated, only the features are left
-                    double[] vectorX = DatasetUtils.copyFeatures(atributos, classIndex);
+                    double mult = copiaQ[i] * copiaQ[i] * piSubI[i] * (1 - piSubI[i]);
+                    int offset = i * d;
 
-                    //the following ∑ is realized
+                    //the following sum is realized
                     double sumatoria = 0;
-                    for (int j = 0; j < landa.length; j++) {
-
-                        //it multiplies vector_x with vector_columna of V
-                        //vector_x is: 1 X n
-                        //vector_de_V is: n X 1
-                        //result: a number
-                        double multVectores = 0;
-                        for (int k = 0; k < vectorX.length; k++) {
-                            multVectores += vectorX[k] * v.get(k, j);
-                        }
+                    for (int j = 0; j < d; j++) {
 
-                        //the result multiplies with landa[j]
-                        multVectores *= landa[j];
+                        //the projection multiplies with landa[j]
+                        double multVectores = projections[offset + j] * landa[j];
 
                         //it rises up to the square
                         multVectores *= multVectores;
@@ -251,34 +726,103 @@ public class VarianceReductionQueryStrategy extends AbstractSingleLabelQueryStra
                     //the value of copia_q [i] is: mult * sumatoria
                     copiaQ[i] = mult * sumatoria;
                 }
+            }
+        });
+    }
 
-                //the second step to find q in the iteration
+    /**
+     * Runs the kernel over the range [0, size). If the parallel scoring is
+     * enabled, the range is split in tasks of at least grain elements that are
+     * run on the scoring pool.
+     */
+    private void forRange(int size, int grain, RangeKernel kernel) {
 
-                /*the sum must be out, if it was inside and with copia_q then 
-                 *one would give priority to the last instance and the last one 
-                 * would be always chosen
-                 */
-                double suma = 0;
-                for (int j = 0; j < n; j++) {
-                    suma += copiaQ[j];
-                }
+        if (!isParallelScoring() || getScoringThreads() < 2 || size <= grain) {
+            kernel.run(0, size);
+            return;
+        }
 
-                for (int i = 0; i < n; i++) {
-                    copiaQ[i] = copiaQ[i] / suma;
-                }
+        getScoringPool().invoke(new RangeTask(kernel, 0, size, grain));
+    }
 
-            } while (change(q, copiaQ, epsilonValue));
+    /**
+     * Body of a kernel over a range of indexes.
+     */
+    private abstract static class RangeKernel {
 
-            //the values are saved
-            tempValues = new double[copiaQ.length];
+        abstract void run(int from, int to);
+    }
 
-            System.arraycopy(copiaQ, 0, tempValues, 0, copiaQ.length);
+    /**
+     * Fork-join task that splits a range of indexes of a kernel.
+     */
+    private static class RangeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
 
+        private final RangeKernel kernel;
+
+        private final int from;
+
+        private final int to;
+
+        private final int grain;
+
+        RangeTask(RangeKernel kernel, int from, int to, int grain) {
+            this.kernel = kernel;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from > grain) {
+
+                int middle = (from + to) >>> 1;
+
+                invokeAll(new RangeTask(kernel, from, middle, grain),
+                        new RangeTask(kernel, middle, to, grain));
+                return;
+            }
+
+            kernel.run(from, to);
         }
+    }
+
+    /**
+     * Update the labeled data. The kept Fisher matrix is downdated with the
+     * selected instances.
+     */
+    @Override
+    public void updateLabeledData() {
+
+        if (fisher != null) {
+
+            if (fisherWeights.length == getUnlabelledData().getNumInstances()) {
+                removeFromFisher(getSelectedInstances());
+            } else {
+                clearFisher();
+            }
+        }
+
+        super.updateLabeledData();
+    }
 
-        int indice = unlabeled.indexOf(instance);
+    /**
+     * Set the unlabeled data, the kept Fisher matrix is discarded.
+     *
+     * @param unlabelledData Instances unlabeled
+     */
+    @Override
+    public void setUnlabelledData(IDataset unlabelledData) {
+
+        clearFisher();
+
+        unlabelledSize = -1;
 
-        return tempValues[indice];
+        super.setUnlabelledData(unlabelledData);
     }
 
     /**
@@ -402,6 +946,60 @@ public class VarianceReductionQueryStrategy extends AbstractSingleLabelQueryStra
         this.maxEpsilonIteration = maxEpsilonIteration;
     }
 
+    /**
+     * Set whether the Fisher matrix is kept between iterations and updated
+     * incrementally.
+     *
+     * @param incrementalFisher The flag
+     */
+    public void setIncrementalFisher(boolean incrementalFisher) {
+        this.incrementalFisher = incrementalFisher;
+
+        if (!incrementalFisher) {
+            clearFisher();
+        }
+    }
+
+    /**
+     * Get whether the Fisher matrix is kept between iterations and updated
+     * incrementally.
+     *
+     * @return The flag
+     */
+    public boolean isIncrementalFisher() {
+        return incrementalFisher;
+    }
+
+    /**
+     * Set the maximum drift allowed in the incremental Fisher matrix, relative
+     * to the total weight of the unlabeled set.
+     *
+     * @param fisherDriftThreshold The threshold, 0 updates every instance
+     * whose weight changed
+     */
+    public void setFisherDriftThreshold(double fisherDriftThreshold) {
+        this.fisherDriftThreshold = fisherDriftThreshold;
+    }
+
+    /**
+     * Get the maximum drift allowed in the incremental Fisher matrix.
+     *
+     * @return The threshold
+     */
+    public double getFisherDriftThreshold() {
+        return fisherDriftThreshold;
+    }
+
+    /**
+     * Get the number of times that the Fisher matrix was computed from
+     * scratch.
+     *
+     * @return The number of computations
+     */
+    public int getFisherRecomputations() {
+        return fisherRecomputations;
+    }
+
     /**
      *
      * @param configuration Configuration for variance reduction strategy.
@@ -412,6 +1010,8 @@ public class VarianceReductionQueryStrategy extends AbstractSingleLabelQueryStra
      * <li>epsilon= double</li>
      * <li>epsilon-iteration= int</li>
      * <li>factor-regularization= double</li>
+     * <li>incremental-fisher= boolean</li>
+     * <li>fisher-drift-threshold= double</li>
      * </ul>
      */
     @Override
@@ -431,5 +1031,31 @@ public class VarianceReductionQueryStrategy extends AbstractSingleLabelQueryStra
                 getDouble("factor-regularization", factorRegularization);
         setFactorRegularization(currentFactorRegularization);
 
+        //Set the incremental Fisher matrix
+        boolean currentIncremental = configuration.getBoolean("incremental-fisher", incrementalFisher);
+        setIncrementalFisher(currentIncremental);
+
+        //Set the drift threshold of the incremental Fisher matrix
+        double currentDrift = configuration.getDouble("fisher-drift-threshold", fisherDriftThreshold);
+
+        if (currentDrift < 0) {
+            throw new ConfigurationRuntimeException(
+                    "\nIllegal fisher drift threshold: <fisher-drift-threshold>" + currentDrift
+                    + "</fisher-drift-threshold>" + ". The threshold >= 0");
+        }
+
+        setFisherDriftThreshold(currentDrift);
+
+    }
+
+    /**
+     * The utilities are computed at once for the whole unlabeled set and
+     * cached in the first call, so the pool is scored sequentially.
+     *
+     * @return false
+     */
+    @Override
+    protected boolean supportsParallelScoring() {
+        return false;
     }
 }
@@ -20,6 +20,7 @@ import java.util.logging.Logger;
 import net.sf.jclal.classifier.AbstractClassifier;
 import net.sf.jclal.classifier.WekaComitteClassifier;
 import weka.core.Instance;
+import weka.core.Instances;
 
 /**
  * Implementation of Query By Committee query strategy, variant: Vote entropy.
@@ -53,29 +54,120 @@ public class VoteEntropyQueryStrategy extends QueryByCommittee {
 
             int[] votes = ((WekaComitteClassifier) getClassifier()).countVotesForEachClass(instance);
 
-            double division;
+            return entropy(votes, committeeSize);
 
-            double sumatoria = 0;
+        } catch (Exception ex) {
+
+            Logger.getLogger(VoteEntropyQueryStrategy.class.getName()).log(Level.SEVERE, null, ex);
+
+        }
+        return 0;
+
+    }
 
-            for (int vote : votes) {
+    /**
+     * Computes the utilities of a range of unlabeled instances. The members
+     * of the committee predict the whole range in a single pass, and the
+     * votes are counted from their distributions.
+     *
+     * @param from The index of the first instance, inclusive
+     * @param to The index of the last instance, exclusive
+     * @param values The array where the utilities are stored
+     */
+    @Override
+    public void utilityInstances(int from, int to, double[] values) {
+
+        try {
 
-                division = vote / (double) committeeSize;
+            WekaComitteClassifier committee = (WekaComitteClassifier) getClassifier();
 
-                if (vote != 0) {
-                    division *= Math.log(division);
-                }
+            int committeeSize = committee.getNumberClassifiers();
 
-                sumatoria += division;
+            Instances unlabelled = getUnlabelledData().getDataset();
+
+            double[][][] probs = committee.distributionsForInstancesByMembers(unlabelled, from, to);
+
+            for (int i = from; i < to; i++) {
+
+                int[] votes = committee.countVotesForEachClass(unlabelled.instance(i),
+                        probs[i - from]);
+
+                values[i] = entropy(votes, committeeSize);
             }
 
-            return -sumatoria;
+        } catch (Exception ex) {
+
+            Logger.getLogger(VoteEntropyQueryStrategy.class.getName()).log(Level.SEVERE, null, ex);
+
+            super.utilityInstances(from, to, values);
+        }
+    }
+
+    /**
+     * Computes the utilities of the instances stored at a range of positions
+     * of an array of indexes. The members of the committee predict the whole
+     * range in a single pass, and the votes are counted from their
+     * distributions.
+     *
+     * @param indexes The indexes of the instances in the unlabeled set
+     * @param from The first position of the array of indexes, inclusive
+     * @param to The last position of the array of indexes, exclusive
+     * @param values The array where the utilities are stored
+     */
+    @Override
+    protected void utilityInstances(int[] indexes, int from, int to, double[] values) {
+
+        try {
+
+            WekaComitteClassifier committee = (WekaComitteClassifier) getClassifier();
+
+            int committeeSize = committee.getNumberClassifiers();
+
+            Instances unlabelled = getUnlabelledData().getDataset();
+
+            double[][][] probs = committee.distributionsForInstancesByMembers(unlabelled,
+                    indexes, from, to);
+
+            for (int i = from; i < to; i++) {
+
+                int[] votes = committee.countVotesForEachClass(unlabelled.instance(indexes[i]),
+                        probs[i - from]);
+
+                values[i] = entropy(votes, committeeSize);
+            }
 
         } catch (Exception ex) {
 
             Logger.getLogger(VoteEntropyQueryStrategy.class.getName()).log(Level.SEVERE, null, ex);
 
+            super.utilityInstances(indexes, from, to, values);
+        }
+    }
+
+    /**
+     * The entropy of the votes.
+     *
+     * @param votes The votes of the committee for each class
+     * @param committeeSize The number of members
+     * @return The entropy
+     */
+    private double entropy(int[] votes, int committeeSize) {
+
+        double division;
+
+        double sumatoria = 0;
+
+        for (int vote : votes) {
+
+            division = vote / (double) committeeSize;
+
+            if (vote != 0) {
+                division *= Math.log(division);
+            }
+
+            sumatoria += division;
         }
-        return 0;
 
+        return -sumatoria;
     }
 }
@@ -16,12 +16,48 @@
 package net.sf.jclal.classifier;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import mulan.classifier.MultiLabelLearnerBase;
+import mulan.classifier.MultiLabelOutput;
 import mulan.classifier.transformation.TransformationBasedMultiLabelLearner;
 import mulan.data.InvalidDataFormatException;
+import mulan.data.MultiLabelInstances;
+import mulan.evaluation.Evaluation;
 import mulan.evaluation.Evaluator;
+import mulan.evaluation.measure.AveragePrecision;
+import mulan.evaluation.measure.Coverage;
+import mulan.evaluation.measure.ErrorSetSize;
+import mulan.evaluation.measure.ExampleBasedAccuracy;
+import mulan.evaluation.measure.ExampleBasedFMeasure;
+import mulan.evaluation.measure.ExampleBasedPrecision;
+import mulan.evaluation.measure.ExampleBasedRecall;
+import mulan.evaluation.measure.ExampleBasedSpecificity;
+import mulan.evaluation.measure.GeometricMeanAverageInterpolatedPrecision;
+import mulan.evaluation.measure.GeometricMeanAveragePrecision;
+import mulan.evaluation.measure.HammingLoss;
+import mulan.evaluation.measure.HierarchicalLoss;
+import mulan.evaluation.measure.IsError;
+import mulan.evaluation.measure.MacroAUC;
+import mulan.evaluation.measure.MacroFMeasure;
+import mulan.evaluation.measure.MacroPrecision;
+import mulan.evaluation.measure.MacroRecall;
+import mulan.evaluation.measure.MacroSpecificity;
+import mulan.evaluation.measure.MeanAverageInterpolatedPrecision;
+import mulan.evaluation.measure.MeanAveragePrecision;
+import mulan.evaluation.measure.Measure;
+import mulan.evaluation.measure.MicroAUC;
+import mulan.evaluation.measure.MicroFMeasure;
+import mulan.evaluation.measure.MicroPrecision;
+import mulan.evaluation.measure.MicroRecall;
+import mulan.evaluation.measure.MicroSpecificity;
+import mulan.evaluation.measure.OneError;
+import mulan.evaluation.measure.RankingLoss;
+import mulan.evaluation.measure.SubsetAccuracy;
 import net.sf.jclal.core.IDataset;
 import net.sf.jclal.dataset.MulanDataset;
 import net.sf.jclal.evaluation.measure.AbstractEvaluation;
@@ -31,6 +67,7 @@ import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.ConfigurationRuntimeException;
 import weka.classifiers.Classifier;
 import weka.core.Instance;
+import weka.core.Instances;
 
 /**
  *
@@ -78,6 +115,45 @@ public class MulanClassifier extends AbstractClassifier {
         return null;
     }
 
+    /**
+     * Returns the confidences of a range of instances.
+     *
+     * @param instances The instances to test
+     * @param from The index of the first instance, inclusive
+     * @param to The index of the last instance, exclusive
+     * @return the confidences of each instance
+     */
+    @Override
+    public double[][] distributionsForInstances(Instances instances, int from, int to) {
+
+        try {
+
+            double[][] confidences = new double[to - from][];
+
+            if (classifier instanceof ParallelBinaryRelevance) {
+
+                MultiLabelOutput[] outputs = ((ParallelBinaryRelevance) classifier).makePredictions(instances, from, to);
+
+                for (int i = 0; i < outputs.length; i++) {
+                    confidences[i] = outputs[i].getConfidences();
+                }
+
+                return confidences;
+            }
+
+            for (int i = from; i < to; i++) {
+                confidences[i - from] = classifier.makePrediction(instances.instance(i)).getConfidences();
+            }
+
+            return confidences;
+
+        } catch (Exception e) {
+            Logger.getLogger(MulanClassifier.class.getName()).log(
+                    Level.SEVERE, null, e);
+        }
+        return null;
+    }
+
     /**
      *
      * @param instance The instance to test
@@ -113,6 +189,10 @@ public class MulanClassifier extends AbstractClassifier {
     }
 
     /**
+     * Tests the model with the Mulan evaluator. If the classifier is a
+     * ParallelBinaryRelevance, the test set is predicted in batch with
+     * makePredictions and the outputs are given to the same measures than
+     * the Mulan evaluator uses.
      *
      * @param instances The set of instances to test
      * @return an evaluation of the model.
@@ -123,12 +203,19 @@ public class MulanClassifier extends AbstractClassifier {
         try {
             // test phase with the actual model
 
-            Evaluator evaluator = new Evaluator();
+            MultiLabelInstances dataset = ((MulanDataset) instances).getMultiLabelDataset();
 
             MultiLabelEvaluation mleval = new MultiLabelEvaluation();
-            
-            MulanEvaluation eval=new MulanEvaluation(evaluator.evaluate(classifier,
-                    ((MulanDataset) instances).getMultiLabelDataset()), ((MulanDataset) instances).getMultiLabelDataset());
+
+            Evaluation evaluation;
+
+            if (classifier instanceof ParallelBinaryRelevance) {
+                evaluation = evaluateInBatch((ParallelBinaryRelevance) classifier, dataset);
+            } else {
+                evaluation = new Evaluator().evaluate(classifier, dataset);
+            }
+
+            MulanEvaluation eval = new MulanEvaluation(evaluation, dataset);
 
             mleval.setEvaluation(eval);
 
@@ -152,8 +239,145 @@ public class MulanClassifier extends AbstractClassifier {
         return null;
 
     }
-    
-    
+
+    /**
+     * Evaluates a ParallelBinaryRelevance in the same way than the Mulan
+     * evaluator, but the test set is predicted in batch. As in the evaluator,
+     * the instances with missing labels are skipped, the labels are hidden
+     * before the prediction and a measure that fails is not updated anymore.
+     *
+     * @param learner The learner to evaluate
+     * @param dataset The test set
+     * @return The evaluation of the learner
+     * @throws Exception If the test set cannot be predicted
+     */
+    private Evaluation evaluateInBatch(ParallelBinaryRelevance learner,
+            MultiLabelInstances dataset) throws Exception {
+
+        int numLabels = dataset.getNumLabels();
+
+        int[] labelIndices = dataset.getLabelIndices();
+
+        Instances data = dataset.getDataSet();
+
+        Instances queries = new Instances(data, data.numInstances());
+
+        List<boolean[]> trueLabels = new ArrayList<boolean[]>(data.numInstances());
+
+        for (int i = 0; i < data.numInstances(); i++) {
+
+            Instance instance = data.instance(i);
+
+            if (dataset.hasMissingLabels(instance)) {
+                continue;
+            }
+
+            boolean[] labels = new boolean[numLabels];
+
+            for (int j = 0; j < numLabels; j++) {
+                labels[j] = instance.attribute(labelIndices[j]).value(
+                        (int) instance.value(labelIndices[j])).equals("1");
+            }
+
+            trueLabels.add(labels);
+
+            Instance query = (Instance) instance.copy();
+
+            for (int j = 0; j < numLabels; j++) {
+                query.setMissing(labelIndices[j]);
+            }
+
+            queries.add(query);
+        }
+
+        MultiLabelOutput[] outputs = learner.makePredictions(queries, 0, queries.numInstances());
+
+        List<Measure> measures = prepareMeasures(outputs.length > 0
+                ? outputs[0] : learner.makePrediction(data.instance(0)), dataset);
+
+        for (Measure measure : measures) {
+            measure.reset();
+        }
+
+        Set<Measure> failed = new HashSet<Measure>();
+
+        for (int i = 0; i < outputs.length; i++) {
+
+            for (Measure measure : measures) {
+
+                if (failed.contains(measure)) {
+                    continue;
+                }
+
+                try {
+                    measure.update(outputs[i], trueLabels.get(i));
+                } catch (Exception e) {
+                    failed.add(measure);
+                }
+            }
+        }
+
+        return new Evaluation(measures, dataset);
+    }
+
+    /**
+     * The measures that the Mulan evaluator computes for an output of the
+     * learner.
+     *
+     * @param output An output of the learner
+     * @param dataset The test set
+     * @return The measures
+     */
+    private static List<Measure> prepareMeasures(MultiLabelOutput output,
+            MultiLabelInstances dataset) {
+
+        List<Measure> measures = new ArrayList<Measure>();
+
+        int numLabels = dataset.getNumLabels();
+
+        if (output.hasBipartition()) {
+            measures.add(new HammingLoss());
+            measures.add(new SubsetAccuracy());
+            measures.add(new ExampleBasedPrecision());
+            measures.add(new ExampleBasedRecall());
+            measures.add(new ExampleBasedFMeasure());
+            measures.add(new ExampleBasedAccuracy());
+            measures.add(new ExampleBasedSpecificity());
+            measures.add(new MicroPrecision(numLabels));
+            measures.add(new MicroRecall(numLabels));
+            measures.add(new MicroFMeasure(numLabels));
+            measures.add(new MicroSpecificity(numLabels));
+            measures.add(new MacroPrecision(numLabels));
+            measures.add(new MacroRecall(numLabels));
+            measures.add(new MacroFMeasure(numLabels));
+            measures.add(new MacroSpecificity(numLabels));
+        }
+
+        if (output.hasRanking()) {
+            measures.add(new AveragePrecision());
+            measures.add(new Coverage());
+            measures.add(new OneError());
+            measures.add(new IsError());
+            measures.add(new ErrorSetSize());
+            measures.add(new RankingLoss());
+        }
+
+        if (output.hasConfidences()) {
+            measures.add(new MeanAveragePrecision(numLabels));
+            measures.add(new GeometricMeanAveragePrecision(numLabels));
+            measures.add(new MeanAverageInterpolatedPrecision(numLabels, 10));
+            measures.add(new GeometricMeanAverageInterpolatedPrecision(numLabels, 10));
+            measures.add(new MicroAUC(numLabels));
+            measures.add(new MacroAUC(numLabels));
+        }
+
+        if (dataset.getLabelsMetaData().isHierarchy()) {
+            measures.add(new HierarchicalLoss(dataset));
+        }
+
+        return measures;
+    }
+
     @Override
     public String toString() {
 
@@ -1,8 +1,15 @@
 package net.sf.jclal.classifier;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import mulan.classifier.ModelInitializationException;
 import mulan.classifier.MultiLabelOutput;
 import mulan.classifier.transformation.TransformationBasedMultiLabelLearner;
 import mulan.data.MultiLabelInstances;
@@ -10,23 +17,61 @@ import mulan.transformations.BinaryRelevanceTransformation;
 import weka.classifiers.Classifier;
 import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.SerializedObject;
 
 /**
  * Parallel implementation of the BR method.
  *
+ * The binary models are built and queried on a fork-join pool shared by all
+ * the learners, so no threads are created for each prediction. The
+ * predictions of a set of instances are computed by tiles of a label and a
+ * block of instances.
+ *
+ * The prediction does not modify the learner: every task borrows a copy of
+ * the binary model of its label and a transformation, so several threads can
+ * query the same trained learner at the same time. The built models are never
+ * lent to the tasks, since a Weka classifier can change its internal state
+ * while it predicts. Each model is serialized once after the training and the
+ * copies are created from those bytes.
+ *
  * @author Oscar Gabriel Reyes Pupo
  */
 @SuppressWarnings("serial")
 public class ParallelBinaryRelevance extends TransformationBasedMultiLabelLearner {
 
     /**
-     * The ensemble of binary relevance models. These are Weka Classifier
-     * objects.
+     * Number of instances predicted by a tile of the batched prediction.
      */
-    protected WekaClassifierThread[] ensembleThread;
+    private static final int BLOCK = 64;
+
+    /**
+     * The pool shared by the learners to build and query the binary models.
+     */
+    private static ForkJoinPool labelPool;
+
+    /**
+     * The header of the training set, used to create the transformations of
+     * the tasks.
+     */
+    protected MultiLabelInstances header;
+
+    /**
+     * The transformations used by the tasks, the filters of a transformation
+     * cannot be used by several threads at the same time.
+     */
+    private transient Queue<BinaryRelevanceTransformation> transformations;
+
+    /**
+     * The copies of the binary model of each label used by the tasks.
+     */
+    private transient List<Queue<Classifier>> models;
+
+    /**
+     * The serialized binary model of each label, the copies of the tasks are
+     * created from them.
+     */
+    private transient SerializedObject[] serializedModels;
 
-    private transient ExecutorService threadExecutor;
-    
     /**
      * The ensemble of binary relevance models. These are Weka Classifier
      * objects.
@@ -50,101 +95,368 @@ public class ParallelBinaryRelevance extends TransformationBasedMultiLabelLearne
 
     @Override
     protected void buildInternal(MultiLabelInstances train) throws Exception {
-        try {
 
-            ensemble = null;
+        ensemble = null;
 
-            threadExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        transformations = null;
 
-            ensembleThread = new WekaClassifierThread[numLabels];
+        models = null;
 
-            correspondence = new String[numLabels];
+        serializedModels = null;
 
-            brt = new BinaryRelevanceTransformation(train);
+        Classifier[] built = new Classifier[numLabels];
 
-            for (int i = 0; i < numLabels; i++) {
+        correspondence = new String[numLabels];
 
-                correspondence[i] = train.getDataSet().attribute(labelIndices[i]).name();
+        brt = new BinaryRelevanceTransformation(train);
 
-                Instances shell = brt.transformInstances(i);
+        header = train.reintegrateModifiedDataSet(new Instances(train.getDataSet(), 0));
 
-                ensembleThread[i] = new WekaClassifierThread(weka.classifiers.AbstractClassifier.makeCopy(baseClassifier), shell);
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(numLabels);
 
-                threadExecutor.execute(ensembleThread[i]);
-            }
+        for (int i = 0; i < numLabels; i++) {
+
+            correspondence[i] = train.getDataSet().attribute(labelIndices[i]).name();
+
+            final Instances shell = brt.transformInstances(i);
+
+            final Classifier model = weka.classifiers.AbstractClassifier.makeCopy(baseClassifier);
+
+            built[i] = model;
+
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    model.buildClassifier(shell);
+                    return null;
+                }
+            });
+        }
+
+        for (Future<Void> future : getLabelPool().invokeAll(tasks)) {
 
-            threadExecutor.shutdown();
+            try {
+                future.get();
+            } catch (ExecutionException e) {
 
-            if (!threadExecutor.awaitTermination(30, TimeUnit.DAYS)) {
-                System.out.println("Threadpool timeout occurred");
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+
+                throw e;
             }
+        }
 
-        } catch (InterruptedException ie) {
-            System.out.println("Threadpool prematurely terminated due to interruption in thread that created pool");
+        SerializedObject[] serialized = new SerializedObject[numLabels];
+
+        for (int i = 0; i < numLabels; i++) {
+            serialized[i] = new SerializedObject(built[i]);
         }
 
+        serializedModels = serialized;
+
+        ensemble = built;
     }
 
-    @Override
-    protected MultiLabelOutput makePredictionInternal(Instance instance) {
+    /**
+     * Returns the pool used to build and query the binary models.
+     *
+     * @return The label pool
+     */
+    private static synchronized ForkJoinPool getLabelPool() {
 
-        threadExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        if (labelPool == null) {
+            labelPool = new ForkJoinPool();
+        }
 
-        boolean[] bipartition = new boolean[numLabels];
-        double[] confidences = new double[numLabels];
+        return labelPool;
+    }
 
-        try {
+    @Override
+    protected MultiLabelOutput makePredictionInternal(final Instance instance) throws Exception {
+
+        initTasks();
 
-            for (int counter = 0; counter < numLabels; counter++) {
+        final boolean[] bipartition = new boolean[numLabels];
+        final double[] confidences = new double[numLabels];
 
-                Instance transformedInstance = brt.transformInstance(instance, counter);
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(numLabels);
 
-                double distribution[];
+        for (int counter = 0; counter < numLabels; counter++) {
 
-                //To test the instance
-                ensembleThread[counter].setAction(1);
+            final int label = counter;
 
-                ensembleThread[counter].setCurrentInstance(transformedInstance);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
 
-                try {
+                    Classifier model = borrowModel(label);
 
-                    threadExecutor.execute(ensembleThread[counter]);
+                    BinaryRelevanceTransformation transformation = borrowTransformation();
+
+                    try {
+                        predict(transformation, model, instance, label, bipartition, confidences);
+                    } finally {
+                        models.get(label).offer(model);
+                        transformations.offer(transformation);
+                    }
 
-                } catch (Exception e) {
-                    System.out.println(e);
                     return null;
                 }
+            });
+        }
+
+        for (Future<Void> future : getLabelPool().invokeAll(tasks)) {
+
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+
+                throw e;
             }
+        }
+
+        MultiLabelOutput mlo = new MultiLabelOutput(bipartition, confidences);
+
+        return mlo;
+    }
+
+    /**
+     * Predicts a range of instances. The work is split in tiles of a label
+     * and a block of instances that are computed on the shared pool, every
+     * tile borrows a copy of the binary model of its label, so the copies
+     * made are bounded by the number of threads. The outputs are the same
+     * than the outputs of makePrediction.
+     *
+     * @param instances The instances to predict
+     * @param from The index of the first instance, inclusive
+     * @param to The index of the last instance, exclusive
+     * @return The output of each instance
+     * @throws Exception If the model is not built or an instance cannot be
+     * predicted
+     */
+    public MultiLabelOutput[] makePredictions(Instances instances, int from, int to)
+            throws Exception {
+
+        if (ensemble == null) {
+            throw new ModelInitializationException("The model has not been trained.");
+        }
+
+        initTasks();
+
+        int size = to - from;
+
+        boolean[][] bipartitions = new boolean[size][numLabels];
+        double[][] confidences = new double[size][numLabels];
 
-            threadExecutor.shutdown();
+        int blocks = (size + BLOCK - 1) / BLOCK;
 
-            if (!threadExecutor.awaitTermination(30, TimeUnit.DAYS)) {
-                System.out.println("Threadpool timeout occurred");
+        TileTask task = new TileTask(instances, from, to, blocks, bipartitions,
+                confidences, 0, blocks * numLabels);
+
+        if (blocks * numLabels <= 1) {
+            task.compute();
+        } else {
+            getLabelPool().invoke(task);
+        }
+
+        MultiLabelOutput[] outputs = new MultiLabelOutput[size];
+
+        for (int i = 0; i < size; i++) {
+            outputs[i] = new MultiLabelOutput(bipartitions[i], confidences[i]);
+        }
+
+        return outputs;
+    }
+
+    /**
+     * Creates the empty queues of the tasks. The models are serialized here
+     * if the learner was deserialized after the training.
+     */
+    private synchronized void initTasks() throws Exception {
+
+        if (models != null) {
+            return;
+        }
+
+        if (serializedModels == null) {
+
+            SerializedObject[] serialized = new SerializedObject[numLabels];
+
+            for (int l = 0; l < numLabels; l++) {
+                serialized[l] = new SerializedObject(ensemble[l]);
             }
-        } catch (InterruptedException ie) {
-            System.out.println("Threadpool prematurely terminated due to interruption in thread that created pool");
+
+            serializedModels = serialized;
         }
 
-        for (int counter = 0; counter < numLabels; counter++) {
+        List<Queue<Classifier>> copies = new ArrayList<Queue<Classifier>>(numLabels);
+
+        for (int l = 0; l < numLabels; l++) {
+            copies.add(new ConcurrentLinkedQueue<Classifier>());
+        }
+
+        transformations = new ConcurrentLinkedQueue<BinaryRelevanceTransformation>();
 
-            double distribution[] = ensembleThread[counter].getDistributionForInstance();
+        models = copies;
+    }
+
+    /**
+     * Takes a copy of the binary model of a label that no other thread is
+     * using, a new copy is created from the serialized model if all of them
+     * are in use.
+     */
+    private Classifier borrowModel(int label) throws Exception {
+
+        Classifier model = models.get(label).poll();
 
-            int maxIndex = (distribution[0] > distribution[1]) ? 0 : 1;
+        if (model == null) {
 
-            // Ensure correct predictions both for class values {0,1} and {1,0}
-            bipartition[counter] = (maxIndex == 1);
+            model = (Classifier) serializedModels[label].getObject();
 
-            // The confidence of the label being equal to 1
-            confidences[counter] = distribution[1];
+            if (model == null) {
+                throw new Exception("The model of the label " + correspondence[label]
+                        + " cannot be copied");
+            }
         }
 
-        MultiLabelOutput mlo = new MultiLabelOutput(bipartition, confidences);
+        return model;
+    }
 
-        return mlo;
+    /**
+     * Takes a transformation that no other thread is using, a new one is
+     * created if all of them are in use.
+     */
+    private BinaryRelevanceTransformation borrowTransformation() throws Exception {
+
+        BinaryRelevanceTransformation transformation = transformations.poll();
+
+        if (transformation == null) {
+            transformation = new BinaryRelevanceTransformation(header);
+        }
+
+        return transformation;
+    }
+
+    /**
+     * Predicts an instance with the binary model of a label.
+     */
+    private static void predict(BinaryRelevanceTransformation transformation, Classifier model,
+            Instance instance, int label, boolean[] bipartition, double[] confidences)
+            throws Exception {
+
+        Instance transformedInstance = transformation.transformInstance(instance, label);
+
+        double distribution[] = model.distributionForInstance(transformedInstance);
+
+        int maxIndex = (distribution[0] > distribution[1]) ? 0 : 1;
+
+        // Ensure correct predictions both for class values {0,1} and {1,0}
+        bipartition[label] = (maxIndex == 1);
+
+        // The confidence of the label being equal to 1
+        confidences[label] = distribution[1];
+    }
+
+    /**
+     * Predicts a block of instances with the binary model of a label.
+     */
+    private void predictTile(Instances instances, int label, int from, int to, int offset,
+            boolean[][] bipartitions, double[][] confidences) throws Exception {
+
+        Classifier model = borrowModel(label);
+
+        BinaryRelevanceTransformation transformation = borrowTransformation();
+
+        try {
+
+            for (int i = from; i < to; i++) {
+                predict(transformation, model, instances.instance(i), label,
+                        bipartitions[i - offset], confidences[i - offset]);
+            }
+
+        } finally {
+            models.get(label).offer(model);
+            transformations.offer(transformation);
+        }
+    }
+
+    /**
+     * Fork-join task that predicts a range of tiles, the tiles of a label are
+     * consecutive.
+     */
+    private class TileTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Instances instances;
+
+        private final int from;
+
+        private final int to;
+
+        private final int blocks;
+
+        private final boolean[][] bipartitions;
+
+        private final double[][] confidences;
+
+        private final int firstTile;
+
+        private final int lastTile;
+
+        TileTask(Instances instances, int from, int to, int blocks, boolean[][] bipartitions,
+                double[][] confidences, int firstTile, int lastTile) {
+            this.instances = instances;
+            this.from = from;
+            this.to = to;
+            this.blocks = blocks;
+            this.bipartitions = bipartitions;
+            this.confidences = confidences;
+            this.firstTile = firstTile;
+            this.lastTile = lastTile;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (lastTile - firstTile > 1) {
+
+                int middle = (firstTile + lastTile) >>> 1;
+
+                invokeAll(new TileTask(instances, from, to, blocks, bipartitions, confidences,
+                        firstTile, middle),
+                        new TileTask(instances, from, to, blocks, bipartitions, confidences,
+                        middle, lastTile));
+                return;
+            }
+
+            for (int tile = firstTile; tile < lastTile; tile++) {
+
+                int label = tile / blocks;
+
+                int begin = from + (tile % blocks) * BLOCK;
+
+                try {
+                    predictTile(instances, label, begin, Math.min(begin + BLOCK, to), from,
+                            bipartitions, confidences);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
     }
 
     /**
-     * Returns the model which corresponds to the label with labelName
+     * Returns the model which corresponds to the label with labelName. The
+     * model is never used by the predictions, which use copies of it, so it
+     * can be queried while the learner predicts. It must not be used by
+     * several threads at the same time, and a change of the model does not
+     * affect the predictions of the learner.
      *
      * @param labelName the label name
      * @return the corresponding model or null if the labelIndex is wrong
@@ -152,26 +464,20 @@ public class ParallelBinaryRelevance extends TransformationBasedMultiLabelLearne
     public Classifier getModel(String labelName) {
         for (int i = 0; i < numLabels; i++) {
             if (correspondence[i].equals(labelName)) {
-                return ensembleThread[i].getClassifier();
+                return ensemble[i];
             }
         }
         return null;
     }
 
     /**
-     * It returns the ensemble of classifiers
+     * It returns the ensemble of classifiers. The models are never used by
+     * the predictions, which use copies of them.
      *
      * @return the ensemble of classifier
      */
     public Classifier[] getEnsemble() {
-
-        Classifier ensembleWeka[] = new Classifier[ensembleThread.length];
-
-        for (int i = 0; i < numLabels; i++) {
-            ensembleWeka[i] = ensembleThread[i].getClassifier();
-        }
-
-        return ensembleWeka;
+        return ensemble.clone();
     }
 
     public BinaryRelevanceTransformation getBrt() {
@@ -25,6 +25,10 @@ import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.ConfigurationRuntimeException;
 import weka.classifiers.Classifier;
 import weka.classifiers.Evaluation;
+import weka.classifiers.UpdateableClassifier;
+import weka.classifiers.bayes.NaiveBayesMultinomialUpdateable;
+import weka.classifiers.bayes.NaiveBayesUpdateable;
+import weka.core.BatchPredictor;
 import weka.core.Instance;
 import weka.core.Instances;
 
@@ -44,7 +48,37 @@ public class WekaClassifier extends AbstractClassifier {
     private Classifier classifier;
 
     /**
-     * Constructs the learning model from the dataset.
+     * Indicates whether the classifier is trained incrementally with the new
+     * instances when the Weka classifier is updateable. By default is false.
+     */
+    private boolean incrementalTraining = false;
+
+    /**
+     * Every how many trainings the model is built from scratch when the
+     * incremental training is used. A value lower than 1 means never.
+     */
+    private int rebuildFrequency = 0;
+
+    /**
+     * The dataset used in the last training.
+     */
+    private transient Instances trainingData;
+
+    /**
+     * The number of instances of the dataset used in the last training.
+     */
+    private transient int trainedSize;
+
+    /**
+     * The number of incremental trainings since the last full build.
+     */
+    private transient int incrementalUpdates;
+
+    /**
+     * Constructs the learning model from the dataset. If the incremental
+     * training is enabled, the Weka classifier is updateable and the dataset
+     * is the same of the last training, only the instances added after the
+     * last training are used to update the model.
      *
      * @param instances The instances to train the classifier
      * @throws Exception The exception that will be launched.
@@ -52,7 +86,129 @@ public class WekaClassifier extends AbstractClassifier {
     @Override
     public void buildClassifier(IDataset instances) throws Exception {
 
-        classifier.buildClassifier(instances.getDataset());
+        Instances data = instances.getDataset();
+
+        if (canUpdate(data)) {
+
+            UpdateableClassifier updateable = (UpdateableClassifier) classifier;
+
+            for (int i = trainedSize; i < data.numInstances(); i++) {
+                updateable.updateClassifier(data.instance(i));
+            }
+
+            ++incrementalUpdates;
+
+        } else {
+
+            classifier.buildClassifier(data);
+
+            incrementalUpdates = 0;
+        }
+
+        if (incrementalTraining) {
+            trainingData = data;
+            trainedSize = data.numInstances();
+        }
+    }
+
+    /**
+     * Whether the model can be updated with the new instances of the dataset
+     * instead of being built from scratch.
+     *
+     * @param data The dataset to train the classifier
+     * @return True if the model can be updated
+     */
+    private boolean canUpdate(Instances data) {
+
+        if (!incrementalTraining || !(classifier instanceof UpdateableClassifier)) {
+            return false;
+        }
+
+        // the instances must have been added at the end of the same dataset
+        if (data != trainingData || data.numInstances() < trainedSize) {
+            return false;
+        }
+
+        return rebuildFrequency < 1 || incrementalUpdates + 1 < rebuildFrequency;
+    }
+
+    /**
+     * Whether the model can be updated temporarily with instances of the given
+     * dataset and restored afterwards, without being copied or built again. A
+     * rollback is an update with the weight of the instance negated, so it is
+     * only supported when that update restores the model exactly:
+     * <ul>
+     * <li>The updateable multinomial naive Bayes, whose estimators are sums of
+     * word counts.</li>
+     * <li>The updateable naive Bayes when all the attributes are nominal, so
+     * all its estimators are discrete counts.</li>
+     * </ul>
+     * The normal estimators of the naive Bayes are not restored: their sums
+     * drift and the standard deviation is not updated when it falls below a
+     * threshold, so the numeric attributes are not supported.
+     *
+     * @param dataset The dataset of the instances to add to the model
+     * @return True if {@link #applyUpdate(Instance)} and
+     * {@link #rollbackUpdate(Instance)} can be used
+     */
+    public boolean supportsUndoableUpdate(Instances dataset) {
+
+        if (classifier instanceof NaiveBayesMultinomialUpdateable) {
+            return true;
+        }
+
+        if (!(classifier instanceof NaiveBayesUpdateable)) {
+            return false;
+        }
+
+        for (int i = 0; i < dataset.numAttributes(); i++) {
+
+            if (i != dataset.classIndex() && !dataset.attribute(i).isNominal()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Updates the trained model with an instance. The update must be undone
+     * with {@link #rollbackUpdate(Instance)} before the model is used for
+     * other purpose. The instance must belong to a dataset for which
+     * {@link #supportsUndoableUpdate(Instances)} is true.
+     *
+     * @param instance The instance to add to the model
+     * @throws Exception If the model does not support undoable updates
+     */
+    public void applyUpdate(Instance instance) throws Exception {
+
+        if (!supportsUndoableUpdate(instance.dataset())) {
+            throw new UnsupportedOperationException(
+                    "The classifier does not support undoable updates: " + toString());
+        }
+
+        ((UpdateableClassifier) classifier).updateClassifier(instance);
+    }
+
+    /**
+     * Removes from the model an instance added with
+     * {@link #applyUpdate(Instance)}.
+     *
+     * @param instance The instance that was added to the model
+     * @throws Exception If the model does not support undoable updates
+     */
+    public void rollbackUpdate(Instance instance) throws Exception {
+
+        if (!supportsUndoableUpdate(instance.dataset())) {
+            throw new UnsupportedOperationException(
+                    "The classifier does not support undoable updates: " + toString());
+        }
+
+        Instance removal = (Instance) instance.copy();
+
+        removal.setWeight(-instance.weight());
+
+        ((UpdateableClassifier) classifier).updateClassifier(removal);
     }
 
     /**
@@ -84,6 +240,51 @@ public class WekaClassifier extends AbstractClassifier {
         return null;
     }
 
+    /**
+     * Returns the probabilities of a range of instances. If the Weka classifier
+     * is a batch predictor, the range is predicted in one call to the Weka
+     * classifier. Weka only accepts a whole Instances object in that call, so
+     * a range that is not the whole set is copied first. The copy is O(size of
+     * the range) and copies every instance, so for small blocks the saving
+     * of the batch call can be lost.
+     *
+     * @param instances The instances to test.
+     * @param from The index of the first instance, inclusive
+     * @param to The index of the last instance, exclusive
+     * @return The probabilities for each instance
+     */
+    @Override
+    public double[][] distributionsForInstances(Instances instances, int from, int to) {
+
+        try {
+
+            if (classifier instanceof BatchPredictor) {
+
+                Instances range = instances;
+
+                // only a proper range is copied, the whole set is passed as is
+                if (from != 0 || to != instances.numInstances()) {
+                    range = new Instances(instances, from, to - from);
+                }
+
+                return ((BatchPredictor) classifier).distributionsForInstances(range);
+            }
+
+            double[][] distributions = new double[to - from][];
+
+            for (int i = from; i < to; i++) {
+                distributions[i - from] = classifier.distributionForInstance(instances.instance(i));
+            }
+
+            return distributions;
+
+        } catch (Exception e) {
+            Logger.getLogger(WekaClassifier.class.getName()).log(
+                    Level.SEVERE, null, e);
+        }
+        return null;
+    }
+
     /**
      * Evaluates the classifier using the test dataset and stores the evaluation.
      *
@@ -130,6 +331,9 @@ public class WekaClassifier extends AbstractClassifier {
      * @param classifier The weka classifier.
      */
     public void setClassifier(Classifier classifier) {
+
+        trainingData = null;
+
         try {
             this.classifier = weka.classifiers.AbstractClassifier
                     .makeCopy(classifier);
@@ -139,6 +343,46 @@ public class WekaClassifier extends AbstractClassifier {
         }
     }
 
+    /**
+     * Sets whether the classifier is trained incrementally when the Weka
+     * classifier is updateable.
+     *
+     * @param incrementalTraining The flag
+     */
+    public void setIncrementalTraining(boolean incrementalTraining) {
+        this.incrementalTraining = incrementalTraining;
+    }
+
+    /**
+     * Gets whether the classifier is trained incrementally when the Weka
+     * classifier is updateable.
+     *
+     * @return The flag
+     */
+    public boolean isIncrementalTraining() {
+        return incrementalTraining;
+    }
+
+    /**
+     * Sets every how many trainings the model is built from scratch when the
+     * incremental training is used.
+     *
+     * @param rebuildFrequency The frequency, a value lower than 1 means never
+     */
+    public void setRebuildFrequency(int rebuildFrequency) {
+        this.rebuildFrequency = rebuildFrequency;
+    }
+
+    /**
+     * Gets every how many trainings the model is built from scratch when the
+     * incremental training is used.
+     *
+     * @return The frequency
+     */
+    public int getRebuildFrequency() {
+        return rebuildFrequency;
+    }
+
     /**
      *
      * @param configuration The configuration object for WekaClassifier.
@@ -151,11 +395,25 @@ public class WekaClassifier extends AbstractClassifier {
      * <p>
      * Class: All</p>
      * </li>
+     * <li>
+     * <b>incremental-training= boolean</b>
+     * </li>
+     * <li>
+     * <b>rebuild-frequency= int</b>
+     * </li>
      * </ul>
      */
     @Override
     public void configure(Configuration configuration) {
 
+        // Set the incremental training of updateable classifiers
+        boolean incrementalT = configuration.getBoolean("incremental-training",
+                incrementalTraining);
+        setIncrementalTraining(incrementalT);
+
+        int rebuildT = configuration.getInt("rebuild-frequency", rebuildFrequency);
+        setRebuildFrequency(rebuildT);
+
         String classifierError = "classifier type= ";
         try {
 
@@ -15,6 +15,12 @@
  */
 package net.sf.jclal.classifier;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import net.sf.jclal.activelearning.singlelabel.querystrategy.VoteEntropyQueryStrategy;
@@ -27,6 +33,7 @@ import org.apache.commons.configuration.ConfigurationRuntimeException;
 import weka.classifiers.Classifier;
 import weka.classifiers.Evaluation;
 import weka.core.Instance;
+import weka.core.Attribute;
 import weka.core.Instances;
 import weka.core.Utils;
 import java.util.Random;
@@ -35,6 +42,12 @@ import java.util.Random;
  *
  * Classifier of Weka type for committee.
  *
+ * The members are trained in parallel by default, each one over its own copy
+ * of the labeled set. The distributions of all the members for an instance,
+ * or for a range of instances, are obtained in a single pass over the
+ * committee, so the query strategies compute the votes and the divergences
+ * without asking the members again.
+ *
  * @author Oscar Gabriel Reyes Pupo
  * @author Eduardo Perez Perdomo
  */
@@ -47,6 +60,23 @@ public class WekaComitteClassifier extends AbstractClassifier {
      */
     private Classifier[] classifiers;
 
+    /**
+     * Whether the members are trained in parallel.
+     */
+    private boolean parallelTraining = true;
+
+    /**
+     * Whether the vote of each member is the class with the maximum
+     * probability, i.e. the member does not redefine classifyInstance.
+     */
+    private transient boolean[] votesByDistribution;
+
+    /**
+     * Pool shared by the committees to train the members, it is created on
+     * demand and its threads are daemon.
+     */
+    private static ForkJoinPool trainingPool;
+
     /**
      * Empty(default) constructor.
      */
@@ -65,11 +95,60 @@ public class WekaComitteClassifier extends AbstractClassifier {
     @Override
     public void buildClassifier(IDataset instances) throws Exception {
 
-        for (Classifier classifier : classifiers) {
-            classifier.buildClassifier(instances.getDataset());
+        if (!parallelTraining || classifiers.length < 2) {
+
+            for (Classifier classifier : classifiers) {
+                classifier.buildClassifier(instances.getDataset());
+            }
+
+            return;
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(classifiers.length);
+
+        for (final Classifier classifier : classifiers) {
+
+            //some classifiers modify the dataset they are trained with
+            final Instances data = new Instances(instances.getDataset());
+
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    classifier.buildClassifier(data);
+                    return null;
+                }
+            });
+        }
+
+        for (Future<Void> future : getTrainingPool().invokeAll(tasks)) {
+
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+
+                throw e;
+            }
         }
     }
 
+    /**
+     * Returns the pool used to train the members.
+     *
+     * @return The training pool
+     */
+    private static synchronized ForkJoinPool getTrainingPool() {
+
+        if (trainingPool == null) {
+            trainingPool = new ForkJoinPool();
+        }
+
+        return trainingPool;
+    }
+
     /**
      * Classify the instance
      * 
@@ -110,6 +189,90 @@ public class WekaComitteClassifier extends AbstractClassifier {
         return votes;
     }
 
+    /**
+     * Counts the votes of the committee for each class from the distributions
+     * of the members, obtained with distributionsForInstanceByMembers. The
+     * vote of a member is the class that Weka predicts from its distribution,
+     * only the members that redefine classifyInstance are asked again.
+     *
+     * @param instance The instance to test.
+     * @param distributions The distribution of each member for the instance.
+     * @return The votes of the committee for each class.
+     * @throws Exception The exception that will be launched
+     */
+    public int[] countVotesForEachClass(Instance instance, double[][] distributions)
+            throws Exception {
+
+        int[] votes = new int[instance.dataset().numDistinctValues(instance
+                .classIndex())];
+
+        if (votesByDistribution == null) {
+            resolveVotes();
+        }
+
+        for (int i = 0; i < classifiers.length; i++) {
+
+            double v = votesByDistribution[i]
+                    ? vote(instance, distributions[i])
+                    : classifiers[i].classifyInstance(instance);
+
+            ++votes[(int) v];
+        }
+
+        return votes;
+    }
+
+    /**
+     * Determines the members whose vote is the class with the maximum
+     * probability, as weka.classifiers.AbstractClassifier.classifyInstance.
+     */
+    private void resolveVotes() throws NoSuchMethodException {
+
+        boolean[] byDistribution = new boolean[classifiers.length];
+
+        for (int i = 0; i < classifiers.length; i++) {
+            byDistribution[i] = classifiers[i].getClass()
+                    .getMethod("classifyInstance", Instance.class).getDeclaringClass()
+                    == weka.classifiers.AbstractClassifier.class;
+        }
+
+        votesByDistribution = byDistribution;
+    }
+
+    /**
+     * The class predicted from a distribution, the same rule than
+     * weka.classifiers.AbstractClassifier.classifyInstance.
+     */
+    private static double vote(Instance instance, double[] distribution) throws Exception {
+
+        if (distribution == null) {
+            throw new Exception("Null distribution predicted");
+        }
+
+        switch (instance.classAttribute().type()) {
+
+            case Attribute.NOMINAL:
+
+                double max = 0;
+                int maxIndex = 0;
+
+                for (int i = 0; i < distribution.length; i++) {
+                    if (distribution[i] > max) {
+                        maxIndex = i;
+                        max = distribution[i];
+                    }
+                }
+
+                return max > 0 ? maxIndex : Utils.missingValue();
+
+            case Attribute.NUMERIC:
+                return distribution[0];
+
+            default:
+                return Utils.missingValue();
+        }
+    }
+
     /**
      * Returns the probability that has the instance to belong to each class.
      *
@@ -120,67 +283,111 @@ public class WekaComitteClassifier extends AbstractClassifier {
     public double[] distributionForInstance(Instance instance) {
         try {
 
-            double[] consensus = new double[instance.dataset()
-                    .numDistinctValues(instance.classIndex())];
+            return consensus(instance, instance.dataset()
+                    .numDistinctValues(instance.classIndex()));
 
-            double sizeCommittee = classifiers.length;
+        } catch (Exception ex) {
+            Logger.getLogger(VoteEntropyQueryStrategy.class.getName()).log(
+                    Level.SEVERE, null, ex);
+        }
 
-            for (int i = 0; i < sizeCommittee; i++) {
+        return null;
 
-                /* modified here */
+    }
 
-                /*double[] currentProb = classifiers[i]
-                        .distributionForInstance(instance);
+    /**
+     * Returns the probabilities of a range of instances. The number of classes
+     * is determined once for the whole range.
+     *
+     * @param instances The instances to test
+     * @param from The index of the first instance, inclusive
+     * @param to The index of the last instance, exclusive
+     * @return The probabilities for each instance
+     */
+    @Override
+    public double[][] distributionsForInstances(Instances instances, int from, int to) {
+        try {
 
-                for (int j = 0; j < consensus.length; j++) {
-                    consensus[j] += currentProb[j];
-                }*/
+            int numClasses = instances.numDistinctValues(instances.classIndex());
 
-                //FIRST MODIFIED VERSION
+            double[][] distributions = new double[to - from][];
 
-                /*Random random = new Random();
+            for (int i = from; i < to; i++) {
+                distributions[i - from] = consensus(instances.instance(i), numClasses);
+            }
 
-                for (int j = 0; j < consensus.length; j++) {
-                    double cenas = random.nextGaussian();
+            return distributions;
 
-                    if(cenas < 0)
-                        cenas = 0;
-                    else if(cenas > 1)
-                        cenas = 1;
+        } catch (Exception ex) {
+            Logger.getLogger(WekaComitteClassifier.class.getName()).log(
+                    Level.SEVERE, null, ex);
+        }
 
-                    consensus[j] += cenas;
-                }*/
+        return null;
+    }
 
-                //SECOND MODIFIED VERSION
+    /**
+     * Computes the consensus of the committee for an instance.
+     *
+     * @param instance The instance to test
+     * @param numClasses The number of classes
+     * @return The probabilities for each class
+     * @throws Exception The exception that will be launched
+     */
+    private double[] consensus(Instance instance, int numClasses) throws Exception {
 
-                Random random = new Random();
+        double[] consensus = new double[numClasses];
 
-                for (int j = 0; j < consensus.length; j++) {
-                    double cenas = random.nextGaussian();
+        double sizeCommittee = classifiers.length;
 
-                    if(cenas < 0)
-                        cenas = -0.48*cenas;
-                    else
-                        cenas = 0.48 + 0.48*cenas;
+        for (int i = 0; i < sizeCommittee; i++) {
 
-                    consensus[j] += cenas;
-                }
+            /* modified here */
 
-            }
+            /*double[] currentProb = classifiers[i]
+                    .distributionForInstance(instance);
 
-            for (int i = 0; i < consensus.length; i++) {
-                consensus[i] /= sizeCommittee;
-            }
+            for (int j = 0; j < consensus.length; j++) {
+                consensus[j] += currentProb[j];
+            }*/
 
-            return consensus;
+            //FIRST MODIFIED VERSION
+
+            /*Random random = new Random();
+
+            for (int j = 0; j < consensus.length; j++) {
+                double cenas = random.nextGaussian();
+
+                if(cenas < 0)
+                    cenas = 0;
+                else if(cenas > 1)
+                    cenas = 1;
+
+                consensus[j] += cenas;
+            }*/
+
+            //SECOND MODIFIED VERSION
+
+            Random random = new Random();
+
+            for (int j = 0; j < consensus.length; j++) {
+                double cenas = random.nextGaussian();
+
+                if(cenas < 0)
+                    cenas = -0.48*cenas;
+                else
+                    cenas = 0.48 + 0.48*cenas;
+
+                consensus[j] += cenas;
+            }
 
-        } catch (Exception ex) {
-            Logger.getLogger(VoteEntropyQueryStrategy.class.getName()).log(
-                    Level.SEVERE, null, ex);
         }
 
-        return null;
+        for (int i = 0; i < consensus.length; i++) {
+            consensus[i] /= sizeCommittee;
+        }
 
+        return consensus;
     }
 
     /**
@@ -244,6 +451,79 @@ public class WekaComitteClassifier extends AbstractClassifier {
 
     }
 
+    /**
+     * Returns the probabilities of each member of the committee for an
+     * instance, in a single pass over the committee.
+     *
+     * @param instance The instance to test.
+     * @return The distribution of each member.
+     * @throws Exception The exception that will be launched
+     */
+    public double[][] distributionsForInstanceByMembers(Instance instance) throws Exception {
+
+        double[][] distributions = new double[classifiers.length][];
+
+        for (int i = 0; i < classifiers.length; i++) {
+            distributions[i] = classifiers[i].distributionForInstance(instance);
+        }
+
+        return distributions;
+    }
+
+    /**
+     * Returns the probabilities of each member of the committee for a range
+     * of instances. Each member predicts the whole range before the next one.
+     *
+     * @param instances The instances to test
+     * @param from The index of the first instance, inclusive
+     * @param to The index of the last instance, exclusive
+     * @return The distribution of each member for each instance, indexed by
+     * instance and member
+     * @throws Exception The exception that will be launched
+     */
+    public double[][][] distributionsForInstancesByMembers(Instances instances, int from, int to)
+            throws Exception {
+
+        double[][][] distributions = new double[to - from][classifiers.length][];
+
+        for (int i = 0; i < classifiers.length; i++) {
+            for (int k = from; k < to; k++) {
+                distributions[k - from][i] = classifiers[i]
+                        .distributionForInstance(instances.instance(k));
+            }
+        }
+
+        return distributions;
+    }
+
+    /**
+     * Returns the probabilities of each member of the committee for the
+     * instances stored at a range of positions of an array of indexes. Each
+     * member predicts the whole range before the next one.
+     *
+     * @param instances The instances to test
+     * @param indexes The indexes of the instances
+     * @param from The first position of the array of indexes, inclusive
+     * @param to The last position of the array of indexes, exclusive
+     * @return The distribution of each member for each instance, indexed by
+     * position and member
+     * @throws Exception The exception that will be launched
+     */
+    public double[][][] distributionsForInstancesByMembers(Instances instances, int[] indexes,
+            int from, int to) throws Exception {
+
+        double[][][] distributions = new double[to - from][classifiers.length][];
+
+        for (int i = 0; i < classifiers.length; i++) {
+            for (int k = from; k < to; k++) {
+                distributions[k - from][i] = classifiers[i]
+                        .distributionForInstance(instances.instance(indexes[k]));
+            }
+        }
+
+        return distributions;
+    }
+
     /**
      * The simple names of the classifiers.
      *
@@ -285,6 +565,26 @@ public class WekaComitteClassifier extends AbstractClassifier {
         }
 
         setNumberClassifiers(classifiers.length);
+
+        votesByDistribution = null;
+    }
+
+    /**
+     * Set whether the members are trained in parallel
+     *
+     * @param parallelTraining Whether the members are trained in parallel
+     */
+    public void setParallelTraining(boolean parallelTraining) {
+        this.parallelTraining = parallelTraining;
+    }
+
+    /**
+     * Get whether the members are trained in parallel
+     *
+     * @return Whether the members are trained in parallel
+     */
+    public boolean isParallelTraining() {
+        return parallelTraining;
     }
 
     /**
@@ -302,11 +602,19 @@ public class WekaComitteClassifier extends AbstractClassifier {
      * <p>
      * Class: All</p>
      * </li>
+     * <li>
+     * <b>parallel-training= boolean</b>
+     * </li>
      * </ul>
      */
     @Override
     public void configure(Configuration configuration) {
 
+        // Set the parallel training of the members
+        boolean parallelT = configuration.getBoolean("parallel-training",
+                parallelTraining);
+        setParallelTraining(parallelT);
+
         String classifierError = "classifier type= ";
         try {
 
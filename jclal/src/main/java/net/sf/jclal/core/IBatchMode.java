@@ -40,6 +40,18 @@ public interface IBatchMode extends JCLAL {
      */
     public List<Integer> instancesSelection(IQueryStrategy queryStrategy, List<Container> intanceUtilities);
 
+    /**
+     * Select q instances taking into account the intanceUtilities and the query
+     * strategy, without boxing the utilities
+     *
+     * @param queryStrategy The query strategy used
+     * @param intanceUtilities Array that stores the utility of each candidate
+     * instance, the position i stores the utility of the i-th candidate
+     * @return A list that contains the positions of the selected instances in
+     * the array of utilities
+     */
+    public List<Integer> instancesSelection(IQueryStrategy queryStrategy, double[] intanceUtilities);
+
     /**
      * String representation.
      *
@@ -17,6 +17,7 @@ package net.sf.jclal.core;
 
 import net.sf.jclal.evaluation.measure.AbstractEvaluation;
 import weka.core.Instance;
+import weka.core.Instances;
 
 /**
  * Interface for the classifiers to be used in the framework. The framework
@@ -41,6 +42,18 @@ public interface IClassifier {
      */
     public double[] distributionForInstance(Instance instance);
 
+    /**
+     * Returns the distributions of a range of instances with a single call.
+     * The row i of the result stores the distribution of the instance
+     * from + i.
+     *
+     * @param instances The instances
+     * @param from The index of the first instance, inclusive
+     * @param to The index of the last instance, exclusive
+     * @return the distribution for each instance of the range
+     */
+    public double[][] distributionsForInstances(Instances instances, int from, int to);
+
     /**
      *
      * @param instances The instance set to test the classifier.
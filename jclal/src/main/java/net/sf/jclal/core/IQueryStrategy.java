@@ -52,6 +52,38 @@ public interface IQueryStrategy extends JCLAL {
      */
     public double utilityInstance(Instance instance);
 
+    /**
+     * Test the unlabeled instance stored at the given position of the
+     * unlabeled set. Return the utility of the instance according to the query
+     * strategy. It avoids looking for the position of the instance in the
+     * unlabeled set.
+     *
+     * @param instanceIndex the index of the instance in the unlabeled set.
+     * @return the value calculated for the query strategy for the instance
+     */
+    public double utilityInstance(int instanceIndex);
+
+    /**
+     * Computes the utilities of the unlabeled instances stored between the
+     * given positions of the unlabeled set.
+     *
+     * @param from the index of the first instance, inclusive.
+     * @param to the index of the last instance, exclusive.
+     * @param values the array where the utility of the instance i is stored
+     * in the position i.
+     */
+    public void utilityInstances(int from, int to, double[] values);
+
+    /**
+     * Computes the utilities of the unlabeled instances stored at the given
+     * positions of the unlabeled set.
+     *
+     * @param indexes the indexes of the instances in the unlabeled set.
+     * @param values the array where the utility of the instance indexes[i] is
+     * stored in the position i.
+     */
+    public void utilityInstances(int[] indexes, double[] values);
+
     /**
      *
      * @param instance Instance for classify.
@@ -0,0 +1,132 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jclal.dataset;
+
+import net.sf.jclal.core.IDataset;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Class that represents a Weka dataset that shares the instances of other
+ * dataset. Only the list of instances is owned by the view, so adding or
+ * removing instances does not modify the base dataset, but the shared
+ * instances must not be modified.
+ *
+ * It is used to train a model with the labeled set plus one hypothetically
+ * labeled instance without copying the labeled set.
+ *
+ * @author Oscar Gabriel Reyes Pupo
+ * @author Eduardo Perez Perdomo
+ */
+public class WekaDatasetView extends AbstractDataset {
+
+    private static final long serialVersionUID = 1L;
+
+    private SharedInstances dataset;
+
+    /**
+     * Creates a view of the dataset.
+     *
+     * @param base The dataset whose instances are shared
+     */
+    public WekaDatasetView(IDataset base) {
+        dataset = new SharedInstances(base.getDataset(), 0);
+    }
+
+    /**
+     * Creates a view of the dataset plus an extra instance. The extra instance
+     * is not copied either.
+     *
+     * @param base The dataset whose instances are shared
+     * @param extra The instance added at the end of the view
+     */
+    public WekaDatasetView(IDataset base, Instance extra) {
+        dataset = new SharedInstances(base.getDataset(), 1);
+        dataset.addShared(extra);
+    }
+
+    @Override
+    public int getNumAttributes() {
+        return dataset.numAttributes();
+    }
+
+    @Override
+    public IDataset copy() {
+        return new WekaDataset(dataset);
+    }
+
+    @Override
+    public void addAll(IDataset dataset) {
+        this.dataset.addAll(dataset.getDataset());
+    }
+
+    @Override
+    public int getNumInstances() {
+        return dataset.numInstances();
+    }
+
+    @Override
+    public Instance instance(int index) {
+        return dataset.instance(index);
+    }
+
+    @Override
+    public void set(int index, Instance instance) {
+        dataset.set(index, instance);
+    }
+
+    @Override
+    public void add(Instance instance) {
+        dataset.add(instance);
+    }
+
+    @Override
+    public void remove(int index) {
+        dataset.remove(index);
+    }
+
+    @Override
+    public Instances getDataset() {
+        return dataset;
+    }
+
+    @Override
+    public void delete() {
+        dataset.delete();
+        dataset = null;
+    }
+
+    /**
+     * Set of instances that references the instances of other set instead of
+     * copying them.
+     */
+    private static class SharedInstances extends Instances {
+
+        private static final long serialVersionUID = 1L;
+
+        SharedInstances(Instances base, int extraCapacity) {
+
+            super(base, base.numInstances() + extraCapacity);
+
+            for (int i = 0; i < base.numInstances(); i++) {
+                m_Instances.add(base.instance(i));
+            }
+        }
+
+        void addShared(Instance instance) {
+            m_Instances.add(instance);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package net.sf.jclal.example;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.Random;
+import net.sf.jclal.util.distancefunction.DistanceContainer;
+import weka.core.EuclideanDistance;
+import weka.core.Instances;
+
+/**
+ * Example that reports the accuracy of the distances stored in single
+ * precision against the distances stored in double precision, as they are
+ * used by the density-diversity strategies.
+ *
+ * For each dataset it reports the maximum error of the stored distances, the
+ * maximum relative error of the accumulative distances after the
+ * construction and after removing the half of the instances by batches, and
+ * the number of times the instance with the maximum accumulative distance
+ * differs.
+ *
+ * Usage: DistancePrecisionExample [dataset.arff ...]
+ *
+ * @author Oscar Gabriel Reyes Pupo
+ * @author Eduardo Perez Perdomo
+ */
+public class DistancePrecisionExample {
+
+    /**
+     * Number of instances removed in each batch.
+     */
+    private static final int BATCH = 5;
+
+    /**
+     * @param args the command line arguments, the datasets to use. By
+     * default the bundled single-label datasets are used.
+     */
+    public static void main(String[] args) throws Exception {
+
+        String[] datasets = args.length > 0 ? args : new String[]{
+            "datasets/iris/iris.arff",
+            "datasets/ecoli/ecoli.arff",
+            "datasets/ionosphere/ionosphere.arff",
+            "datasets/mushroom/mushroom.arff"};
+
+        for (String dataset : datasets) {
+
+            BufferedReader reader = new BufferedReader(new FileReader(dataset));
+            Instances instances = new Instances(reader);
+            reader.close();
+
+            instances.setClassIndex(instances.numAttributes() - 1);
+
+            EuclideanDistance distanceFunction = new EuclideanDistance();
+            distanceFunction.setInstances(instances);
+
+            DistanceContainer doubles = new DistanceContainer(instances, distanceFunction,
+                    false, false, null);
+            DistanceContainer floats = new DistanceContainer(instances, distanceFunction,
+                    false, true, null);
+
+            int n = instances.numInstances();
+
+            double distanceError = 0;
+
+            for (int i = 0; i < n; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    distanceError = Math.max(distanceError,
+                            Math.abs(doubles.getDistance(i, j) - floats.getDistance(i, j)));
+                }
+            }
+
+            double initialError = relativeError(doubles, floats);
+            double removalError = initialError;
+            int changedMaximum = changedMaximum(doubles, floats);
+            int batches = 1;
+
+            Random random = new Random(1);
+
+            while (doubles.getSize() > n / 2) {
+
+                ArrayList<Integer> removed = new ArrayList<Integer>();
+
+                while (removed.size() < BATCH) {
+
+                    Integer pos = random.nextInt(doubles.getSize());
+
+                    if (!removed.contains(pos)) {
+                        removed.add(pos);
+                    }
+                }
+
+                doubles.updateIndexes(removed);
+                floats.updateIndexes(removed);
+
+                removalError = Math.max(removalError, relativeError(doubles, floats));
+                changedMaximum += changedMaximum(doubles, floats);
+                ++batches;
+            }
+
+            System.out.println(dataset + ": " + n + " instances, "
+                    + (long) n * (n - 1) / 2 * 8 / 1024 + " KB in double, "
+                    + (long) n * (n - 1) / 2 * 4 / 1024 + " KB in float");
+            System.out.println("  max distance error: " + distanceError);
+            System.out.println("  max relative error of the accumulative distances: "
+                    + initialError + " after the construction, " + removalError
+                    + " removing the instances");
+            System.out.println("  different instance with the maximum accumulative distance: "
+                    + changedMaximum + " of " + batches);
+
+            doubles.destroy();
+            floats.destroy();
+        }
+    }
+
+    private static double relativeError(DistanceContainer doubles, DistanceContainer floats) {
+
+        double error = 0;
+
+        for (int i = 0; i < doubles.getSize(); i++) {
+
+            double expected = doubles.getAcumulativeValue(i);
+
+            if (expected != 0) {
+                error = Math.max(error,
+                        Math.abs(floats.getAcumulativeValue(i) - expected) / expected);
+            }
+        }
+
+        return error;
+    }
+
+    private static int changedMaximum(DistanceContainer doubles, DistanceContainer floats) {
+        return maxPosition(doubles) == maxPosition(floats) ? 0 : 1;
+    }
+
+    private static int maxPosition(DistanceContainer container) {
+
+        int pos = 0;
+
+        for (int i = 1; i < container.getSize(); i++) {
+
+            if (container.getAcumulativeValue(i) > container.getAcumulativeValue(pos)) {
+                pos = i;
+            }
+        }
+
+        return pos;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package net.sf.jclal.example;
+
+import net.sf.jclal.util.matrixFile.Matrix;
+
+/**
+ * Example that compares the time of the in-memory kernels of Matrix against
+ * the element by element loops through the get and set accessors, which was
+ * the former implementation of the operations.
+ *
+ * Usage: MatrixTimingExample [size] [repetitions]
+ *
+ * @author Oscar Gabriel Reyes Pupo
+ * @author Eduardo Perez Perdomo
+ */
+public class MatrixTimingExample {
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) throws Exception {
+
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        Matrix a = Matrix.random(size, size, false);
+        Matrix b = Matrix.random(size, size, false);
+
+        double checksum = 0;
+
+        // the first pass warms up the JVM
+        for (int pass = 0; pass < 2; pass++) {
+
+            long[] loops = new long[5];
+            long[] kernels = new long[5];
+
+            for (int r = 0; r < repetitions; r++) {
+
+                long start = System.nanoTime();
+                checksum += timesByElements(a, b).get(0, 0);
+                loops[0] += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                checksum += a.times(b).get(0, 0);
+                kernels[0] += System.nanoTime() - start;
+
+                Matrix c = a.copy();
+
+                start = System.nanoTime();
+                for (int i = 0; i < size; i++) {
+                    for (int j = 0; j < size; j++) {
+                        c.set(i, j, c.get(i, j) + b.get(i, j));
+                    }
+                }
+                loops[1] += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                c.plusEquals(b);
+                kernels[1] += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                for (int i = 0; i < size; i++) {
+                    for (int j = 0; j < size; j++) {
+                        c.set(i, j, 0.5 * c.get(i, j));
+                    }
+                }
+                loops[2] += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                c.timesEquals(0.5);
+                kernels[2] += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                Matrix d = new Matrix(size, size, false);
+                for (int i = 0; i < size; i++) {
+                    for (int j = 0; j < size; j++) {
+                        d.set(i, j, a.get(i, j) * b.get(i, j));
+                    }
+                }
+                loops[3] += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                checksum += a.arrayTimes(b).get(1, 1);
+                kernels[3] += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                d = new Matrix(size, size, false);
+                for (int i = 0; i < size; i++) {
+                    for (int j = 0; j < size; j++) {
+                        d.set(j, i, a.get(i, j));
+                    }
+                }
+                loops[4] += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                checksum += a.transpose().get(0, 1) + c.get(1, 0) + d.get(1, 0);
+                kernels[4] += System.nanoTime() - start;
+            }
+
+            if (pass == 1) {
+
+                String[] names = {"times", "plusEquals", "timesEquals", "arrayTimes", "transpose"};
+
+                System.out.println("Size: " + size + "x" + size + ", repetitions: " + repetitions);
+
+                for (int k = 0; k < names.length; k++) {
+                    System.out.println(names[k] + ": get/set loops "
+                            + loops[k] / repetitions / 1000000.0 + " ms, kernel "
+                            + kernels[k] / repetitions / 1000000.0 + " ms");
+                }
+            }
+        }
+
+        // avoids that the JIT discards the operations
+        System.out.println("Checksum: " + checksum);
+    }
+
+    /**
+     * The product computed element by element, as it was implemented before
+     * the kernels.
+     */
+    private static Matrix timesByElements(Matrix a, Matrix b) throws Exception {
+
+        int m = a.getRowDimension();
+        int q = a.getColumnDimension();
+        int p = b.getColumnDimension();
+
+        Matrix x = new Matrix(m, p, false);
+
+        double[] bColj = new double[q];
+
+        for (int j = 0; j < p; j++) {
+
+            for (int k = 0; k < q; k++) {
+                bColj[k] = b.get(k, j);
+            }
+
+            for (int i = 0; i < m; i++) {
+
+                double s = 0;
+
+                for (int k = 0; k < q; k++) {
+                    s += a.get(i, k) * bColj[k];
+                }
+
+                x.set(i, j, s);
+            }
+        }
+
+        return x;
+    }
+}
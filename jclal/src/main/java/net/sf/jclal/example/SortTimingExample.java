@@ -0,0 +1,114 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package net.sf.jclal.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import net.sf.jclal.util.sort.Container;
+import net.sf.jclal.util.sort.OrderUtils;
+
+/**
+ * Example that compares the time of the ordering of the utilities of a large
+ * pool by means of containers and the merge sort against the primitive
+ * methods of OrderUtils.
+ *
+ * Usage: SortTimingExample [pool size] [batch size] [repetitions]
+ *
+ * @author Oscar Gabriel Reyes Pupo
+ * @author Eduardo Perez Perdomo
+ */
+public class SortTimingExample {
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+
+        int poolSize = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int repetitions = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        Random random = new Random(1);
+
+        double[] utilities = new double[poolSize];
+
+        for (int i = 0; i < poolSize; i++) {
+            utilities[i] = random.nextDouble();
+        }
+
+        long checksum = 0;
+
+        // the first half of the repetitions warms up the JVM
+        for (int pass = 0; pass < 2; pass++) {
+
+            long containers = 0;
+            long argSort = 0;
+            long topK = 0;
+
+            for (int r = 0; r < repetitions; r++) {
+
+                long start = System.nanoTime();
+
+                List<Container> ordered = new ArrayList<Container>(poolSize);
+
+                for (int i = 0; i < poolSize; i++) {
+                    ordered.add(new Container(utilities[i], i));
+                }
+
+                OrderUtils.mergeSort(ordered, true);
+
+                for (int i = 0; i < batchSize; i++) {
+                    checksum += Integer.parseInt(ordered.get(i).getValue().toString());
+                }
+
+                containers += System.nanoTime() - start;
+
+                start = System.nanoTime();
+
+                int[] indexes = OrderUtils.argSort(utilities, true);
+
+                for (int i = 0; i < batchSize; i++) {
+                    checksum += indexes[i];
+                }
+
+                argSort += System.nanoTime() - start;
+
+                start = System.nanoTime();
+
+                for (int index : OrderUtils.topK(utilities, batchSize, true)) {
+                    checksum += index;
+                }
+
+                topK += System.nanoTime() - start;
+            }
+
+            if (pass == 1) {
+                System.out.println("Pool size: " + poolSize + ", batch size: "
+                        + batchSize + ", repetitions: " + repetitions);
+                System.out.println("Containers + mergeSort: "
+                        + containers / repetitions / 1000000.0 + " ms");
+                System.out.println("OrderUtils.argSort: "
+                        + argSort / repetitions / 1000000.0 + " ms");
+                System.out.println("OrderUtils.topK: "
+                        + topK / repetitions / 1000000.0 + " ms");
+            }
+        }
+
+        // avoids that the JIT discards the selections
+        System.out.println("Checksum: " + checksum);
+    }
+}
@@ -23,7 +23,6 @@ import java.util.Set;
 import net.sf.jclal.core.IDataset;
 import net.sf.jclal.dataset.WekaDataset;
 import net.sf.jclal.sampling.AbstractSampling;
-import net.sf.jclal.util.sort.Container;
 import net.sf.jclal.util.sort.OrderUtils;
 import org.apache.commons.configuration.Configuration;
 import weka.core.Instance;
@@ -182,21 +181,22 @@ public class Resample extends AbstractSampling {
 
         setLabeledData(new WekaDataset(labeledInstances));
 
-        ArrayList<Container> indexesArray = new ArrayList<Container>();
+        int[] indexesArray = new int[indexes.size()];
+        int pos = 0;
 
         for (Integer i : indexes) {
-            indexesArray.add(new Container(i, i));
+            indexesArray[pos++] = i;
         }
 
         //The array is ordered in descendent order
-        OrderUtils.mergeSort(indexesArray, true);
+        OrderUtils.sort(indexesArray, true);
 
         //Copy the entire dataset into unlabeled set
         Instances unlabeledInstances = new Instances(dataSet.getDataset());
 
         //remove the instances that have been selected previously
-        for (Container pair : indexesArray) {
-            unlabeledInstances.remove(Integer.parseInt(pair.getValue().toString()));
+        for (int index : indexesArray) {
+            unlabeledInstances.remove(index);
         }
 
         setUnlabeledData(new WekaDataset(unlabeledInstances));
@@ -205,7 +205,6 @@ public class Resample extends AbstractSampling {
         labeledInstances.clear();
         unlabeledInstances.clear();
         indexes.clear();
-        indexesArray.clear();
 
         labeledInstances = null;
         unlabeledInstances = null;
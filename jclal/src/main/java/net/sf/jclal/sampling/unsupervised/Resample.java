@@ -24,7 +24,6 @@ import net.sf.jclal.core.IDataset;
 import net.sf.jclal.dataset.MulanDataset;
 import net.sf.jclal.dataset.WekaDataset;
 import net.sf.jclal.sampling.AbstractSampling;
-import net.sf.jclal.util.sort.Container;
 import net.sf.jclal.util.sort.OrderUtils;
 import org.apache.commons.configuration.Configuration;
 import weka.core.Instance;
@@ -131,21 +130,22 @@ public class Resample extends AbstractSampling {
                     ((MulanDataset) dataSet).getLabelsMetaData()));
         }
 
-        ArrayList<Container> indexesArray = new ArrayList<Container>();
+        int[] indexesArray = new int[indexes.size()];
+        int pos = 0;
 
         for (Integer i : indexes) {
-            indexesArray.add(new Container(i, i));
+            indexesArray[pos++] = i;
         }
 
         //The array is ordered in descendent order
-        OrderUtils.mergeSort(indexesArray, true);
+        OrderUtils.sort(indexesArray, true);
 
         //Copy the entire dataset into unlabeled set
         Instances unlabeledInstances = new Instances(dataSet.getDataset());
 
         //remove the instances that have been selected previously
-        for (Container pair : indexesArray) {
-            unlabeledInstances.remove(Integer.parseInt(pair.getValue().toString()));
+        for (int index : indexesArray) {
+            unlabeledInstances.remove(index);
         }
 
         if (dataSet instanceof WekaDataset) {
@@ -165,7 +165,6 @@ public class Resample extends AbstractSampling {
         labeledInstances = null;
 
         indexes.clear();
-        indexesArray.clear();
 
         indexes = null;
         indexesArray = null;
@@ -0,0 +1,44 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package net.sf.jclal.util.distancefunction;
+
+import java.util.ArrayList;
+import net.sf.jclal.util.sort.IndexValueContainer;
+
+/**
+ * Container of the accumulative distance from each instance of a set to the
+ * rest of the set, used by the density diversity strategies. The instances
+ * removed from the set are discounted from the accumulative values.
+ *
+ * @author Oscar Gabriel Reyes Pupo
+ * @author Eduardo Perez Perdomo
+ */
+public abstract class AbstractDensityContainer extends IndexValueContainer {
+
+    /**
+     * Removes the instances from the set and updates the accumulative values
+     * of the remaining instances.
+     *
+     * @param removedIndexes Array that contains the indexes that will be
+     * removed
+     */
+    public abstract void updateIndexes(ArrayList<Integer> removedIndexes);
+
+    /**
+     * Free the memory
+     */
+    public abstract void destroy();
+}
@@ -20,6 +20,11 @@ import java.io.Serializable;
 /**
  * Abstract class for Hamming Distance.
  *
+ * The distances are computed from the contingency table of the labels of two
+ * instances. The labels can be given as arrays of booleans or packed in
+ * LabelVector, which counts the table with Long.bitCount over words of 64
+ * labels.
+ *
  * @author Oscar Gabriel Reyes Pupo
  * @author Eduardo Perez Perdomo
  */
@@ -66,6 +71,49 @@ public abstract class AbstractHammingDistance implements Serializable {
      */
     public abstract double distance(boolean[] i1, boolean[] i2);
 
+    /**
+     * Compute the distance among two vectors of labels. By default the
+     * vectors are converted to arrays of booleans, the subclasses can compute
+     * the distance with contingencyTable(LabelVector, LabelVector).
+     *
+     * @param i1 Instance i1.
+     * @param i2 Instance i2.
+     * @return The hamming distance.
+     */
+    public double distance(LabelVector i1, LabelVector i2) {
+        return distance(i1.toBooleanArray(), i2.toBooleanArray());
+    }
+
+    /**
+     * Compute the distances among one vector of labels and several vectors.
+     *
+     * @param i1 Instance i1.
+     * @param others The other instances.
+     * @return The distance among i1 and each other instance.
+     */
+    public double[] distances(LabelVector i1, LabelVector[] others) {
+
+        double[] distances = new double[others.length];
+
+        for (int i = 0; i < others.length; i++) {
+            distances[i] = distance(i1, others[i]);
+        }
+
+        return distances;
+    }
+
+    /**
+     * Compute the distances among one array of labels and several arrays. The
+     * arrays are packed in vectors of labels.
+     *
+     * @param i1 Instance i1.
+     * @param others The other instances.
+     * @return The distance among i1 and each other instance.
+     */
+    public double[] distances(boolean[] i1, boolean[][] others) {
+        return distances(new LabelVector(i1), LabelVector.valueOf(others));
+    }
+
     /**
      *
      * @param i1 Instance i1.
@@ -104,4 +152,43 @@ public abstract class AbstractHammingDistance implements Serializable {
 
     }
 
+    /**
+     * Computes the contingency table counting the bits of each word.
+     *
+     * @param i1 Instance i1.
+     * @param i2 Instance i2.
+     * @throws IllegalArgumentException If the vectors have different number
+     * of labels
+     */
+    public void contingencyTable(LabelVector i1, LabelVector i2) {
+
+        if (i1.getNumLabels() != i2.getNumLabels()) {
+            throw new IllegalArgumentException("Different lengths: "
+                    + i1.getNumLabels() + " and " + i2.getNumLabels() + " labels");
+        }
+
+        long[] w1 = i1.getWords();
+        long[] w2 = i2.getWords();
+
+        int countA = 0;
+        int countB = 0;
+        int countC = 0;
+
+        for (int w = 0; w < w1.length; w++) {
+
+            long different = w1[w] ^ w2[w];
+
+            countA += Long.bitCount(w1[w] & w2[w]);
+            countB += Long.bitCount(different & w1[w]);
+            countC += Long.bitCount(different & w2[w]);
+        }
+
+        numLabels = i1.getNumLabels();
+
+        a = countA;
+        b = countB;
+        c = countC;
+        d = numLabels - countA - countB - countC;
+    }
+
 }
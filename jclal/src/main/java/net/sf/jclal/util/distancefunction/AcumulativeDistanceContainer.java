@@ -17,7 +17,6 @@
 package net.sf.jclal.util.distancefunction;
 
 import java.util.ArrayList;
-import net.sf.jclal.util.sort.Container;
 import net.sf.jclal.util.sort.IndexValueContainer;
 import weka.core.Instance;
 import weka.core.Instances;
@@ -48,11 +47,7 @@ public class AcumulativeDistanceContainer extends IndexValueContainer {
             NormalizableDistance distanceFunction) {
         this.distanceFunction = distanceFunction;
 
-        indexesChanges = new int[rows.numInstances()];
-        for (int i = 0; i < indexesChanges.length; i++) {
-            indexesChanges[i] = i;
-        }
-        size = indexesChanges.length;
+        initIndexes(rows.numInstances());
 
         acumulativeValue = new double[rows.numInstances()];
         for (int i = 0; i < acumulativeValue.length; i++) {
@@ -71,10 +66,10 @@ public class AcumulativeDistanceContainer extends IndexValueContainer {
      */
     public void updateIndexes(ArrayList<Integer> fromRowToColumn, Instances rows) {
 
-        ArrayList<Container> order = obtainOrdered(fromRowToColumn);
+        int[] order = obtainOrdered(fromRowToColumn);
 
-        for (Container container : order) {
-            updateIndex(Integer.parseInt(container.getValue().toString()), rows);
+        for (int index : order) {
+            updateIndex(index, rows);
         }
     }
 
@@ -87,14 +82,21 @@ public class AcumulativeDistanceContainer extends IndexValueContainer {
     public void updateIndex(int index, Instances rows) {
         Instance x = rows.instance(index);
 
-        for (int i = 0; i < index; i++) {
-            setAcumulativeValue(i, getAcumulativeValue(i)
-                    + distanceFunction.distance(x, rows.instance(i)));
-        }
+        //the remaining instances keep their order, so the position of each
+        //one is the number of remaining instances before it
+        int i = 0;
+
+        for (int pos : indexesChanges) {
+
+            if (pos < 0) {
+                continue;
+            }
+
+            if (i != index) {
+                acumulativeValue[pos] += distanceFunction.distance(x, rows.instance(i));
+            }
 
-        for (int i = index + 1; i < size; i++) {
-            setAcumulativeValue(i, getAcumulativeValue(i)
-                    + distanceFunction.distance(x, rows.instance(i)));
+            ++i;
         }
 
         //delete index
@@ -48,4 +48,21 @@ public class ClassicalHammingDistance extends AbstractHammingDistance {
         return (b + c) / (double) (numLabels);
 
     }
+
+    /**
+     * Compute the distance among two vectors of labels
+     *
+     * @param i1 The vector of labels
+     * @param i2 The vector of labels
+     * @return The distance among the vectors
+     * @throws IllegalArgumentException If the vectors have different number
+     * of labels
+     */
+    @Override
+    public double distance(LabelVector i1, LabelVector i2) {
+
+        contingencyTable(i1, i2);
+
+        return (b + c) / (double) (numLabels);
+    }
 }
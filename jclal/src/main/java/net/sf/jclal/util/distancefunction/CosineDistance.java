@@ -19,12 +19,33 @@ import weka.core.Attribute;
 import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.NormalizableDistance;
+import weka.core.SparseInstance;
 import weka.core.Utils;
 import weka.core.neighboursearch.PerformanceStats;
 
 /**
  * Cosine Distance.
  *
+ * The types of the attributes, the binary "0"/"1" attributes and the ranges
+ * are resolved once into arrays, and they are resolved again when the
+ * instances, the attribute selection or the ranges change. The dense
+ * instances are compiled into arrays with the values used by the similarity
+ * and their squared norm, so the distance between two dense instances is a
+ * single loop over two arrays. The terms are summed in the order of the
+ * attributes, so the distances are the same than computing them attribute by
+ * attribute. The values of an instance must not change after its distances
+ * are computed.
+ *
+ * The compiled instances are kept in a small cache indexed by the identity of
+ * the instance, a new instance replaces the one stored in its slot. The size
+ * of the cache is bounded by the number of attributes used, so the memory
+ * does not grow with the dataset, and the blocks of instances visited by the
+ * distance containers stay in the cache.
+ *
+ * Like the other distance functions of Weka, the class is not thread-safe:
+ * the cache and the ranges are modified when the distances are computed, so
+ * each thread must use its own copy, as the distance containers do.
+ *
  * @author Oscar Gabriel Reyes Pupo
  * @author Eduardo Perez Perdomo
  */
@@ -32,6 +53,62 @@ public class CosineDistance extends NormalizableDistance {
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Kinds of the attributes, an attribute that is not used has kind 0.
+     */
+    private static final byte NUMERIC = 1;
+
+    private static final byte NOMINAL = 2;
+
+    /**
+     * Nominal attribute with the values "0" and "1"
+     */
+    private static final byte BINARY = 3;
+
+    /**
+     * Maximum number of compiled instances in the cache
+     */
+    private static final int MAX_CACHED = 4096;
+
+    /**
+     * Maximum number of values of all the compiled instances in the cache
+     */
+    private static final int MAX_CACHED_VALUES = 1 << 20;
+
+    /**
+     * Kind of each attribute, null if it must be resolved again
+     */
+    private transient byte[] kinds;
+
+    /**
+     * Index of the value "1" of each binary attribute
+     */
+    private transient int[] ones;
+
+    /**
+     * The attributes used in the similarity, in order
+     */
+    private transient int[] used;
+
+    /**
+     * Whether all the attributes used are numeric
+     */
+    private transient boolean allNumeric;
+
+    /**
+     * The compiled dense instances: the value of each used attribute in the
+     * similarity and, at the end, the squared norm. The numeric values are
+     * normalized, and 0 if they are missing. The nominal values are the index
+     * of the value, or -1 if the value never matches, i.e. it is missing or
+     * it is the "0" of a binary attribute.
+     */
+    private transient double[][] compiled;
+
+    /**
+     * The instance of each slot of the cache of compiled instances
+     */
+    private transient Instance[] compiledInstances;
+
     /**
      * Constructs an Cosine Distance object, Instances must be still set.
      */
@@ -89,6 +166,25 @@ public class CosineDistance extends NormalizableDistance {
      */
     @Override
     public double distance(Instance first, Instance second, double cutOffValue, PerformanceStats stats) {
+
+        validate();
+
+        if (kinds == null) {
+            resolveAttributes();
+        }
+
+        //the subclasses can redefine the local similarity
+        if (stats == null && cutOffValue == Double.POSITIVE_INFINITY
+                && getClass() == CosineDistance.class) {
+
+            double[] x = compile(first);
+            double[] y = compile(second);
+
+            if (x != null && y != null) {
+                return denseDistance(x, y);
+            }
+        }
+
         double distance = 0;
         int firstI, secondI;
         int firstNumValues = first.numValues();
@@ -98,8 +194,6 @@ public class CosineDistance extends NormalizableDistance {
 
         double norm2First = 0, norm2Second = 0;
 
-        validate();
-
         for (int p1 = 0, p2 = 0; p1 < firstNumValues || p2 < secondNumValues;) {
             if (p1 >= firstNumValues) {
                 firstI = numAttributes;
@@ -183,9 +277,14 @@ public class CosineDistance extends NormalizableDistance {
      */
     protected double localSimilarity(int index, double val1, double val2) {
 
-        switch (m_Data.attribute(index).type()) {
+        if (kinds == null) {
+            resolveAttributes();
+        }
+
+        switch (kinds[index]) {
 
-            case Attribute.NOMINAL:
+            case NOMINAL:
+            case BINARY:
 
                 if (Utils.isMissingValue(val1)
                         || Utils.isMissingValue(val2)
@@ -193,25 +292,16 @@ public class CosineDistance extends NormalizableDistance {
                 return 0;
             } else {
 
-                if (m_Data.attribute(index).numValues() == 2) {
-
-                    //binary case
-                    if ((m_Data.attribute(index).value(0).equals("0") && m_Data.attribute(index).value(1).equals("1"))
-                            || (m_Data.attribute(index).value(0).equals("1") && m_Data.attribute(index).value(1).equals("0"))) {
-
-                        if (m_Data.attribute(index).value((int) val1).equals("1")) {
-                            return 1;
-                        } else {
-                            return 0;
-                        }
-                    }
+                //binary case
+                if (kinds[index] == BINARY) {
+                    return (int) val1 == ones[index] ? 1 : 0;
                 }
 
                 //nominal case 
                 return 1;
             }
 
-            case Attribute.NUMERIC:
+            case NUMERIC:
 
                 if (Utils.isMissingValue(val1)
                         || Utils.isMissingValue(val2)) {
@@ -229,6 +319,193 @@ public class CosineDistance extends NormalizableDistance {
 
     }
 
+    /**
+     * Resolves the kinds of the attributes. The class attribute and the
+     * attributes that are not selected are not used.
+     */
+    private void resolveAttributes() {
+
+        int numAttributes = m_Data.numAttributes();
+
+        byte[] newKinds = new byte[numAttributes];
+        int[] newOnes = new int[numAttributes];
+        int[] newUsed = new int[numAttributes];
+        int numUsed = 0;
+        boolean numeric = true;
+
+        for (int i = 0; i < numAttributes; i++) {
+
+            Attribute attribute = m_Data.attribute(i);
+
+            switch (attribute.type()) {
+
+                case Attribute.NOMINAL:
+
+                    newKinds[i] = NOMINAL;
+
+                    if (attribute.numValues() == 2
+                            && ((attribute.value(0).equals("0") && attribute.value(1).equals("1"))
+                            || (attribute.value(0).equals("1") && attribute.value(1).equals("0")))) {
+                        newKinds[i] = BINARY;
+                        newOnes[i] = attribute.value(0).equals("1") ? 0 : 1;
+                    }
+
+                    break;
+
+                case Attribute.NUMERIC:
+                    newKinds[i] = NUMERIC;
+                    break;
+
+                default:
+                    break;
+            }
+
+            //the other attributes add 0 to the sums
+            if (newKinds[i] != 0 && i != m_Data.classIndex()
+                    && m_ActiveIndices != null && m_ActiveIndices[i]) {
+
+                newUsed[numUsed++] = i;
+                numeric &= newKinds[i] == NUMERIC;
+            }
+        }
+
+        used = new int[numUsed];
+        System.arraycopy(newUsed, 0, used, 0, numUsed);
+
+        //a power of two, so the slot of an instance is a mask of its hash
+        int slots = Integer.highestOneBit(Math.max(16,
+                Math.min(MAX_CACHED, MAX_CACHED_VALUES / (numUsed + 1))));
+
+        ones = newOnes;
+        allNumeric = numeric;
+        compiled = new double[slots][];
+        compiledInstances = new Instance[slots];
+        kinds = newKinds;
+    }
+
+    /**
+     * Forgets the resolved attributes and the compiled instances, because
+     * the ranges or the attributes used changed.
+     */
+    private void forgetAttributes() {
+        kinds = null;
+        compiled = null;
+        compiledInstances = null;
+    }
+
+    /**
+     * Returns the compiled values of a dense instance, null if the instance
+     * is sparse or it has infinite values.
+     */
+    private double[] compile(Instance instance) {
+
+        int slot = System.identityHashCode(instance) & (compiled.length - 1);
+
+        if (compiledInstances[slot] == instance) {
+            return compiled[slot];
+        }
+
+        if (instance instanceof SparseInstance
+                || instance.numValues() != m_Data.numAttributes()) {
+            return null;
+        }
+
+        double[] values = new double[used.length + 1];
+
+        double norm2 = 0;
+
+        for (int k = 0; k < used.length; k++) {
+
+            int index = used[k];
+            double value = instance.value(index);
+
+            if (kinds[index] == NUMERIC) {
+
+                if (Double.isInfinite(value)) {
+                    return null;
+                }
+
+                if (!Utils.isMissingValue(value)) {
+                    values[k] = !m_DontNormalize ? norm(value, index) : value;
+                }
+
+                norm2 += values[k] * values[k];
+
+            } else {
+
+                if (Utils.isMissingValue(value)
+                        || (kinds[index] == BINARY && (int) value != ones[index])) {
+                    values[k] = -1;
+                } else {
+                    values[k] = (int) value;
+                    norm2 += 1;
+                }
+            }
+        }
+
+        values[used.length] = norm2;
+
+        compiled[slot] = values;
+        compiledInstances[slot] = instance;
+
+        return values;
+    }
+
+    /**
+     * The distance between two compiled instances, the same than the loop
+     * over the attributes, since the skipped terms are 0.
+     */
+    private double denseDistance(double[] x, double[] y) {
+
+        int length = used.length;
+
+        double distance = 0;
+
+        if (allNumeric) {
+
+            for (int k = 0; k < length; k++) {
+                distance += x[k] * y[k];
+            }
+
+        } else {
+
+            for (int k = 0; k < length; k++) {
+
+                if (kinds[used[k]] == NUMERIC) {
+                    distance += x[k] * y[k];
+                } else if (x[k] >= 0 && x[k] == y[k]) {
+                    distance += 1;
+                }
+            }
+        }
+
+        return distance / (Math.sqrt(x[length] * y[length]));
+    }
+
+    @Override
+    protected void invalidate() {
+        forgetAttributes();
+        super.invalidate();
+    }
+
+    @Override
+    public double[][] initializeRanges() {
+        forgetAttributes();
+        return super.initializeRanges();
+    }
+
+    @Override
+    public void update(Instance ins) {
+        forgetAttributes();
+        super.update(ins);
+    }
+
+    @Override
+    public void updateRanges(Instance instance) {
+        forgetAttributes();
+        super.updateRanges(instance);
+    }
+
     /**
      * Updates the current distance calculated so far with the new difference
      * between two attributes. The difference between the attributes was
@@ -16,9 +16,14 @@
 package net.sf.jclal.util.distancefunction;
 
 import java.util.ArrayList;
-import net.sf.jclal.util.matrixFile.Matrix;
-import net.sf.jclal.util.sort.Container;
-import net.sf.jclal.util.sort.IndexValueContainer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.sf.jclal.util.matrixFile.MappedTriangularMatrix;
+import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.NormalizableDistance;
 
@@ -31,16 +36,20 @@ import weka.core.NormalizableDistance;
  * @author Eduardo Perez Perdomo
  *
  */
-public class DistanceContainer extends IndexValueContainer {
+public class DistanceContainer extends AbstractDensityContainer {
 
     /**
      * distance matrix
      */
     private double[][] distance;
     /**
-     * distance matrix stored over file
+     * distance matrix in single precision
      */
-    private Matrix distanceMatrix;
+    private float[][] floatDistance;
+    /**
+     * distance matrix stored over file, only the upper triangle is stored
+     */
+    private MappedTriangularMatrix distanceMatrix;
 
     /**
      * Number of attributes
@@ -52,6 +61,29 @@ public class DistanceContainer extends IndexValueContainer {
      */
     private boolean matrixOverFile = false;
 
+    /**
+     * It stores whether the distances are stored in single precision. The
+     * accumulative values are always summed in double precision.
+     */
+    private boolean singlePrecision = false;
+
+    /**
+     * Whether the matrix was read from the cache of distances
+     */
+    private boolean loadedFromCache = false;
+
+    /**
+     * The position of the instance stored in each place of the matrix when
+     * it is computed for the cache, null if the places are the positions.
+     */
+    private int[] order;
+
+    /**
+     * Number of rows and columns of the tiles in which the distances are
+     * computed.
+     */
+    private static final int TILE = 256;
+
     /**
      * Get the distance matrix
      * 
@@ -71,6 +103,35 @@ public class DistanceContainer extends IndexValueContainer {
         this.distance = distance;
     }
 
+    /**
+     * Get the distance matrix in single precision
+     *
+     * @return The distance matrix, null if the distances are stored in double
+     * precision
+     */
+    public float[][] getFloatDistance() {
+        return floatDistance;
+    }
+
+    /**
+     * Get whether the distances are stored in single precision
+     *
+     * @return Whether the distances are stored as floats
+     */
+    public boolean isSinglePrecision() {
+        return singlePrecision;
+    }
+
+    /**
+     * Get whether the matrix was read from the cache of distances instead of
+     * being computed.
+     *
+     * @return Whether the matrix was read from the cache
+     */
+    public boolean isLoadedFromCache() {
+        return loadedFromCache;
+    }
+
     /**
      * Get the number of attributes
      * 
@@ -100,9 +161,114 @@ public class DistanceContainer extends IndexValueContainer {
     public DistanceContainer(Instances instances,
             NormalizableDistance distanceFunction) {
 
+        try {
+            build(instances, distanceFunction, null, null);
+        } catch (Exception ex) {
+            Logger.getLogger(DistanceContainer.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * Constructor by default
+     *
+     * @param instances dataset
+     * @param distanceFunction The distance function used to calculate the
+     * distance
+     * @param matrixOverFile Whether the matrix will be stored into a file
+     * @throws java.lang.Exception The exception that will be launched
+     */
+    public DistanceContainer(Instances instances, NormalizableDistance distanceFunction,
+            boolean matrixOverFile) throws Exception {
+
+        this(instances, distanceFunction, matrixOverFile, null);
+    }
+
+    /**
+     * Constructor that computes the distances in parallel. The triangle of
+     * distances is split in square tiles that are computed by the tasks of the
+     * pool, each task uses its own copy of the distance function. The
+     * accumulative values are summed in the same order than the sequential
+     * construction, so the container is exactly the same.
+     *
+     * The copies of the distance function are created with its class, its
+     * options and its instances.
+     *
+     * @param instances dataset
+     * @param distanceFunction The distance function used to calculate the
+     * distance
+     * @param matrixOverFile Whether the matrix will be stored into a file
+     * @param pool The pool used to compute the distances, null to compute
+     * them sequentially
+     * @throws java.lang.Exception The exception that will be launched
+     */
+    public DistanceContainer(Instances instances, NormalizableDistance distanceFunction,
+            boolean matrixOverFile, ForkJoinPool pool) throws Exception {
+
+        this(instances, distanceFunction, matrixOverFile, false, pool);
+    }
+
+    /**
+     * Constructor that computes the distances in parallel and optionally
+     * stores them in single precision, in main memory or over a file. The
+     * single precision halves the memory, the distances are rounded to float
+     * when they are stored and the accumulative values are summed in double
+     * precision from the rounded distances, so the distances subtracted when
+     * an instance is removed are the same that were summed.
+     *
+     * @param instances dataset
+     * @param distanceFunction The distance function used to calculate the
+     * distance
+     * @param matrixOverFile Whether the matrix will be stored into a file
+     * @param singlePrecision Whether the distances are stored as floats
+     * @param pool The pool used to compute the distances, null to compute
+     * them sequentially
+     * @throws java.lang.Exception The exception that will be launched
+     */
+    public DistanceContainer(Instances instances, NormalizableDistance distanceFunction,
+            boolean matrixOverFile, boolean singlePrecision, ForkJoinPool pool) throws Exception {
+
+        this.matrixOverFile = matrixOverFile;
+        this.singlePrecision = singlePrecision;
+
+        build(instances, distanceFunction, null, pool);
+    }
+
+    /**
+     * Constructor that reuses the distances stored in a cache. If the cache
+     * does not have the distances among the instances, they are computed,
+     * in parallel if a pool is given, and stored in the cache. The matrix is
+     * mapped from the file of the cache.
+     *
+     * The matrix of the cache stores the instances in a canonical order, the
+     * positions of the instances are remapped to their places in the matrix.
+     * The accumulative values are summed in the order of the positions, so
+     * for a symmetric distance function the container is the same whether
+     * the matrix is read from the cache or not.
+     *
+     * @param instances dataset
+     * @param distanceFunction The distance function used to calculate the
+     * distance
+     * @param cache The cache of distances
+     * @param singlePrecision Whether the distances are stored as floats
+     * @param pool The pool used to compute the distances, null to compute
+     * them sequentially
+     * @throws java.lang.Exception The exception that will be launched
+     */
+    public DistanceContainer(Instances instances, NormalizableDistance distanceFunction,
+            DistanceMatrixCache cache, boolean singlePrecision, ForkJoinPool pool) throws Exception {
+
+        this.matrixOverFile = true;
+        this.singlePrecision = singlePrecision;
+
+        build(instances, distanceFunction, cache, pool);
+    }
+
+    private void build(Instances instances, NormalizableDistance distanceFunction,
+            DistanceMatrixCache cache, ForkJoinPool pool) throws Exception {
+
         size = instances.numInstances();
 
-        indexesChanges = new int[size];
+        initIndexes(size);
 
         acumulativeValue = new double[size];
 
@@ -110,89 +276,360 @@ public class DistanceContainer extends IndexValueContainer {
 
         int m = size - 1;
 
-        distance = new double[m][];
+        String key = null;
+
+        if (cache != null) {
+
+            order = new int[size];
+
+            key = cache.key(instances, distanceFunction, singlePrecision, order);
+
+            //each position refers to the place of its instance in the matrix
+            for (int place = 0; place < size; ++place) {
+                indexesChanges[order[place]] = place;
+            }
+
+            if (cache.contains(key, size, singlePrecision)) {
+
+                distanceMatrix = cache.open(key, size, singlePrecision);
+                loadedFromCache = true;
+
+            } else {
+                distanceMatrix = cache.create(key, size, singlePrecision);
+            }
+
+        } else if (matrixOverFile) {
+            distanceMatrix = new MappedTriangularMatrix(size, singlePrecision);
+        } else if (singlePrecision) {
+            floatDistance = new float[m][];
+        } else {
+            distance = new double[m][];
+        }
+
+        for (int i = 0; i < m && !matrixOverFile; ++i) {
 
-        int temp;
-        double valueTemp;
-        for (int i = 0; i < m; ++i) {
+            if (singlePrecision) {
+                floatDistance[i] = new float[size - i - 1];
+            } else {
+                distance[i] = new double[size - i - 1];
+            }
+        }
 
-            distance[i] = new double[size - i - 1];
+        int blocks = (size + TILE - 1) / TILE;
 
-            //In the begining the index and the value are equals
-            indexesChanges[i] = i;
+        if (loadedFromCache) {
+            blocks = 0;
+        }
 
-            for (int j = i + 1; j < size; ++j) {
-                temp = j - i - 1;
+        if (pool == null || blocks < 2) {
 
-                valueTemp = distanceFunction.distance(instances.instance(i),
-                        instances.instance(j));
+            for (int rowBlock = 0; rowBlock < blocks; ++rowBlock) {
+                for (int columnBlock = rowBlock; columnBlock < blocks; ++columnBlock) {
+                    computeTile(instances, distanceFunction, rowBlock, columnBlock);
+                }
+            }
+        } else {
+            pool.invoke(new TileTask(instances, distanceFunction, blocks, 0,
+                    blocks * (blocks + 1) / 2, new ConcurrentLinkedQueue<NormalizableDistance>()));
+        }
 
-                setStoreDistance(i, temp, valueTemp);
+        if (cache != null) {
 
-                //acumulative distance
-                acumulativeValue[i] += valueTemp;
-                acumulativeValue[j] += valueTemp;
+            if (!loadedFromCache) {
+                cache.store(key, distanceMatrix);
             }
+
+            order = null;
+
+            sumPositions();
+
+            return;
+        }
+
+        if (pool == null || blocks < 2) {
+
+            sumRows(0, size);
+
+            return;
         }
 
-        indexesChanges[size - 1] = size - 1;
+        if (matrixOverFile) {
+            //the file is read sequentially
+            sumRows(0, size);
+        } else {
+            pool.invoke(new SumTask(0, size));
+        }
     }
 
     /**
-     * Constructor by default
-     *
-     * @param instances dataset
-     * @param distanceFunction The distance function used to calculate the
-     * distance
-     * @param matrixOverFile Whether the matrix will be stored into a file
-     * @throws java.lang.Exception The exception that will be launched
+     * Computes the distances between the instances of a block of rows and the
+     * instances of a block of columns.
      */
-    public DistanceContainer(Instances instances, NormalizableDistance distanceFunction,
-            boolean matrixOverFile) throws Exception {
+    private void computeTile(Instances instances, NormalizableDistance distanceFunction,
+            int rowBlock, int columnBlock) {
 
-        this.matrixOverFile = matrixOverFile;
+        int rowEnd = Math.min(size - 1, (rowBlock + 1) * TILE);
+        int columnEnd = Math.min(size, (columnBlock + 1) * TILE);
 
-        size = instances.numInstances();
+        double[] values = new double[TILE];
 
-        indexesChanges = new int[size];
+        for (int i = rowBlock * TILE; i < rowEnd; ++i) {
 
-        acumulativeValue = new double[size];
+            int from = Math.max(i + 1, columnBlock * TILE);
 
-        numAttributes = instances.numAttributes();
+            for (int j = from; j < columnEnd; ++j) {
+                values[j - from] = distanceFunction.distance(instance(instances, i),
+                        instance(instances, j));
+            }
 
-        int m = size - 1;
+            storeRow(i, from - i - 1, values, columnEnd - from);
+        }
+    }
+
+    /**
+     * Returns the instance stored in a place of the matrix.
+     */
+    private Instance instance(Instances instances, int place) {
+        return instances.instance(order == null ? place : order[place]);
+    }
+
+    /**
+     * Sums the distances of each instance in the order of the positions, as
+     * the construction without cache, through the places of the instances in
+     * the matrix.
+     */
+    private void sumPositions() {
+
+        for (int k = 0; k < size; ++k) {
+
+            int place = indexesChanges[k];
+
+            double sum = 0;
+
+            for (int j = 0; j < size; ++j) {
+
+                if (j != k) {
+                    sum += getStoreDistanceOf(indexesChanges[j], place);
+                }
+            }
+
+            acumulativeValue[place] = sum;
+        }
+    }
+
+    /**
+     * Stores consecutive distances of a row.
+     */
+    private void storeRow(int r, int c, double[] values, int length) {
 
         if (matrixOverFile) {
-            distanceMatrix = new Matrix(size, size, true);
+            distanceMatrix.setRow(r, c, values, length);
+        } else if (singlePrecision) {
+            float[] row = floatDistance[r];
+            for (int k = 0; k < length; ++k) {
+                row[c + k] = (float) values[k];
+            }
         } else {
-            distance = new double[m][];
+            System.arraycopy(values, 0, distance[r], c, length);
         }
+    }
 
-        int temp;
-        double valueTemp;
-        for (int i = 0; i < m; ++i) {
+    /**
+     * Sums the distances of a range of rows. The distances of each row are
+     * summed in the order of the other instance, as in the sequential
+     * construction.
+     */
+    private void sumRows(int from, int to) {
 
-            if (!matrixOverFile) {
-                distance[i] = new double[size - i - 1];
+        if (matrixOverFile) {
+
+            for (int i = 0; i < size - 1; ++i) {
+                for (int j = i + 1; j < size; ++j) {
+
+                    double valueTemp = getStoreDistance(i, j - i - 1);
+
+                    //acumulative distance
+                    acumulativeValue[i] += valueTemp;
+                    acumulativeValue[j] += valueTemp;
+                }
+            }
+
+            return;
+        }
+
+        if (singlePrecision) {
+
+            for (int k = from; k < to; ++k) {
+
+                double sum = 0;
+
+                for (int j = 0; j < k; ++j) {
+                    sum += floatDistance[j][k - j - 1];
+                }
+
+                for (int j = k + 1; j < size; ++j) {
+                    sum += floatDistance[k][j - k - 1];
+                }
+
+                acumulativeValue[k] = sum;
+            }
+
+            return;
+        }
+
+        for (int k = from; k < to; ++k) {
+
+            double sum = 0;
+
+            for (int j = 0; j < k; ++j) {
+                sum += distance[j][k - j - 1];
+            }
+
+            for (int j = k + 1; j < size; ++j) {
+                sum += distance[k][j - k - 1];
+            }
+
+            acumulativeValue[k] = sum;
+        }
+    }
+
+    /**
+     * Creates a copy of the distance function with its class, its options and
+     * its instances, so that it can be used by other thread.
+     *
+     * @param distanceFunction The distance function
+     * @return The copy
+     * @throws Exception If the copy cannot be created
+     */
+    static NormalizableDistance copyOf(NormalizableDistance distanceFunction)
+            throws Exception {
+
+        return copyOf(distanceFunction, distanceFunction.getInstances());
+    }
+
+    /**
+     * Creates a copy of the distance function with its class and its options
+     * over the given instances. The ranges of the attributes are computed
+     * from these instances, so the copy normalizes like a function that was
+     * set with the same instances.
+     *
+     * @param distanceFunction The distance function
+     * @param instances The instances of the copy
+     * @return The copy
+     * @throws Exception If the copy cannot be created
+     */
+    static NormalizableDistance copyOf(NormalizableDistance distanceFunction,
+            Instances instances) throws Exception {
+
+        NormalizableDistance copy = distanceFunction.getClass().getConstructor().newInstance();
+
+        copy.setOptions(distanceFunction.getOptions());
+        copy.setInstances(instances);
+
+        return copy;
+    }
+
+    /**
+     * Fork-join task that computes a range of the tiles of the upper triangle,
+     * the tiles are numbered by rows.
+     */
+    private class TileTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Instances instances;
+
+        private final NormalizableDistance distanceFunction;
+
+        private final int blocks;
+
+        private final int from;
+
+        private final int to;
+
+        private final Queue<NormalizableDistance> copies;
+
+        TileTask(Instances instances, NormalizableDistance distanceFunction,
+                int blocks, int from, int to, Queue<NormalizableDistance> copies) {
+            this.instances = instances;
+            this.distanceFunction = distanceFunction;
+            this.blocks = blocks;
+            this.from = from;
+            this.to = to;
+            this.copies = copies;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from > 1) {
+
+                int middle = (from + to) >>> 1;
+
+                invokeAll(new TileTask(instances, distanceFunction, blocks, from, middle, copies),
+                        new TileTask(instances, distanceFunction, blocks, middle, to, copies));
+                return;
             }
 
-            //In the begining the index and the value are equals
-            indexesChanges[i] = i;
+            //the tile number is converted to the row block and the column block
+            int rowBlock = 0;
+            int tile = from;
 
-            for (int j = i + 1; j < size; ++j) {
-                temp = j - i - 1;
-                valueTemp = distanceFunction.distance(instances.instance(i),
-                        instances.instance(j));
+            while (tile >= blocks - rowBlock) {
+                tile -= blocks - rowBlock;
+                ++rowBlock;
+            }
+
+            NormalizableDistance copy = copies.poll();
+
+            try {
+
+                if (copy == null) {
+                    copy = copyOf(distanceFunction);
+                }
 
-                setStoreDistance(i, temp, valueTemp);
+                computeTile(instances, copy, rowBlock, rowBlock + tile);
 
-                //acumulative distance
-                acumulativeValue[i] += valueTemp;
-                acumulativeValue[j] += valueTemp;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            } finally {
+
+                if (copy != null) {
+                    copies.offer(copy);
+                }
             }
         }
+    }
+
+    /**
+     * Fork-join task that sums the distances of a range of rows.
+     */
+    private class SumTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+
+        private final int to;
+
+        SumTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from > TILE) {
 
-        indexesChanges[size - 1] = size - 1;
+                int middle = (from + to) >>> 1;
+
+                invokeAll(new SumTask(from, middle), new SumTask(middle, to));
+                return;
+            }
+
+            sumRows(from, to);
+        }
     }
 
     /**
@@ -205,6 +642,8 @@ public class DistanceContainer extends IndexValueContainer {
     protected void setStoreDistance(int r, int c, double value) {
         if (matrixOverFile) {
             distanceMatrix.set(r, c, value);
+        } else if (singlePrecision) {
+            floatDistance[r][c] = (float) value;
         } else {
             distance[r][c] = value;
         }
@@ -220,6 +659,8 @@ public class DistanceContainer extends IndexValueContainer {
     protected double getStoreDistance(int r, int c) {
         if (matrixOverFile) {
             return distanceMatrix.get(r, c);
+        } else if (singlePrecision) {
+            return floatDistance[r][c];
         } else {
             return distance[r][c];
         }
@@ -234,9 +675,14 @@ public class DistanceContainer extends IndexValueContainer {
      */
     public double getDistance(int indexX, int indexY) {
 
-        int posX = indexesChanges[indexX];
+        return getStoreDistanceOf(index(indexX), index(indexY));
+    }
 
-        int posY = indexesChanges[indexY];
+    /**
+     * Returns the stored distance between two instances given by their
+     * original indexes.
+     */
+    private double getStoreDistanceOf(int posX, int posY) {
 
         if (posX == posY) {
             return 0;
@@ -245,27 +691,21 @@ public class DistanceContainer extends IndexValueContainer {
         int r = Math.min(posX, posY);
         int c = Math.max(posX, posY);
 
-        double similarityValue = getStoreDistance(r, c - r - 1);
-
-        return similarityValue;
+        return getStoreDistance(r, c - r - 1);
     }
 
     /**
-     * Update the indexes. It is used to accelerate the process.
+     * Update the indexes. It is used to accelerate the process. The
+     * remaining instances are visited once, and the distances to all the
+     * removed instances are subtracted from each one in a single pass.
      *
      * @param removedIndexes Array that contains the indexes that will be
      * removed
      */
+    @Override
     public void updateIndexes(ArrayList<Integer> removedIndexes) {
 
-        ArrayList<Container> ordered = obtainOrdered(removedIndexes);
-
-        for (Container indexToRemove : ordered) {
-
-            updateIndex(Integer.parseInt(indexToRemove.getValue().toString()));
-
-        }
-
+        removeIndexes(obtainOrdered(removedIndexes));
     }
 
     /**
@@ -274,23 +714,63 @@ public class DistanceContainer extends IndexValueContainer {
      * @param index index
      */
     public void updateIndex(int index) {
-        for (int i = 0; i < index; i++) {
-            setAcumulativeValue(i, getAcumulativeValue(i)
-                    - getDistance(index, i));
+
+        removeIndexes(new int[]{index});
+    }
+
+    /**
+     * Subtracts the distances to the removed instances from the accumulative
+     * values of the remaining ones and deletes their indexes. The distances
+     * are subtracted in the same order as removing the instances one by one.
+     *
+     * @param ordered The positions of the removed instances, in descending
+     * order
+     */
+    private void removeIndexes(int[] ordered) {
+
+        if (ordered.length == 0) {
+            return;
+        }
+
+        //the descending positions do not change until they are deleted
+        int[] removed = new int[ordered.length];
+
+        for (int k = 0; k < ordered.length; k++) {
+            removed[k] = index(ordered[k]);
+        }
+
+        boolean[] isRemoved = new boolean[indexesChanges.length];
+
+        for (int pos : removed) {
+            isRemoved[pos] = true;
         }
 
-        for (int i = index + 1; i < size; i++) {
-            setAcumulativeValue(i, getAcumulativeValue(i)
-                    - getDistance(index, i));
+        //the remaining instances are visited in order through the original
+        //indexes, without translating each position
+        for (int pos : indexesChanges) {
+
+            if (pos < 0 || isRemoved[pos]) {
+                continue;
+            }
+
+            double value = acumulativeValue[pos];
+
+            for (int r : removed) {
+                value -= getStoreDistanceOf(r, pos);
+            }
+
+            acumulativeValue[pos] = value;
         }
 
-        //delete index
-        deleteIndex(index);
+        for (int index : ordered) {
+            deleteIndex(index);
+        }
     }
 
     /**
      * Free the memory
      */
+    @Override
     public void destroy() {
         if (distanceMatrix != null) {
             distanceMatrix.destroy();
@@ -299,6 +779,7 @@ public class DistanceContainer extends IndexValueContainer {
         acumulativeValue = null;
         indexesChanges = null;
         distance = null;
+        floatDistance = null;
         distanceMatrix = null;
     }
 }
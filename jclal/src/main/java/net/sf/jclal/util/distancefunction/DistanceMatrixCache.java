@@ -0,0 +1,308 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package net.sf.jclal.util.distancefunction;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.sf.jclal.util.matrixFile.MappedTriangularMatrix;
+import weka.core.Attribute;
+import weka.core.Instances;
+import weka.core.NormalizableDistance;
+
+/**
+ * On-disk cache of the distances among a set of instances. The folds, the
+ * runs and the experiments that use the same unlabelled set and the same
+ * distance function reuse the stored matrix instead of computing it again.
+ *
+ * The matrices are stored as packed triangles (see MappedTriangularMatrix)
+ * in files of a directory, named by a SHA-256 key of:
+ * <ul>
+ * <li>the class and the options of the distance function, which include the
+ * attribute selection, e.g. the label attributes excluded by the
+ * multi-label strategies;</li>
+ * <li>the ranges used to normalize the attributes;</li>
+ * <li>the attributes of the dataset and the class index;</li>
+ * <li>the values of the instances;</li>
+ * <li>the precision of the stored distances.</li>
+ * </ul>
+ *
+ * The instances are stored in a canonical order that does not depend on
+ * their order in the set, so the same set of instances in other order uses
+ * the same matrix, and the containers remap the positions of the instances.
+ *
+ * A matrix is computed over a temporal file of the directory, and it is
+ * renamed when it is complete, so an incomplete matrix is never read.
+ *
+ * @author Oscar Gabriel Reyes Pupo
+ * @author Eduardo Perez Perdomo
+ */
+public class DistanceMatrixCache {
+
+    /**
+     * The extension of the files of the matrices
+     */
+    public static final String EXTENSION = ".dist";
+
+    /**
+     * The directory of the matrices
+     */
+    private File directory;
+
+    /**
+     * Constructor.
+     *
+     * @param directory The directory of the matrices, it is created if it
+     * does not exist
+     */
+    public DistanceMatrixCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Get the directory of the matrices.
+     *
+     * @return The directory
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Computes the key of the distances among a set of instances and their
+     * canonical order.
+     *
+     * @param instances The instances
+     * @param distanceFunction The distance function
+     * @param singlePrecision Whether the distances are stored as floats
+     * @param order The array where the canonical order is stored, the
+     * position in the set of the instance stored in each place
+     * @return The key
+     * @throws Exception If the ranges of the distance function cannot be
+     * obtained
+     */
+    public String key(Instances instances, NormalizableDistance distanceFunction,
+            boolean singlePrecision, int[] order) throws Exception {
+
+        int n = instances.numInstances();
+
+        final double[][] values = new double[n][];
+
+        Integer[] positions = new Integer[n];
+
+        for (int i = 0; i < n; i++) {
+            values[i] = instances.instance(i).toDoubleArray();
+            positions[i] = i;
+        }
+
+        //the equal instances are interchangeable
+        Arrays.sort(positions, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+
+                double[] x = values[a];
+                double[] y = values[b];
+
+                for (int k = 0; k < Math.min(x.length, y.length); k++) {
+
+                    int c = Double.compare(x[k], y[k]);
+
+                    if (c != 0) {
+                        return c;
+                    }
+                }
+
+                return x.length - y.length;
+            }
+        });
+
+        MessageDigest digest = newDigest();
+
+        update(digest, distanceFunction.getClass().getName());
+
+        for (String option : distanceFunction.getOptions()) {
+            update(digest, option);
+        }
+
+        update(digest, distanceFunction.getAttributeIndices());
+        update(digest, Boolean.toString(distanceFunction.getInvertSelection()));
+        update(digest, Boolean.toString(singlePrecision));
+
+        double[][] ranges = distanceFunction.getDontNormalize() ? null
+                : distanceFunction.getRanges();
+
+        if (ranges != null) {
+            for (double[] range : ranges) {
+                update(digest, range);
+            }
+        }
+
+        update(digest, Integer.toString(instances.classIndex()));
+
+        for (int k = 0; k < instances.numAttributes(); k++) {
+
+            Attribute attribute = instances.attribute(k);
+
+            update(digest, attribute.type() + ":" + attribute.numValues());
+        }
+
+        update(digest, Integer.toString(n));
+
+        for (int i = 0; i < n; i++) {
+            order[i] = positions[i];
+            update(digest, values[positions[i]]);
+        }
+
+        StringBuilder key = new StringBuilder();
+
+        for (byte b : digest.digest()) {
+            key.append(String.format("%02x", b & 0xff));
+        }
+
+        return key.toString();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+
+        try {
+            digest.update(value.getBytes("UTF-8"));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        //separator of the fields
+        digest.update((byte) 0);
+    }
+
+    private static void update(MessageDigest digest, double[] values) {
+
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 8 + 4);
+
+        buffer.putInt(values.length);
+
+        for (double value : values) {
+            buffer.putDouble(value);
+        }
+
+        digest.update(buffer.array());
+    }
+
+    /**
+     * Get the file of a matrix.
+     *
+     * @param key The key of the matrix
+     * @return The file
+     */
+    public File getFile(String key) {
+        return new File(directory, key + EXTENSION);
+    }
+
+    /**
+     * Returns whether a complete matrix is stored.
+     *
+     * @param key The key of the matrix
+     * @param size The number of instances
+     * @param singlePrecision Whether the distances are stored as floats
+     * @return true if the matrix is stored
+     */
+    public boolean contains(String key, int size, boolean singlePrecision) {
+
+        File file = getFile(key);
+
+        return file.isFile() && file.length() == MappedTriangularMatrix.length(size, singlePrecision);
+    }
+
+    /**
+     * Maps a stored matrix.
+     *
+     * @param key The key of the matrix
+     * @param size The number of instances
+     * @param singlePrecision Whether the distances are stored as floats
+     * @return The matrix
+     * @throws IOException If the file cannot be mapped
+     */
+    public MappedTriangularMatrix open(String key, int size, boolean singlePrecision)
+            throws IOException {
+        return new MappedTriangularMatrix(getFile(key), size, singlePrecision);
+    }
+
+    /**
+     * Creates a matrix over a temporal file of the directory, to compute the
+     * distances. The matrix is added to the cache with store.
+     *
+     * @param key The key of the matrix
+     * @param size The number of instances
+     * @param singlePrecision Whether the distances are stored as floats
+     * @return The matrix
+     * @throws IOException If the file cannot be created
+     */
+    public MappedTriangularMatrix create(String key, int size, boolean singlePrecision)
+            throws IOException {
+
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException("The directory " + directory + " cannot be created");
+        }
+
+        File file = File.createTempFile(key, ".tmp", directory);
+
+        return new MappedTriangularMatrix(file, size, singlePrecision);
+    }
+
+    /**
+     * Adds a computed matrix to the cache. The mapped elements are written to
+     * the temporal file, whose channel was closed when it was mapped, and the
+     * file is renamed. If it cannot be renamed, e.g. the system does not
+     * rename mapped files, the failure is logged and the temporal file is
+     * deleted on exit.
+     *
+     * @param key The key of the matrix
+     * @param matrix The matrix created with create
+     * @return Whether the matrix was stored
+     */
+    public boolean store(String key, MappedTriangularMatrix matrix) {
+
+        File temporal = matrix.getMatrixFile();
+
+        File file = getFile(key);
+
+        matrix.force();
+
+        if (temporal.renameTo(file)) {
+            return true;
+        }
+
+        Logger.getLogger(DistanceMatrixCache.class.getName()).log(Level.WARNING,
+                "The file {0} cannot be renamed to {1}", new Object[]{temporal, file});
+
+        temporal.deleteOnExit();
+
+        return false;
+    }
+}
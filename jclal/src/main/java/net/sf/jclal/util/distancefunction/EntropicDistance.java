@@ -50,9 +50,36 @@ public class EntropicDistance extends AbstractHammingDistance {
 
         contingencyTable(i1, i2);
 
+        return entropicDistance();
+    }
+
+    /**
+     * Compute the entropic distance among two vectors of labels
+     *
+     * @param i1 The vector of labels
+     * @param i2 The vector of labels
+     * @return The distance among the vectors
+     * @throws IllegalArgumentException If the vectors have different number
+     * of labels
+     */
+    @Override
+    public double distance(LabelVector i1, LabelVector i2) {
+
+        contingencyTable(i1, i2);
+
+        return entropicDistance();
+    }
+
+    /**
+     * Compute the entropic distance from the contingency table
+     *
+     * @return The distance
+     */
+    private double entropicDistance() {
+
         double q = a + b + c + d;
 
-        if (i1.length != q) {
+        if (numLabels != q) {
             System.err.println("Diferentes distancias");
             System.exit(1);
         }
@@ -0,0 +1,164 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package net.sf.jclal.util.distancefunction;
+
+import java.io.Serializable;
+
+/**
+ * Vector of labels of a multi-label instance packed in the bits of an array
+ * of longs, the label l is the bit l % 64 of the word l / 64. The bits after
+ * the last label are always 0, so the labels of two vectors are compared
+ * word by word.
+ *
+ * @author Oscar Gabriel Reyes Pupo
+ * @author Eduardo Perez Perdomo
+ */
+public class LabelVector implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The words of the bits
+     */
+    private final long[] words;
+
+    /**
+     * Number of labels.
+     */
+    private final int numLabels;
+
+    /**
+     * Constructor, all the labels are not relevant.
+     *
+     * @param numLabels The number of labels
+     */
+    public LabelVector(int numLabels) {
+        this.numLabels = numLabels;
+        words = new long[(numLabels + 63) >>> 6];
+    }
+
+    /**
+     * Constructor from an array of booleans.
+     *
+     * @param labels Whether each label is relevant
+     */
+    public LabelVector(boolean[] labels) {
+
+        this(labels.length);
+
+        for (int l = 0; l < labels.length; l++) {
+            if (labels[l]) {
+                words[l >>> 6] |= 1L << l;
+            }
+        }
+    }
+
+    /**
+     * Converts several arrays of booleans.
+     *
+     * @param labels The labels of each instance
+     * @return The vectors
+     */
+    public static LabelVector[] valueOf(boolean[][] labels) {
+
+        LabelVector[] vectors = new LabelVector[labels.length];
+
+        for (int i = 0; i < labels.length; i++) {
+            vectors[i] = new LabelVector(labels[i]);
+        }
+
+        return vectors;
+    }
+
+    /**
+     * Get whether a label is relevant.
+     *
+     * @param label The label
+     * @return Whether the label is relevant
+     */
+    public boolean get(int label) {
+        return (words[label >>> 6] & (1L << label)) != 0;
+    }
+
+    /**
+     * Set whether a label is relevant.
+     *
+     * @param label The label
+     * @param relevant Whether the label is relevant
+     */
+    public void set(int label, boolean relevant) {
+
+        if (label < 0 || label >= numLabels) {
+            throw new IndexOutOfBoundsException("label: " + label);
+        }
+
+        if (relevant) {
+            words[label >>> 6] |= 1L << label;
+        } else {
+            words[label >>> 6] &= ~(1L << label);
+        }
+    }
+
+    /**
+     * Get the number of relevant labels.
+     *
+     * @return The number of relevant labels
+     */
+    public int cardinality() {
+
+        int count = 0;
+
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+
+        return count;
+    }
+
+    /**
+     * Get the number of labels.
+     *
+     * @return The number of labels
+     */
+    public int getNumLabels() {
+        return numLabels;
+    }
+
+    /**
+     * Get the words of the bits. The array is not copied.
+     *
+     * @return The words
+     */
+    public long[] getWords() {
+        return words;
+    }
+
+    /**
+     * Converts the vector to an array of booleans.
+     *
+     * @return Whether each label is relevant
+     */
+    public boolean[] toBooleanArray() {
+
+        boolean[] labels = new boolean[numLabels];
+
+        for (int l = 0; l < numLabels; l++) {
+            labels[l] = get(l);
+        }
+
+        return labels;
+    }
+}
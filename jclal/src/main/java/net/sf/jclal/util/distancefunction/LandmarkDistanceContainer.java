@@ -0,0 +1,500 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package net.sf.jclal.util.distancefunction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import net.sf.jclal.util.random.IRandGen;
+import weka.core.Instances;
+import weka.core.NormalizableDistance;
+
+/**
+ * Container that estimates the accumulative distance from each instance to
+ * the rest of the set with the distances to a random sample of landmark
+ * instances, instead of storing the distances between all the instances.
+ *
+ * The accumulative value of an instance is estimated as the mean distance to
+ * the landmarks multiplied by the number of the other instances. Only the
+ * distances to the landmarks are stored, so the memory is O(n * k) for k
+ * landmarks. The number of landmarks starts small and grows until the
+ * estimated relative standard error of the accumulative values is below the
+ * given bound, or the maximum number of landmarks is reached. If all the
+ * other instances are landmarks the values are exact.
+ *
+ * When landmarks leave the set, their distances are discounted, and if less
+ * than half of the landmarks remain, new landmarks are drawn until the bound
+ * of the error holds again for the remaining instances.
+ *
+ * @author Oscar Gabriel Reyes Pupo
+ * @author Eduardo Perez Perdomo
+ */
+public class LandmarkDistanceContainer extends AbstractDensityContainer {
+
+    /**
+     * Number of landmarks drawn first to estimate the error.
+     */
+    private static final int INITIAL_LANDMARKS = 32;
+
+    /**
+     * Number of standard errors of the bound, about 95% of confidence.
+     */
+    private static final double CONFIDENCE = 1.96;
+
+    /**
+     * Minimum number of instances computed by a task.
+     */
+    private static final int MIN_CHUNK = 256;
+
+    private Instances instances;
+
+    private NormalizableDistance distanceFunction;
+
+    private IRandGen randgen;
+
+    private ForkJoinPool pool;
+
+    /**
+     * Maximum number of landmarks, the columns of the distances.
+     */
+    private int maxLandmarks;
+
+    /**
+     * The bound of the relative error of the accumulative values.
+     */
+    private double relativeError;
+
+    /**
+     * Distances from each instance to each landmark, stored by rows in single
+     * precision to halve the memory. The sums use the same rounded values, so
+     * the distances of a removed landmark are discounted exactly.
+     */
+    private float[] distances;
+
+    /**
+     * The landmark of each column, -1 if the column is free.
+     */
+    private int[] landmarks;
+
+    /**
+     * The column of each instance if it is a landmark, -1 otherwise.
+     */
+    private int[] column;
+
+    private int numLandmarks;
+
+    /**
+     * Number of landmarks reached in the construction, it is restored when
+     * the landmarks leave the set.
+     */
+    private int targetLandmarks;
+
+    /**
+     * Sum and sum of squares of the distances from each instance to the
+     * landmarks, excluding itself.
+     */
+    private double[] sum;
+
+    private double[] sumSquares;
+
+    /**
+     * Number of landmarks that contribute to the sums of each instance.
+     */
+    private int[] count;
+
+    private boolean[] alive;
+
+    /**
+     * Constructor.
+     *
+     * @param instances dataset
+     * @param distanceFunction The distance function used to calculate the
+     * distance
+     * @param maxLandmarks The maximum number of landmarks
+     * @param relativeError The bound of the relative error of the
+     * accumulative values
+     * @param randgen The random generator used to draw the landmarks
+     * @param pool The pool used to compute the distances, null to compute
+     * them sequentially
+     */
+    public LandmarkDistanceContainer(Instances instances, NormalizableDistance distanceFunction,
+            int maxLandmarks, double relativeError, IRandGen randgen, ForkJoinPool pool) {
+
+        //the set of the strategy shrinks when the instances are labeled, the
+        //copy keeps the original positions to draw new landmarks
+        this.instances = new Instances(instances);
+        this.distanceFunction = distanceFunction;
+        this.randgen = randgen;
+        this.pool = pool;
+        this.relativeError = relativeError;
+
+        size = instances.numInstances();
+
+        //the distances must fit in an array
+        int maxColumns = (Integer.MAX_VALUE - 8) / Math.max(1, size);
+
+        this.maxLandmarks = Math.max(1, Math.min(Math.min(maxLandmarks, size - 1), maxColumns));
+
+        initIndexes(size);
+        acumulativeValue = new double[size];
+        alive = new boolean[size];
+        column = new int[size];
+
+        Arrays.fill(alive, true);
+        Arrays.fill(column, -1);
+
+        distances = new float[size * this.maxLandmarks];
+        landmarks = new int[this.maxLandmarks];
+        Arrays.fill(landmarks, -1);
+
+        sum = new double[size];
+        sumSquares = new double[size];
+        count = new int[size];
+
+        addLandmarks(Math.min(INITIAL_LANDMARKS, this.maxLandmarks));
+
+        //the landmarks are increased until the error is below the bound
+        int required = requiredLandmarks();
+
+        if (required > numLandmarks) {
+            addLandmarks(Math.min(required, this.maxLandmarks) - numLandmarks);
+        }
+
+        targetLandmarks = numLandmarks;
+
+        updateEstimates();
+    }
+
+    /**
+     * Returns the number of landmarks needed to reach the bound of the error,
+     * according to the worst instance.
+     */
+    private int requiredLandmarks() {
+
+        double worst = 0;
+
+        for (int i = 0; i < acumulativeValue.length; i++) {
+
+            if (alive[i] && count[i] > 1) {
+                worst = Math.max(worst, coefficientOfVariation(i));
+            }
+        }
+
+        double required = Math.ceil(Math.pow(CONFIDENCE * worst / relativeError, 2));
+
+        return (int) Math.min(Integer.MAX_VALUE, required);
+    }
+
+    private double coefficientOfVariation(int i) {
+
+        double mean = sum[i] / count[i];
+
+        if (mean <= 0) {
+            return 0;
+        }
+
+        double variance = Math.max(0, sumSquares[i] / count[i] - mean * mean);
+
+        return Math.sqrt(variance) / mean;
+    }
+
+    /**
+     * Returns the estimated relative error of the accumulative values, the
+     * worst of the remaining instances. The error is 0 if all the other
+     * instances are landmarks.
+     *
+     * @return The estimated relative error
+     */
+    public double getEstimatedRelativeError() {
+
+        double worst = 0;
+
+        for (int i = 0; i < acumulativeValue.length; i++) {
+
+            if (alive[i] && count[i] > 0 && count[i] < size - 1) {
+
+                double population = size - 1;
+
+                //finite population correction
+                double correction = Math.sqrt((population - count[i]) / Math.max(1, population - 1));
+
+                worst = Math.max(worst, CONFIDENCE * coefficientOfVariation(i)
+                        * correction / Math.sqrt(count[i]));
+            }
+        }
+
+        return worst;
+    }
+
+    /**
+     * Get the number of landmarks.
+     *
+     * @return The number of landmarks
+     */
+    public int getNumLandmarks() {
+        return numLandmarks;
+    }
+
+    /**
+     * Draws new landmarks among the remaining instances and adds their
+     * distances.
+     *
+     * @param number The number of landmarks to add
+     */
+    private void addLandmarks(int number) {
+
+        int[] candidates = new int[size];
+        int numCandidates = 0;
+
+        for (int i = 0; i < acumulativeValue.length; i++) {
+
+            if (alive[i] && column[i] == -1) {
+                candidates[numCandidates++] = i;
+            }
+        }
+
+        number = Math.min(number, Math.min(numCandidates, maxLandmarks - numLandmarks));
+
+        if (number <= 0) {
+            return;
+        }
+
+        final int[] newLandmarks = new int[number];
+        final int[] newColumns = new int[number];
+
+        int free = 0;
+
+        for (int k = 0; k < number; k++) {
+
+            //partial Fisher-Yates shuffle of the candidates
+            int chosen = randgen.choose(k, numCandidates);
+            int temp = candidates[k];
+            candidates[k] = candidates[chosen];
+            candidates[chosen] = temp;
+
+            while (landmarks[free] != -1) {
+                ++free;
+            }
+
+            newLandmarks[k] = candidates[k];
+            newColumns[k] = free;
+
+            landmarks[free] = candidates[k];
+            column[candidates[k]] = free;
+            ++free;
+        }
+
+        numLandmarks += number;
+
+        if (pool == null || acumulativeValue.length <= MIN_CHUNK) {
+            computeColumns(distanceFunction, newLandmarks, newColumns, 0, acumulativeValue.length);
+        } else {
+            pool.invoke(new ColumnTask(newLandmarks, newColumns, 0, acumulativeValue.length,
+                    new ConcurrentLinkedQueue<NormalizableDistance>()));
+        }
+    }
+
+    /**
+     * Computes the distances from a range of instances to the new landmarks.
+     * Each instance only modifies its own row and sums.
+     */
+    private void computeColumns(NormalizableDistance distanceFunction, int[] newLandmarks,
+            int[] newColumns, int from, int to) {
+
+        for (int i = from; i < to; i++) {
+
+            if (!alive[i]) {
+                continue;
+            }
+
+            for (int k = 0; k < newLandmarks.length; k++) {
+
+                int l = newLandmarks[k];
+
+                if (l == i) {
+                    continue;
+                }
+
+                float value = (float) distanceFunction.distance(instances.instance(i),
+                        instances.instance(l));
+
+                distances[i * maxLandmarks + newColumns[k]] = value;
+
+                //the same double product than the one discounted
+                double v = value;
+
+                sum[i] += v;
+                sumSquares[i] += v * v;
+                ++count[i];
+            }
+        }
+    }
+
+    /**
+     * Recomputes the accumulative values from the sums.
+     */
+    private void updateEstimates() {
+
+        for (int i = 0; i < acumulativeValue.length; i++) {
+
+            if (alive[i]) {
+                acumulativeValue[i] = count[i] == 0 ? 0 : (size - 1) * sum[i] / count[i];
+            }
+        }
+    }
+
+    /**
+     * Removes the instances from the set. The distances to the removed
+     * landmarks are discounted, and new landmarks are drawn if less than half
+     * of the landmarks remain, as many as the bound of the error requires.
+     *
+     * @param removedIndexes Array that contains the indexes that will be
+     * removed
+     */
+    @Override
+    public void updateIndexes(ArrayList<Integer> removedIndexes) {
+
+        for (int pos : obtainOrdered(removedIndexes)) {
+
+            int removed = index(pos);
+
+            alive[removed] = false;
+
+            int c = column[removed];
+
+            if (c != -1) {
+
+                for (int i = 0; i < acumulativeValue.length; i++) {
+
+                    if (alive[i]) {
+
+                        double value = distances[i * maxLandmarks + c];
+
+                        sum[i] -= value;
+                        sumSquares[i] -= value * value;
+                        --count[i];
+                    }
+                }
+
+                landmarks[c] = -1;
+                column[removed] = -1;
+                --numLandmarks;
+            }
+
+            deleteIndex(pos);
+        }
+
+        int target = Math.min(targetLandmarks, size - 1);
+
+        if (numLandmarks < target / 2) {
+
+            addLandmarks(target - numLandmarks);
+
+            //the remaining instances may need more landmarks to keep the bound
+            int required = requiredLandmarks();
+
+            if (required > numLandmarks) {
+                addLandmarks(required - numLandmarks);
+            }
+
+            targetLandmarks = Math.max(targetLandmarks, numLandmarks);
+        }
+
+        updateEstimates();
+    }
+
+    /**
+     * Free the memory
+     */
+    @Override
+    public void destroy() {
+        acumulativeValue = null;
+        indexesChanges = null;
+        distances = null;
+        sum = null;
+        sumSquares = null;
+        count = null;
+        alive = null;
+        column = null;
+        landmarks = null;
+        instances = null;
+    }
+
+    /**
+     * Fork-join task that computes the distances from a range of instances to
+     * the new landmarks.
+     */
+    private class ColumnTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] newLandmarks;
+
+        private final int[] newColumns;
+
+        private final int from;
+
+        private final int to;
+
+        private final Queue<NormalizableDistance> copies;
+
+        ColumnTask(int[] newLandmarks, int[] newColumns, int from, int to,
+                Queue<NormalizableDistance> copies) {
+            this.newLandmarks = newLandmarks;
+            this.newColumns = newColumns;
+            this.from = from;
+            this.to = to;
+            this.copies = copies;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from > MIN_CHUNK) {
+
+                int middle = (from + to) >>> 1;
+
+                invokeAll(new ColumnTask(newLandmarks, newColumns, from, middle, copies),
+                        new ColumnTask(newLandmarks, newColumns, middle, to, copies));
+                return;
+            }
+
+            NormalizableDistance copy = copies.poll();
+
+            try {
+
+                //the set of the strategy may have shrunk, the copy takes the
+                //ranges from the instances the container was built with
+                if (copy == null) {
+                    copy = DistanceContainer.copyOf(distanceFunction, instances);
+                }
+
+                computeColumns(copy, newLandmarks, newColumns, from, to);
+
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            } finally {
+
+                if (copy != null) {
+                    copies.offer(copy);
+                }
+            }
+        }
+    }
+}
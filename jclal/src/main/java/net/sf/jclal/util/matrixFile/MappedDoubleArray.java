@@ -0,0 +1,317 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package net.sf.jclal.util.matrixFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Date;
+
+/**
+ * Array of doubles indexed by long stored over a memory-mapped temporal file.
+ * The elements can be stored in single precision to halve the size of the
+ * file, the values are rounded to float when they are written.
+ *
+ * The file is mapped in segments of at most 1 GB because a single mapping
+ * cannot exceed 2 GB. The elements are accessed with absolute positions, so
+ * different threads can read and write different elements at the same time.
+ *
+ * @author Oscar Gabriel Reyes Pupo
+ * @author Eduardo Perez Perdomo
+ */
+class MappedDoubleArray {
+
+    /**
+     * Number of elements of each segment is 2^SEGMENT_SHIFT (1 GB of doubles).
+     */
+    private static final int SEGMENT_SHIFT = 27;
+
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    /**
+     * By default 8 bytes (double) will be reads or writen
+     */
+    static final int BYTES_ELEMENTS = 8;
+
+    /**
+     * 4 bytes (float) if the elements are stored in single precision
+     */
+    static final int BYTES_FLOAT_ELEMENTS = 4;
+
+    /**
+     * The file of the array
+     */
+    private File file;
+
+    /**
+     * The mapped segments of the file
+     */
+    private DoubleBuffer[] segments;
+
+    /**
+     * The mapped segments of the file in single precision
+     */
+    private FloatBuffer[] floatSegments;
+
+    /**
+     * The mappings of the segments, to write them to the file
+     */
+    private MappedByteBuffer[] mapped;
+
+    /**
+     * Whether the file is deleted when the array is destroyed
+     */
+    private boolean temporal;
+
+    /**
+     * Creates the array over a temporal file in the working directory. The
+     * default value of the elements is 0.
+     *
+     * @param prefix The prefix of the name of the file
+     * @param elements The number of elements
+     * @throws IOException If the file cannot be created or mapped
+     */
+    MappedDoubleArray(String prefix, long elements) throws IOException {
+        this(prefix, elements, false);
+    }
+
+    /**
+     * Creates the array over a temporal file in the working directory. The
+     * default value of the elements is 0.
+     *
+     * @param prefix The prefix of the name of the file
+     * @param elements The number of elements
+     * @param singlePrecision Whether the elements are stored as floats
+     * @throws IOException If the file cannot be created or mapped
+     */
+    MappedDoubleArray(String prefix, long elements, boolean singlePrecision) throws IOException {
+        this(createTemporalFile(prefix), elements, singlePrecision, true);
+    }
+
+    /**
+     * Creates the array over a given file. If the file exists and has the
+     * size of the array its elements are mapped, otherwise the file is
+     * resized.
+     *
+     * @param file The file of the array
+     * @param elements The number of elements
+     * @param singlePrecision Whether the elements are stored as floats
+     * @param temporal Whether the file is deleted when the array is destroyed
+     * @throws IOException If the file cannot be created or mapped
+     */
+    MappedDoubleArray(File file, long elements, boolean singlePrecision, boolean temporal)
+            throws IOException {
+
+        this.file = file;
+        this.temporal = temporal;
+
+        int numSegments = (int) ((elements + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+
+        int bytes = singlePrecision ? BYTES_FLOAT_ELEMENTS : BYTES_ELEMENTS;
+
+        if (singlePrecision) {
+            floatSegments = new FloatBuffer[numSegments];
+        } else {
+            segments = new DoubleBuffer[numSegments];
+        }
+
+        mapped = new MappedByteBuffer[numSegments];
+
+        RandomAccessFile fileAccess = new RandomAccessFile(file, "rw");
+
+        try {
+
+            if (fileAccess.length() != elements * bytes) {
+                fileAccess.setLength(elements * bytes);
+            }
+
+            FileChannel channel = fileAccess.getChannel();
+
+            for (int s = 0; s < numSegments; s++) {
+
+                long first = (long) s << SEGMENT_SHIFT;
+                long length = Math.min(SEGMENT_MASK + 1, elements - first);
+
+                //the mapping remains valid after the channel is closed
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE,
+                        first * bytes, length * bytes);
+
+                mapped[s] = segment;
+
+                if (singlePrecision) {
+                    floatSegments[s] = segment.asFloatBuffer();
+                } else {
+                    segments[s] = segment.asDoubleBuffer();
+                }
+            }
+
+        } finally {
+            fileAccess.close();
+        }
+    }
+
+    private static File createTemporalFile(String prefix) throws IOException {
+
+        Date date = new Date(System.currentTimeMillis());
+        String time = date.toString().replaceAll(" ", "_").replaceAll(":", "-");
+        String newName = prefix + "_" + time + ".mtx";
+
+        File parent = new File("");
+
+        return File.createTempFile(newName, ".mtx", parent.getAbsoluteFile());
+    }
+
+    double get(long index) {
+
+        if (floatSegments != null) {
+            return floatSegments[(int) (index >>> SEGMENT_SHIFT)].get((int) (index & SEGMENT_MASK));
+        }
+
+        return segments[(int) (index >>> SEGMENT_SHIFT)].get((int) (index & SEGMENT_MASK));
+    }
+
+    void set(long index, double value) {
+
+        if (floatSegments != null) {
+            floatSegments[(int) (index >>> SEGMENT_SHIFT)].put((int) (index & SEGMENT_MASK),
+                    (float) value);
+            return;
+        }
+
+        segments[(int) (index >>> SEGMENT_SHIFT)].put((int) (index & SEGMENT_MASK), value);
+    }
+
+    /**
+     * Whether the elements are stored in single precision.
+     *
+     * @return true if the elements are stored as floats
+     */
+    boolean isSinglePrecision() {
+        return floatSegments != null;
+    }
+
+    /**
+     * Copies consecutive elements to an array.
+     *
+     * @param index The position of the first element
+     * @param dst The destination array
+     * @param offset The position in the destination array
+     * @param length The number of elements
+     */
+    void get(long index, double[] dst, int offset, int length) {
+
+        while (length > 0) {
+
+            int s = (int) (index >>> SEGMENT_SHIFT);
+            int position = (int) (index & SEGMENT_MASK);
+            int chunk = (int) Math.min(length, SEGMENT_MASK + 1 - position);
+
+            if (floatSegments != null) {
+
+                //the floats are converted one by one, with absolute positions
+                FloatBuffer segment = floatSegments[s];
+
+                for (int k = 0; k < chunk; k++) {
+                    dst[offset + k] = segment.get(position + k);
+                }
+
+            } else {
+
+                //the duplicate has its own position
+                DoubleBuffer segment = segments[s].duplicate();
+                segment.position(position);
+                segment.get(dst, offset, chunk);
+            }
+
+            index += chunk;
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    /**
+     * Copies consecutive elements from an array.
+     *
+     * @param index The position of the first element
+     * @param src The source array
+     * @param offset The position in the source array
+     * @param length The number of elements
+     */
+    void set(long index, double[] src, int offset, int length) {
+
+        while (length > 0) {
+
+            int s = (int) (index >>> SEGMENT_SHIFT);
+            int position = (int) (index & SEGMENT_MASK);
+            int chunk = (int) Math.min(length, SEGMENT_MASK + 1 - position);
+
+            if (floatSegments != null) {
+
+                FloatBuffer segment = floatSegments[s];
+
+                for (int k = 0; k < chunk; k++) {
+                    segment.put(position + k, (float) src[offset + k]);
+                }
+
+            } else {
+
+                DoubleBuffer segment = segments[s].duplicate();
+                segment.position(position);
+                segment.put(src, offset, chunk);
+            }
+
+            index += chunk;
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Writes the changes of the mapped segments to the file.
+     */
+    void force() {
+
+        for (MappedByteBuffer segment : mapped) {
+            segment.force();
+        }
+    }
+
+    /**
+     * Releases the mapped segments and deletes the file if it is temporal.
+     * The mapping is released by the garbage collector, if the file cannot be
+     * deleted yet it is deleted on exit.
+     */
+    void destroy() {
+
+        segments = null;
+        floatSegments = null;
+        mapped = null;
+
+        if (temporal && file != null && !file.delete()) {
+            file.deleteOnExit();
+        }
+
+        file = null;
+    }
+}
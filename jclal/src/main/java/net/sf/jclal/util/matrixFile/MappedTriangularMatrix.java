@@ -0,0 +1,218 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package net.sf.jclal.util.matrixFile;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Strictly upper triangular matrix of doubles stored over a memory-mapped
+ * file. Only the elements above the diagonal are stored, packed by rows, so
+ * the file takes half the space of the full matrix.
+ *
+ * The element (r, c) of the stored row r is the element (r, r + c + 1) of the
+ * full matrix, 0 &lt;= c &lt; size - r - 1, the same layout used by
+ * DistanceContainer in main memory.
+ *
+ * The elements can be stored in single precision to halve the size of the
+ * file.
+ *
+ * The file is mapped in segments of at most 1 GB because a single mapping
+ * cannot exceed 2 GB. The elements are accessed with absolute positions, so
+ * different threads can read and write different elements at the same time.
+ *
+ * @author Oscar Gabriel Reyes Pupo
+ * @author Eduardo Perez Perdomo
+ */
+public class MappedTriangularMatrix {
+
+    /**
+     * Number of rows and columns of the full matrix
+     */
+    private final int size;
+
+    /**
+     * The packed elements
+     */
+    private MappedDoubleArray data;
+
+    /**
+     * Creates the matrix over a temporal file in the working directory. The
+     * default value of the elements is 0.
+     *
+     * @param size The number of rows and columns of the full matrix
+     * @throws IOException If the file cannot be created or mapped
+     */
+    public MappedTriangularMatrix(int size) throws IOException {
+        this(size, false);
+    }
+
+    /**
+     * Creates the matrix over a temporal file in the working directory. The
+     * default value of the elements is 0.
+     *
+     * @param size The number of rows and columns of the full matrix
+     * @param singlePrecision Whether the elements are stored as floats
+     * @throws IOException If the file cannot be created or mapped
+     */
+    public MappedTriangularMatrix(int size, boolean singlePrecision) throws IOException {
+
+        this.size = size;
+
+        data = new MappedDoubleArray("triangular", (long) size * (size - 1) / 2,
+                singlePrecision);
+    }
+
+    /**
+     * Creates the matrix over a given file, that is kept when the matrix is
+     * destroyed. If the file already stores a matrix of the same size and
+     * precision its elements are mapped, so a matrix stored by other run can
+     * be reused.
+     *
+     * @param file The file of the matrix
+     * @param size The number of rows and columns of the full matrix
+     * @param singlePrecision Whether the elements are stored as floats
+     * @throws IOException If the file cannot be created or mapped
+     */
+    public MappedTriangularMatrix(File file, int size, boolean singlePrecision) throws IOException {
+
+        this.size = size;
+
+        data = new MappedDoubleArray(file, length(size, singlePrecision) / bytes(singlePrecision),
+                singlePrecision, false);
+    }
+
+    /**
+     * Returns the length in bytes of the file of a matrix.
+     *
+     * @param size The number of rows and columns of the full matrix
+     * @param singlePrecision Whether the elements are stored as floats
+     * @return The length of the file
+     */
+    public static long length(int size, boolean singlePrecision) {
+        return (long) size * (size - 1) / 2 * bytes(singlePrecision);
+    }
+
+    private static int bytes(boolean singlePrecision) {
+        return singlePrecision ? MappedDoubleArray.BYTES_FLOAT_ELEMENTS
+                : MappedDoubleArray.BYTES_ELEMENTS;
+    }
+
+    /**
+     * Returns the position of an element in the packed triangle.
+     *
+     * @param r The row
+     * @param c The column relative to the diagonal
+     * @return The position of the element
+     */
+    public long index(int r, int c) {
+        return (long) r * (size - 1) - (long) r * (r - 1) / 2 + c;
+    }
+
+    /**
+     * Get an element.
+     *
+     * @param r The row
+     * @param c The column relative to the diagonal
+     * @return The value of the element
+     */
+    public double get(int r, int c) {
+        return data.get(index(r, c));
+    }
+
+    /**
+     * Set an element.
+     *
+     * @param r The row
+     * @param c The column relative to the diagonal
+     * @param value The value of the element
+     */
+    public void set(int r, int c, double value) {
+        data.set(index(r, c), value);
+    }
+
+    /**
+     * Set consecutive elements of a row.
+     *
+     * @param r The row
+     * @param c The column relative to the diagonal of the first element
+     * @param values The values
+     * @param length The number of elements
+     */
+    public void setRow(int r, int c, double[] values, int length) {
+        data.set(index(r, c), values, 0, length);
+    }
+
+    /**
+     * Get consecutive elements of a row.
+     *
+     * @param r The row
+     * @param c The column relative to the diagonal of the first element
+     * @param values The array where the values are stored
+     * @param length The number of elements
+     */
+    public void getRow(int r, int c, double[] values, int length) {
+        data.get(index(r, c), values, 0, length);
+    }
+
+    /**
+     * Get the number of rows and columns of the full matrix.
+     *
+     * @return The size
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Whether the elements are stored in single precision.
+     *
+     * @return true if the elements are stored as floats
+     */
+    public boolean isSinglePrecision() {
+        return data.isSinglePrecision();
+    }
+
+    /**
+     * Get the file of the matrix.
+     *
+     * @return The file
+     */
+    public File getMatrixFile() {
+        return data == null ? null : data.getFile();
+    }
+
+    /**
+     * Writes the elements to the file, so other process that maps the file
+     * reads them.
+     */
+    public void force() {
+        data.force();
+    }
+
+    /**
+     * Releases the mapped segments and deletes the file, unless it was given
+     * to the constructor.
+     */
+    public void destroy() {
+
+        if (data != null) {
+            data.destroy();
+        }
+
+        data = null;
+    }
+}
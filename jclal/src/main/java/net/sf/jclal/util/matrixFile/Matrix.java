@@ -18,16 +18,10 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.io.RandomAccessFile;
-import java.nio.ByteBuffer;
-import java.nio.DoubleBuffer;
-import java.nio.channels.SeekableByteChannel;
-import java.nio.file.FileSystems;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
 import java.text.NumberFormat;
-import java.util.Date;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import weka.core.matrix.Maths;
@@ -54,17 +48,15 @@ public class Matrix {
      */
     private File matrixFile;
     /**
-     * Access to the matrix
+     * The elements of the matrix stored by rows over a memory-mapped file
      */
-    private SeekableByteChannel fileAccessN;
-    private ByteBuffer buff;
-    private DoubleBuffer doubleB;
+    private MappedDoubleArray data;
 
     /**
-     * The array that stores the matrix over the main memory, it is null if the
-     * matrix is stored over a file
+     * The array that stores the matrix by rows over the main memory, it is
+     * null if the matrix is stored over a file
      */
-    private double A[][];
+    private double A[];
 
     /**
      * By default 8 bytes (double) will be reads or writen
@@ -86,6 +78,46 @@ public class Matrix {
      */
     private boolean overFile = false;
 
+    /**
+     * Number of rows and columns of the tiles used to traverse the matrix by
+     * columns.
+     */
+    private static final int TILE = 256;
+
+    /**
+     * Maximum number of elements of the blocks of rows kept in main memory by
+     * the matrix multiplication.
+     */
+    private static final int BLOCK_ELEMENTS = 1 << 20;
+
+    /**
+     * Minimum number of operations of a task of the parallel kernels over the
+     * main memory. Smaller operations are computed by the calling thread.
+     */
+    private static final int PARALLEL_GRAIN = 1 << 16;
+
+    /**
+     * Number of rows of B multiplied in each block of the in-memory product.
+     */
+    private static final int GEMM_K_BLOCK = 128;
+
+    /**
+     * Number of columns of B multiplied in each block of the in-memory
+     * product.
+     */
+    private static final int GEMM_J_BLOCK = 512;
+
+    /**
+     * Number of rows and columns of the tiles of the in-memory transpose.
+     */
+    private static final int TRANSPOSE_TILE = 64;
+
+    /**
+     * Pool shared by the parallel kernels over the main memory, it is created
+     * on demand.
+     */
+    private static ForkJoinPool kernelPool;
+
     /**
      * The default value of the matrix is 0. The user does not have to worry
      * about establishing the path of the matrix file, a temporal file is
@@ -106,7 +138,7 @@ public class Matrix {
         if (overFile) {
             openFileMatrix();
         } else {
-            A = new double[m][n];
+            allocate();
         }
     }
 
@@ -128,13 +160,14 @@ public class Matrix {
             if (overFile) {
                 openFileMatrix();
             } else {
-                A = new double[m][n];
+                allocate();
             }
 
+            double[] row = new double[n];
+            Arrays.fill(row, s);
+
             for (int i = 0; i < m; i++) {
-                for (int j = 0; j < n; j++) {
-                    set(i, j, s);
-                }
+                setRow(i, row);
             }
         } catch (FileNotFoundException ex) {
             Logger.getLogger(Matrix.class.getName()).log(Level.SEVERE, null, ex);
@@ -165,13 +198,11 @@ public class Matrix {
             if (overFile) {
                 openFileMatrix();
             } else {
-                A = new double[(int) m][(int) n];
+                allocate();
             }
 
             for (int i = 0; i < m; i++) {
-                for (int j = 0; j < n; j++) {
-                    set(i, j, arr[i][j]);
-                }
+                setRow(i, arr[i]);
             }
 
         } catch (FileNotFoundException ex) {
@@ -196,12 +227,12 @@ public class Matrix {
 
             if (overFile) {
                 openFileMatrix();
+            } else {
+                allocate();
             }
 
             for (int i = 0; i < this.m; i++) {
-                for (int j = 0; j < this.n; j++) {
-                    set(i, j, A[i][j]);
-                }
+                setRow(i, A[i]);
             }
         } catch (FileNotFoundException ex) {
             Logger.getLogger(Matrix.class.getName()).log(Level.SEVERE, null, ex);
@@ -226,13 +257,14 @@ public class Matrix {
             if (overFile) {
                 openFileMatrix();
             } else {
-                A = new double[(int) m][(int) n];
+                allocate();
             }
 
+            double[] row = new double[(int) n];
+
             for (int i = 0; i < m; i++) {
-                for (int j = 0; j < n; j++) {
-                    set(i, j, arr.get(i, j));
-                }
+                arr.getRow(i, row);
+                setRow(i, row);
             }
 
         } catch (FileNotFoundException ex) {
@@ -259,13 +291,14 @@ public class Matrix {
             if (overFile) {
                 openFileMatrix();
             } else {
-                A = new double[m][n];
+                allocate();
             }
 
+            double[][] row = new double[1][n];
+
             for (int i = 0; i < this.m; i++) {
-                for (int j = 0; j < this.n; j++) {
-                    set(i, j, arr.get(i, j));
-                }
+                arr.getTile(i, 0, row);
+                setRow(i, row[0]);
             }
         } catch (FileNotFoundException ex) {
             Logger.getLogger(Matrix.class.getName()).log(Level.SEVERE, null, ex);
@@ -296,13 +329,17 @@ public class Matrix {
             if (overFile) {
                 openFileMatrix();
             } else {
-                A = new double[m][(int) n];
+                allocate();
             }
 
+            double[] row = new double[(int) n];
+
             for (int i = 0; i < this.m; i++) {
                 for (int j = 0; j < n; j++) {
-                    set(i, j, vals[i + j * m]);
+                    row[j] = vals[i + j * m];
                 }
+
+                setRow(i, row);
             }
         } catch (FileNotFoundException ex) {
             Logger.getLogger(Matrix.class.getName()).log(Level.SEVERE, null, ex);
@@ -310,37 +347,39 @@ public class Matrix {
     }
 
     /**
-     * Open the file that will store the matrix
-     *
-     * @throws FileNotFoundException The type of exception to launch.
+     * Allocates the array of the main memory.
      */
-    private void openFileMatrix() throws FileNotFoundException {
-
-        if (fileAccessN == null) {
+    private void allocate() {
 
-            try {
+        if (m * n > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException(
+                    "The matrix does not fit in an array, it must be stored over a file.");
+        }
 
-                Date date = new Date(System.currentTimeMillis());
-                String time = date.toString().replaceAll(" ", "_").replaceAll(":", "-");
-                String newName = "matrix_" + time + ".mtx";
+        A = new double[(int) (m * n)];
+    }
 
-                File parent = new File("");
+    private void checkColumn(int j) {
 
-                matrixFile = File.createTempFile(newName, ".mtx", parent.getAbsoluteFile());
+        if (j < 0 || j >= n) {
+            throw new ArrayIndexOutOfBoundsException(j);
+        }
+    }
 
-                RandomAccessFile fileAccess = new RandomAccessFile(matrixFile, "rw");
+    /**
+     * Open the file that will store the matrix
+     *
+     * @throws FileNotFoundException The type of exception to launch.
+     */
+    private void openFileMatrix() throws FileNotFoundException {
 
-                long length = m * n * getBytesElements();
+        if (data == null) {
 
-                fileAccess.setLength(length);
-                fileAccess.close();
+            try {
 
-                Path p = FileSystems.getDefault().getPath(matrixFile.getAbsolutePath());
-                fileAccessN = Files.newByteChannel(p,
-                        StandardOpenOption.WRITE, StandardOpenOption.READ);
+                data = new MappedDoubleArray("matrix", m * n);
 
-                buff = ByteBuffer.allocateDirect(getBytesElements());
-                doubleB = buff.asDoubleBuffer();
+                matrixFile = data.getFile();
 
             } catch (IOException ex) {
                 Logger.getLogger(Matrix.class.getName()).log(Level.SEVERE, null, ex);
@@ -355,10 +394,10 @@ public class Matrix {
      */
     protected void closeFileMatrix() throws IOException {
 
-        if (fileAccessN != null) {
+        if (data != null) {
 
-            fileAccessN.close();
-            matrixFile.delete();
+            data.destroy();
+            data = null;
         }
     }
 
@@ -456,10 +495,11 @@ public class Matrix {
 
             x = new Matrix(getRowDimension(), getColumnDimension(), overFile);
 
+            double[] row = new double[getColumnDimension()];
+
             for (int i = 0; i < getRowDimension(); i++) {
-                for (int j = 0; j < getColumnDimension(); j++) {
-                    x.set(i, j, get(i, j));
-                }
+                getRow(i, row);
+                x.setRow(i, row);
             }
 
         } catch (Exception ex) {
@@ -487,10 +527,14 @@ public class Matrix {
     public double[] getColumnPackedCopy() {
 
         double[] vals = new double[getRowDimension() * getColumnDimension()];
+        double[] row = new double[getColumnDimension()];
 
         for (int i = 0; i < getRowDimension(); i++) {
+
+            getRow(i, row);
+
             for (int j = 0; j < getColumnDimension(); j++) {
-                vals[i + j * getRowDimension()] = get(i, j);
+                vals[i + j * getRowDimension()] = row[j];
             }
         }
 
@@ -504,11 +548,11 @@ public class Matrix {
      */
     public double[] getRowPackedCopy() {
         double[] vals = new double[getRowDimension() * getColumnDimension()];
+        double[] row = new double[getColumnDimension()];
 
         for (int i = 0; i < getRowDimension(); i++) {
-            for (int j = 0; j < getColumnDimension(); j++) {
-                vals[i * getColumnDimension() + j] = get(i, j);
-            }
+            getRow(i, row);
+            System.arraycopy(row, 0, vals, i * getColumnDimension(), row.length);
         }
         return vals;
     }
@@ -526,7 +570,8 @@ public class Matrix {
         double value = 0;
 
         if (!overFile) {
-            value = A[i][j];
+            checkColumn(j);
+            value = A[i * (int) n + j];
         } else {
             try {
 
@@ -550,14 +595,7 @@ public class Matrix {
      * @throws IOException The exception to launch
      */
     public double readValue(int i, int j) throws IOException {
-        fileAccessN.position(pos(i, j));
-
-        buff.clear();
-        doubleB.clear();
-
-        fileAccessN.read(buff);
-
-        return doubleB.get();
+        return data.get(pos(i, j) / getBytesElements());
     }
 
     /**
@@ -572,7 +610,8 @@ public class Matrix {
 
         if (!overFile) {
 
-            A[i][j] = s;
+            checkColumn(j);
+            A[i * (int) n + j] = s;
 
         } else {
 
@@ -598,14 +637,92 @@ public class Matrix {
      * @throws IOException The exception to launch
      */
     public void writeValue(int i, int j, double s) throws IOException {
-        fileAccessN.position(pos(i, j));
+        data.set(pos(i, j) / getBytesElements(), s);
+    }
 
-        buff.clear();
-        doubleB.clear();
+    /**
+     * Copy a row of the matrix.
+     *
+     * @param i Row index.
+     * @param row The array where the row is stored, its length must be at
+     * least the number of columns.
+     */
+    public void getRow(int i, double[] row) {
+
+        if (!overFile) {
+            System.arraycopy(A, i * (int) n, row, 0, (int) n);
+        } else {
+            data.get(i * n, row, 0, (int) n);
+        }
+    }
 
-        doubleB.put(s);
+    /**
+     * Set a row of the matrix.
+     *
+     * @param i Row index.
+     * @param row The values of the row, its length must be at least the
+     * number of columns.
+     */
+    public void setRow(int i, double[] row) {
 
-        fileAccessN.write(buff);
+        if (!overFile) {
+            System.arraycopy(row, 0, A, i * (int) n, (int) n);
+        } else {
+            data.set(i * n, row, 0, (int) n);
+        }
+    }
+
+    /**
+     * Copy a tile of the matrix. The number of rows and columns of the tile
+     * are given by the dimensions of the array.
+     *
+     * @param i0 Initial row index
+     * @param j0 Initial column index
+     * @param tile The array where the tile is stored, A(i0:i0+rows-1,
+     * j0:j0+columns-1)
+     */
+    public void getTile(int i0, int j0, double[][] tile) {
+
+        for (int r = 0; r < tile.length; r++) {
+
+            int columns = tile[r].length;
+
+            if (i0 + r >= m || j0 + columns > n) {
+                throw new ArrayIndexOutOfBoundsException("Tile indices");
+            }
+
+            if (!overFile) {
+                System.arraycopy(A, (i0 + r) * (int) n + j0, tile[r], 0, columns);
+            } else {
+                data.get((i0 + r) * n + j0, tile[r], 0, columns);
+            }
+        }
+    }
+
+    /**
+     * Set a tile of the matrix. The number of rows and columns of the tile
+     * are given by the dimensions of the array.
+     *
+     * @param i0 Initial row index
+     * @param j0 Initial column index
+     * @param tile The values of A(i0:i0+rows-1, j0:j0+columns-1)
+     */
+    public void setTile(int i0, int j0, double[][] tile) {
+
+        for (int r = 0; r < tile.length; r++) {
+
+            int columns = tile[r].length;
+
+            if (i0 + r >= m || j0 + columns > n) {
+                throw new ArrayIndexOutOfBoundsException("Tile indices");
+            }
+
+            if (!overFile) {
+                System.arraycopy(tile[r], 0, A, (i0 + r) * (int) n + j0, columns);
+            } else {
+                data.set((i0 + r) * n + j0, tile[r], 0, columns);
+            }
+        }
     }
 
     /**
@@ -627,10 +744,16 @@ public class Matrix {
             x = new Matrix(i1 - i0 + 1, j1 - j0 + 1, overFile);
 
             try {
+
+                if (i0 < 0 || j0 < 0) {
+                    throw new ArrayIndexOutOfBoundsException();
+                }
+
+                double[][] row = new double[1][j1 - j0 + 1];
+
                 for (int i = i0; i <= i1; i++) {
-                    for (int j = j0; j <= j1; j++) {
-                        x.set(i - i0, j - j0, get(i, j));
-                    }
+                    getTile(i, j0, row);
+                    x.setTile(i - i0, 0, row);
                 }
             } catch (ArrayIndexOutOfBoundsException e) {
                 throw new ArrayIndexOutOfBoundsException("Submatrix indices");
@@ -754,11 +877,16 @@ public class Matrix {
      */
     public void setMatrix(int i0, int i1, int j0, int j1, Matrix x) {
         try {
-            for (int i = i0; i <= i1; i++) {
-                for (int j = j0; j <= j1; j++) {
 
-                    set(i, j, x.get(i - i0, j - j0));
-                }
+            if (i0 < 0 || j0 < 0) {
+                throw new ArrayIndexOutOfBoundsException();
+            }
+
+            double[][] row = new double[1][j1 - j0 + 1];
+
+            for (int i = i0; i <= i1; i++) {
+                x.getTile(i - i0, 0, row);
+                setTile(i, j0, row);
             }
         } catch (ArrayIndexOutOfBoundsException e) {
             throw new ArrayIndexOutOfBoundsException("Submatrix indices");
@@ -844,11 +972,24 @@ public class Matrix {
             return false;
         }
 
-        for (int i = 0; i < nc; i++) {
-            for (int j = 0; j < i; j++) {
+        //the tiles below the diagonal are compared with the tiles above it
+        for (int i0 = 0; i0 < nc; i0 += TILE) {
+
+            for (int j0 = 0; j0 <= i0; j0 += TILE) {
+
+                double[][] lower = new double[Math.min(TILE, nc - i0)][Math.min(TILE, nc - j0)];
+                double[][] upper = new double[lower[0].length][lower.length];
+
+                getTile(i0, j0, lower);
+                getTile(j0, i0, upper);
 
-                if (get(i, j) != get(j, i)) {
-                    return false;
+                for (int i = 0; i < lower.length; i++) {
+                    for (int j = 0; j < lower[i].length; j++) {
+
+                        if (lower[i][j] != upper[j][i]) {
+                            return false;
+                        }
+                    }
                 }
             }
         }
@@ -869,10 +1010,27 @@ public class Matrix {
 
             x = new Matrix(getColumnDimension(), getRowDimension(), overFile);
 
-            for (int i = 0; i < getRowDimension(); i++) {
-                for (int j = 0; j < getColumnDimension(); j++) {
+            if (!overFile) {
+                transpose(A, x.A, getRowDimension(), getColumnDimension());
+                return x;
+            }
+
+            for (int i0 = 0; i0 < getRowDimension(); i0 += TILE) {
+
+                for (int j0 = 0; j0 < getColumnDimension(); j0 += TILE) {
 
-                    x.set(j, i, get(i, j));
+                    double[][] tile = new double[Math.min(TILE, getRowDimension() - i0)][Math.min(TILE, getColumnDimension() - j0)];
+                    double[][] transposed = new double[tile[0].length][tile.length];
+
+                    getTile(i0, j0, tile);
+
+                    for (int i = 0; i < tile.length; i++) {
+                        for (int j = 0; j < tile[i].length; j++) {
+                            transposed[j][i] = tile[i][j];
+                        }
+                    }
+
+                    x.setTile(j0, i0, transposed);
                 }
             }
 
@@ -892,16 +1050,21 @@ public class Matrix {
 
         double f = 0;
 
-        for (int j = 0; j < getColumnDimension(); j++) {
+        //the sums of the columns are accumulated by rows
+        double[] s = new double[getColumnDimension()];
+        double[] row = new double[getColumnDimension()];
 
-            double s = 0;
+        for (int i = 0; i < getRowDimension(); i++) {
 
-            for (int i = 0; i < getRowDimension(); i++) {
+            getRow(i, row);
 
-                s += Math.abs(get(i, j));
+            for (int j = 0; j < getColumnDimension(); j++) {
+                s[j] += Math.abs(row[j]);
             }
+        }
 
-            f = Math.max(f, s);
+        for (int j = 0; j < getColumnDimension(); j++) {
+            f = Math.max(f, s[j]);
         }
 
         return f;
@@ -914,10 +1077,12 @@ public class Matrix {
      */
     public double normInf() {
         double f = 0;
+        double[] row = new double[getColumnDimension()];
         for (int i = 0; i < getRowDimension(); i++) {
+            getRow(i, row);
             double s = 0;
             for (int j = 0; j < getColumnDimension(); j++) {
-                s += Math.abs(get(i, j));
+                s += Math.abs(row[j]);
             }
             f = Math.max(f, s);
         }
@@ -931,9 +1096,11 @@ public class Matrix {
      */
     public double normF() {
         double f = 0;
+        double[] row = new double[getColumnDimension()];
         for (int i = 0; i < getRowDimension(); i++) {
+            getRow(i, row);
             for (int j = 0; j < getColumnDimension(); j++) {
-                f = Maths.hypot(f, get(i, j));
+                f = Maths.hypot(f, row[j]);
             }
         }
         return f;
@@ -963,11 +1130,7 @@ public class Matrix {
 
             x = new Matrix(getRowDimension(), getColumnDimension(), overFile);
 
-            for (int i = 0; i < getRowDimension(); i++) {
-                for (int j = 0; j < getColumnDimension(); j++) {
-                    x.set(i, j, -get(i, j));
-                }
-            }
+            elementWise(null, x, NEGATE);
 
         } catch (Exception ex) {
             Logger.getLogger(Matrix.class.getName()).log(Level.SEVERE, null, ex);
@@ -991,11 +1154,7 @@ public class Matrix {
 
             x = new Matrix(getRowDimension(), getColumnDimension(), overFile);
 
-            for (int i = 0; i < getRowDimension(); i++) {
-                for (int j = 0; j < getColumnDimension(); j++) {
-                    x.set(i, j, get(i, j) + B.get(i, j));
-                }
-            }
+            elementWise(B, x, PLUS);
 
         } catch (Exception ex) {
             Logger.getLogger(Matrix.class.getName()).log(Level.SEVERE, null, ex);
@@ -1014,11 +1173,7 @@ public class Matrix {
 
         checkMatrixDimensions(B);
 
-        for (int i = 0; i < getRowDimension(); i++) {
-            for (int j = 0; j < getColumnDimension(); j++) {
-                set(i, j, get(i, j) + B.get(i, j));
-            }
-        }
+        elementWise(B, this, PLUS);
 
         return this;
     }
@@ -1038,11 +1193,7 @@ public class Matrix {
 
             x = new Matrix(getRowDimension(), getColumnDimension(), overFile);
 
-            for (int i = 0; i < getRowDimension(); i++) {
-                for (int j = 0; j < getColumnDimension(); j++) {
-                    x.set(i, j, get(i, j) - B.get(i, j));
-                }
-            }
+            elementWise(B, x, MINUS);
 
         } catch (Exception ex) {
             Logger.getLogger(Matrix.class.getName()).log(Level.SEVERE, null, ex);
@@ -1061,12 +1212,7 @@ public class Matrix {
 
         checkMatrixDimensions(B);
 
-        for (int i = 0; i < getRowDimension(); i++) {
-
-            for (int j = 0; j < getColumnDimension(); j++) {
-                set(i, j, get(i, j) - B.get(i, j));
-            }
-        }
+        elementWise(B, this, MINUS);
         return this;
     }
 
@@ -1085,12 +1231,7 @@ public class Matrix {
 
             x = new Matrix(getRowDimension(), getColumnDimension(), overFile);
 
-            for (int i = 0; i < getRowDimension(); i++) {
-                for (int j = 0; j < getColumnDimension(); j++) {
-
-                    x.set(i, j, get(i, j) * B.get(i, j));
-                }
-            }
+            elementWise(B, x, TIMES);
 
         } catch (Exception ex) {
             Logger.getLogger(Matrix.class.getName()).log(Level.SEVERE, null, ex);
@@ -1109,13 +1250,7 @@ public class Matrix {
 
         checkMatrixDimensions(B);
 
-        for (int i = 0; i < getRowDimension(); i++) {
-
-            for (int j = 0; j < getColumnDimension(); j++) {
-
-                set(i, j, get(i, j) * B.get(i, j));
-            }
-        }
+        elementWise(B, this, TIMES);
 
         return this;
     }
@@ -1136,11 +1271,7 @@ public class Matrix {
 
             x = new Matrix(getRowDimension(), getColumnDimension(), overFile);
 
-            for (int i = 0; i < getRowDimension(); i++) {
-                for (int j = 0; j < getColumnDimension(); j++) {
-                    x.set(i, j, get(i, j) / B.get(i, j));
-                }
-            }
+            elementWise(B, x, RIGHT_DIVIDE);
 
         } catch (Exception ex) {
             Logger.getLogger(Matrix.class.getName()).log(Level.SEVERE, null, ex);
@@ -1159,13 +1290,7 @@ public class Matrix {
 
         checkMatrixDimensions(B);
 
-        for (int i = 0; i < getRowDimension(); i++) {
-
-            for (int j = 0; j < getColumnDimension(); j++) {
-
-                set(i, j, get(i, j) / B.get(i, j));
-            }
-        }
+        elementWise(B, this, RIGHT_DIVIDE);
         return this;
     }
 
@@ -1184,12 +1309,7 @@ public class Matrix {
 
             x = new Matrix(getRowDimension(), getColumnDimension(), overFile);
 
-            for (int i = 0; i < getRowDimension(); i++) {
-                for (int j = 0; j < getColumnDimension(); j++) {
-
-                    x.set(i, j, B.get(i, j) / get(i, j));
-                }
-            }
+            elementWise(B, x, LEFT_DIVIDE);
 
         } catch (Exception ex) {
             Logger.getLogger(Matrix.class.getName()).log(Level.SEVERE, null, ex);
@@ -1208,11 +1328,7 @@ public class Matrix {
 
         checkMatrixDimensions(B);
 
-        for (int i = 0; i < getRowDimension(); i++) {
-            for (int j = 0; j < getColumnDimension(); j++) {
-                set(i, j, B.get(i, j) / get(i, j));
-            }
-        }
+        elementWise(B, this, LEFT_DIVIDE);
 
         return this;
     }
@@ -1230,12 +1346,7 @@ public class Matrix {
         try {
             x = new Matrix(getRowDimension(), getColumnDimension(), overFile);
 
-            for (int i = 0; i < getRowDimension(); i++) {
-                for (int j = 0; j < getColumnDimension(); j++) {
-
-                    x.set(i, j, s * get(i, j));
-                }
-            }
+            elementWise(null, x, scale(s));
 
         } catch (Exception ex) {
             Logger.getLogger(Matrix.class.getName()).log(Level.SEVERE, null, ex);
@@ -1252,12 +1363,7 @@ public class Matrix {
      */
     public Matrix timesEquals(double s) {
 
-        for (int i = 0; i < getRowDimension(); i++) {
-            for (int j = 0; j < getColumnDimension(); j++) {
-
-                set(i, j, s * get(i, j));
-            }
-        }
+        elementWise(null, this, scale(s));
         return this;
     }
 
@@ -1280,26 +1386,44 @@ public class Matrix {
 
             x = new Matrix(getRowDimension(), B.getColumnDimension(), overFile);
 
-            double[] Bcolj = new double[getColumnDimension()];
+            int p = B.getColumnDimension();
+            int q = getColumnDimension();
 
-            for (int j = 0; j < B.getColumnDimension(); j++) {
+            if (!overFile && !B.overFile) {
+                gemm(A, B.A, x.A, getRowDimension(), q, p);
+                return x;
+            }
 
-                for (int k = 0; k < getColumnDimension(); k++) {
+            //blocks of rows of A and of the product are kept in main memory,
+            //and B is streamed by rows once per block
+            int blockRows = Math.max(1, Math.min(TILE, BLOCK_ELEMENTS / Math.max(1, Math.max(p, q))));
 
-                    Bcolj[k] = B.get(k, j);
-                }
+            double[] bRow = new double[p];
 
-                for (int i = 0; i < getRowDimension(); i++) {
+            for (int i0 = 0; i0 < getRowDimension(); i0 += blockRows) {
 
-                    double s = 0;
+                double[][] aBlock = new double[Math.min(blockRows, getRowDimension() - i0)][q];
+                double[][] cBlock = new double[aBlock.length][p];
 
-                    for (int k = 0; k < n; k++) {
+                getTile(i0, 0, aBlock);
 
-                        s += get(i, k) * Bcolj[k];
-                    }
+                //every element of the product is accumulated in the order of k
+                for (int k = 0; k < q; k++) {
+
+                    B.getRow(k, bRow);
+
+                    for (int i = 0; i < aBlock.length; i++) {
 
-                    x.set(i, j, s);
+                        double aik = aBlock[i][k];
+                        double[] cRow = cBlock[i];
+
+                        for (int j = 0; j < p; j++) {
+                            cRow[j] += aik * bRow[j];
+                        }
+                    }
                 }
+
+                x.setTile(i0, 0, cBlock);
             }
 
         } catch (Exception ex) {
@@ -1309,6 +1433,297 @@ public class Matrix {
         return x;
     }
 
+    /**
+     * Operation applied element by element, x[k] = op(a[k], b[k]) for from
+     * &lt;= k &lt; to. The loop is inside the operation so that it is compiled
+     * without calls per element.
+     */
+    private abstract static class ElementKernel {
+
+        /**
+         * @param a The first operand
+         * @param b The second operand, null for unary operations
+         * @param x The result, it can be one of the operands
+         * @param from The first position
+         * @param to The last position, exclusive
+         */
+        abstract void apply(double[] a, double[] b, double[] x, int from, int to);
+    }
+
+    private static final ElementKernel NEGATE = new ElementKernel() {
+        @Override
+        void apply(double[] a, double[] b, double[] x, int from, int to) {
+            for (int k = from; k < to; k++) {
+                x[k] = -a[k];
+            }
+        }
+    };
+
+    private static final ElementKernel PLUS = new ElementKernel() {
+        @Override
+        void apply(double[] a, double[] b, double[] x, int from, int to) {
+            for (int k = from; k < to; k++) {
+                x[k] = a[k] + b[k];
+            }
+        }
+    };
+
+    private static final ElementKernel MINUS = new ElementKernel() {
+        @Override
+        void apply(double[] a, double[] b, double[] x, int from, int to) {
+            for (int k = from; k < to; k++) {
+                x[k] = a[k] - b[k];
+            }
+        }
+    };
+
+    private static final ElementKernel TIMES = new ElementKernel() {
+        @Override
+        void apply(double[] a, double[] b, double[] x, int from, int to) {
+            for (int k = from; k < to; k++) {
+                x[k] = a[k] * b[k];
+            }
+        }
+    };
+
+    private static final ElementKernel RIGHT_DIVIDE = new ElementKernel() {
+        @Override
+        void apply(double[] a, double[] b, double[] x, int from, int to) {
+            for (int k = from; k < to; k++) {
+                x[k] = a[k] / b[k];
+            }
+        }
+    };
+
+    private static final ElementKernel LEFT_DIVIDE = new ElementKernel() {
+        @Override
+        void apply(double[] a, double[] b, double[] x, int from, int to) {
+            for (int k = from; k < to; k++) {
+                x[k] = b[k] / a[k];
+            }
+        }
+    };
+
+    private static ElementKernel scale(final double s) {
+        return new ElementKernel() {
+            @Override
+            void apply(double[] a, double[] b, double[] x, int from, int to) {
+                for (int k = from; k < to; k++) {
+                    x[k] = s * a[k];
+                }
+            }
+        };
+    }
+
+    /**
+     * Stores op(A(i,j), B(i,j)) in x(i,j), x can be this matrix. If the
+     * matrices are stored over the main memory the operation is applied to
+     * ranges of their arrays in parallel, otherwise they are streamed by rows.
+     *
+     * @param B The second operand, null for unary operations
+     * @param x The matrix where the result is stored
+     * @param op The operation
+     * @return x
+     */
+    private Matrix elementWise(Matrix B, final Matrix x, final ElementKernel op) {
+
+        if (!overFile && !x.overFile && (B == null || !B.overFile)) {
+
+            final double[] a = A;
+            final double[] b = B == null ? null : B.A;
+
+            forRange(a.length, PARALLEL_GRAIN, new RangeKernel() {
+                @Override
+                void run(int from, int to) {
+                    op.apply(a, b, x.A, from, to);
+                }
+            });
+
+            return x;
+        }
+
+        double[] row = new double[getColumnDimension()];
+        double[] rowB = B == null ? null : new double[getColumnDimension()];
+
+        for (int i = 0; i < getRowDimension(); i++) {
+
+            getRow(i, row);
+
+            if (B != null) {
+                B.getRow(i, rowB);
+            }
+
+            op.apply(row, rowB, row, 0, row.length);
+
+            x.setRow(i, row);
+        }
+
+        return x;
+    }
+
+    /**
+     * Product of matrices stored by rows in arrays, c = a * b. The rows of c
+     * are computed in parallel, and each task multiplies blocks of rows and
+     * columns of b that fit in the cache. Every element of c is accumulated in
+     * the order of k, so the result does not depend on the blocks or the
+     * number of threads.
+     *
+     * @param a The m-by-q matrix
+     * @param b The q-by-p matrix
+     * @param c The m-by-p matrix, initialized to 0
+     * @param m The number of rows of a
+     * @param q The number of columns of a
+     * @param p The number of columns of b
+     */
+    private static void gemm(final double[] a, final double[] b, final double[] c,
+            int m, final int q, final int p) {
+
+        int grain = Math.max(1, PARALLEL_GRAIN / Math.max(1, q * p));
+
+        forRange(m, grain, new RangeKernel() {
+            @Override
+            void run(int from, int to) {
+
+                for (int k0 = 0; k0 < q; k0 += GEMM_K_BLOCK) {
+
+                    int k1 = Math.min(q, k0 + GEMM_K_BLOCK);
+
+                    for (int j0 = 0; j0 < p; j0 += GEMM_J_BLOCK) {
+
+                        int j1 = Math.min(p, j0 + GEMM_J_BLOCK);
+
+                        for (int i = from; i < to; i++) {
+
+                            int ci = i * p;
+                            int ai = i * q;
+
+                            for (int k = k0; k < k1; k++) {
+
+                                double aik = a[ai + k];
+                                int bk = k * p;
+
+                                for (int j = j0; j < j1; j++) {
+                                    c[ci + j] += aik * b[bk + j];
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Transpose of a matrix stored by rows in an array, by tiles that are
+     * computed in parallel.
+     *
+     * @param a The m-by-q matrix
+     * @param x The q-by-m matrix
+     * @param m The number of rows of a
+     * @param q The number of columns of a
+     */
+    private static void transpose(final double[] a, final double[] x,
+            final int m, final int q) {
+
+        int tiles = (m + TRANSPOSE_TILE - 1) / TRANSPOSE_TILE;
+        int grain = Math.max(1, PARALLEL_GRAIN / Math.max(1, TRANSPOSE_TILE * q));
+
+        forRange(tiles, grain, new RangeKernel() {
+            @Override
+            void run(int from, int to) {
+
+                for (int i0 = from * TRANSPOSE_TILE; i0 < Math.min(m, to * TRANSPOSE_TILE); i0 += TRANSPOSE_TILE) {
+
+                    int i1 = Math.min(m, i0 + TRANSPOSE_TILE);
+
+                    for (int j0 = 0; j0 < q; j0 += TRANSPOSE_TILE) {
+
+                        int j1 = Math.min(q, j0 + TRANSPOSE_TILE);
+
+                        for (int i = i0; i < i1; i++) {
+                            for (int j = j0; j < j1; j++) {
+                                x[j * m + i] = a[i * q + j];
+                            }
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs the kernel over [0, size). If there is more than one range of the
+     * given grain, the ranges are computed on the kernel pool.
+     *
+     * @param size The size of the range
+     * @param grain The minimum size of the range of a task
+     * @param kernel The kernel
+     */
+    private static void forRange(int size, int grain, RangeKernel kernel) {
+
+        if (size <= grain) {
+            kernel.run(0, size);
+            return;
+        }
+
+        getKernelPool().invoke(new RangeTask(kernel, 0, size, grain));
+    }
+
+    private static synchronized ForkJoinPool getKernelPool() {
+
+        if (kernelPool == null) {
+            kernelPool = new ForkJoinPool();
+        }
+
+        return kernelPool;
+    }
+
+    /**
+     * Kernel that computes a range of a parallel operation.
+     */
+    private abstract static class RangeKernel {
+
+        abstract void run(int from, int to);
+    }
+
+    /**
+     * Fork-join task that splits a range until it reaches the grain.
+     */
+    private static class RangeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final RangeKernel kernel;
+
+        private final int from;
+
+        private final int to;
+
+        private final int grain;
+
+        RangeTask(RangeKernel kernel, int from, int to, int grain) {
+            this.kernel = kernel;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from > grain) {
+
+                int middle = (from + to) >>> 1;
+
+                invokeAll(new RangeTask(kernel, from, middle, grain),
+                        new RangeTask(kernel, middle, to, grain));
+                return;
+            }
+
+            kernel.run(from, to);
+        }
+    }
+
     /**
      * Matrix trace.
      *
@@ -1338,10 +1753,15 @@ public class Matrix {
 
             a = new Matrix(m, n, overFile);
 
+            double[] row = new double[n];
+
             for (int i = 0; i < m; i++) {
+
                 for (int j = 0; j < n; j++) {
-                    a.set(i, j, Math.random());
+                    row[j] = Math.random();
                 }
+
+                a.setRow(i, row);
             }
 
         } catch (Exception ex) {
@@ -1368,10 +1788,8 @@ public class Matrix {
 
             a = new Matrix(m, n, overFile);
 
-            for (int i = 0; i < m; i++) {
-                for (int j = 0; j < n; j++) {
-                    a.set(i, j, (i == j ? 1.0 : 0.0));
-                }
+            for (int i = 0; i < Math.min(m, n); i++) {
+                a.set(i, i, 1.0);
             }
 
         } catch (Exception ex) {
@@ -1395,9 +1813,12 @@ public class Matrix {
     public void print(PrintWriter output, NumberFormat format, int width) {
         output.println();  // start on new line.
 
+        double[] row = new double[getColumnDimension()];
+
         for (int i = 0; i < getRowDimension(); i++) {
+            getRow(i, row);
             for (int j = 0; j < getColumnDimension(); j++) {
-                String s = format.format(get(i, j)); // format the number
+                String s = format.format(row[j]); // format the number
                 int padding = Math.max(1, width - s.length()); // At _least_ 1 space
                 for (int k = 0; k < padding; k++) {
                     output.print(' ');
@@ -24,19 +24,29 @@ import java.util.logging.Logger;
  * specific case of that the elements change their position and it is necessary to
  * preserve their original position.
  *
+ * The removed elements are marked as tombstones instead of shifting the
+ * remaining indexes. A Fenwick tree counts the remaining elements, so an
+ * element is removed and the stored index of a position is found in
+ * O(log n). The remaining elements keep their relative order.
+ *
  * @author Oscar Gabriel Reyes Pupo
  * @author Eduardo Perez Perdomo
  */
 public class IndexValueContainer {
 
     /**
-     * It stores a pair of values that represents the new index (key) of the
-     * current index of the array, and the old index (value) of an instance with
-     * the values stored in the array. It accelerates the process to obtain the
-     * similarity value between two instances.
+     * It stores the index of each instance in the arrays of values, in the
+     * original order. The removed instances are marked with -1, the position
+     * of a remaining instance is the number of remaining instances before it.
      */
     protected int[] indexesChanges;
 
+    /**
+     * Fenwick tree with the number of remaining instances of the slots of
+     * indexesChanges. It is built on demand.
+     */
+    private int[] remaining;
+
     /**
      * Keep the current valid number of elements.
      */
@@ -59,25 +69,98 @@ public class IndexValueContainer {
     protected double maxAcumulativeValue;
 
     /**
-     * Delete the index of a instance, updates the remaining indexes
+     * Initializes the indexes, in the begining the index and the value are
+     * equals.
+     *
+     * @param numElements The number of elements
+     */
+    protected void initIndexes(int numElements) {
+
+        indexesChanges = new int[numElements];
+
+        for (int i = 0; i < numElements; i++) {
+            indexesChanges[i] = i;
+        }
+
+        size = numElements;
+        remaining = null;
+    }
+
+    /**
+     * Builds the Fenwick tree of the remaining instances in O(n).
+     */
+    private void buildRemaining() {
+
+        int n = indexesChanges.length;
+
+        remaining = new int[n + 1];
+
+        for (int i = 1; i <= n; i++) {
+
+            if (indexesChanges[i - 1] >= 0) {
+                ++remaining[i];
+            }
+
+            int parent = i + (i & -i);
+
+            if (parent <= n) {
+                remaining[parent] += remaining[i];
+            }
+        }
+    }
+
+    /**
+     * Returns the slot of indexesChanges of a position, the slot of the
+     * (pos + 1)-th remaining instance.
+     *
+     * @param pos The position
+     * @return The slot
+     */
+    private int slot(int pos) {
+
+        if (remaining == null || remaining.length != indexesChanges.length + 1) {
+            buildRemaining();
+        }
+
+        int n = indexesChanges.length;
+        int slot = 0;
+        int rank = pos + 1;
+
+        for (int step = Integer.highestOneBit(Math.max(1, n)); step > 0; step >>= 1) {
+
+            int next = slot + step;
+
+            if (next <= n && remaining[next] < rank) {
+                slot = next;
+                rank -= remaining[next];
+            }
+        }
+
+        return slot;
+    }
+
+    /**
+     * Delete the index of a instance, the positions of the next instances
+     * decrease by one.
      *
      * @param pos The index of the instance to delete
      */
     public void deleteIndex(int pos) {
-        
+
         if (!updateMaxAcumulativeValue) {
             updateMaxAcumulativeValue = true;
         }
 
-        indexesChanges[pos] = -1;
-        int temp;
-        int next;
-        while ((next = pos + 1) < size) {
-            temp = indexesChanges[pos];
-            indexesChanges[pos] = indexesChanges[next];
-            indexesChanges[next] = temp;
-            ++pos;
+        checkPosition(pos);
+
+        int slot = slot(pos);
+
+        indexesChanges[slot] = -1;
+
+        for (int i = slot + 1; i < remaining.length; i += i & -i) {
+            --remaining[i];
         }
+
         --size;
     }
 
@@ -88,14 +171,18 @@ public class IndexValueContainer {
      * @return the actual pos.
      */
     public int index(int pos) {
-        if (pos >= size) {
+        checkPosition(pos);
+        return indexesChanges[slot(pos)];
+    }
+
+    private void checkPosition(int pos) {
+        if (pos < 0 || pos >= size) {
             try {
                 throw new Exception("Value 'pos' out of range");
             } catch (Exception ex) {
                 Logger.getLogger(IndexValueContainer.class.getName()).log(Level.SEVERE, null, ex);
             }
         }
-        return indexesChanges[pos];
     }
 
     /**
@@ -123,29 +210,45 @@ public class IndexValueContainer {
      * The elements are located in descendant order.
      *
      * @param removedIndexes The indexes of the removed instances.
-     * @return An arraylist with the elements in order.
+     * @return An array with the elements in order.
      */
-    protected ArrayList<Container> obtainOrdered(ArrayList<Integer> removedIndexes) {
-        ArrayList<Container> ordered = new ArrayList<Container>();
+    protected int[] obtainOrdered(ArrayList<Integer> removedIndexes) {
+        int[] ordered = new int[removedIndexes.size()];
+        int pos = 0;
 
         for (int index : removedIndexes) {
-            ordered.add(new Container(index, index));
+            ordered[pos++] = index;
         }
 
         //To order the array of bigger to smaller
-        OrderUtils.mergeSort(ordered, true);
+        OrderUtils.sort(ordered, true);
         return ordered;
     }
 
     /**
      * It stores a pair of values that represents the new index (key) with the
      * current index of the array, and the old index (value) of an instance with
-     * the values stored in the array.
+     * the values stored in the array. The removed instances are at the end
+     * with the value -1.
      * 
-     * @return the indexes changes.
+     * @return A compacted copy of the indexes changes.
      */
     public int[] getIndexesChanges() {
-        return indexesChanges;
+
+        int[] compacted = new int[indexesChanges.length];
+        int pos = 0;
+
+        for (int index : indexesChanges) {
+            if (index >= 0) {
+                compacted[pos++] = index;
+            }
+        }
+
+        for (int i = pos; i < compacted.length; i++) {
+            compacted[i] = -1;
+        }
+
+        return compacted;
     }
 
     /**
@@ -156,13 +259,14 @@ public class IndexValueContainer {
      * @param indexesChanges The indexes that were changed.
      */
     public void setIndexesChanges(int[] indexesChanges) {
-        this.indexesChanges = indexesChanges;
+        this.indexesChanges = indexesChanges.clone();
         size = indexesChanges.length;
         for (int i : indexesChanges) {
             if (i < 0) {
                 --size;
             }
         }
+        remaining = null;
     }
 
     /**
@@ -201,8 +305,12 @@ public class IndexValueContainer {
     public double getMaxAcumulativeValue() {
         if (updateMaxAcumulativeValue) {
             updateMaxAcumulativeValue = false;
-            int pos = OrderUtils.maxIndex(acumulativeValue, 0, size);
-            maxAcumulativeValue = acumulativeValue[pos];
+            maxAcumulativeValue = Double.NEGATIVE_INFINITY;
+            for (int index : indexesChanges) {
+                if (index >= 0 && maxAcumulativeValue < acumulativeValue[index]) {
+                    maxAcumulativeValue = acumulativeValue[index];
+                }
+            }
         }
         return maxAcumulativeValue;
     }
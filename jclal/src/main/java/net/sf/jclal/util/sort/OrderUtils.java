@@ -15,6 +15,7 @@
  */
 package net.sf.jclal.util.sort;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -306,4 +307,298 @@ public class OrderUtils {
         } while (j != k);
     }
 
+    /**
+     * Sorts an array of integers. O(NlogN)
+     *
+     * @param array The array to order
+     * @param descendentOrder True if the array will be ordered in descendent
+     * order, false otherwise
+     */
+    public static void sort(int[] array, boolean descendentOrder) {
+
+        Arrays.sort(array);
+
+        if (descendentOrder) {
+            reverse(array, 0, array.length);
+        }
+    }
+
+    /**
+     * Sorts an array of doubles. O(NlogN). The NaN values are always placed at
+     * the end.
+     *
+     * @param array The array to order
+     * @param descendentOrder True if the array will be ordered in descendent
+     * order, false otherwise
+     */
+    public static void sort(double[] array, boolean descendentOrder) {
+
+        Arrays.sort(array);
+
+        if (descendentOrder) {
+
+            int end = array.length;
+
+            while (end > 0 && Double.isNaN(array[end - 1])) {
+                --end;
+            }
+
+            for (int i = 0, j = end - 1; i < j; i++, j--) {
+                double temp = array[i];
+                array[i] = array[j];
+                array[j] = temp;
+            }
+        }
+    }
+
+    /**
+     * Returns the indexes that order the array, the array is not modified.
+     * O(NlogN). The sort is stable, ties are broken by the index. The NaN
+     * values are always placed at the end.
+     *
+     * @param values The values to order
+     * @param descendentOrder True if the indexes will be ordered in descendent
+     * order of the values, false otherwise
+     * @return The indexes of the values in order
+     */
+    public static int[] argSort(double[] values, boolean descendentOrder) {
+
+        int[] indexes = new int[values.length];
+
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = i;
+        }
+
+        mergeSort(indexes, new int[indexes.length], 0, indexes.length, values, descendentOrder);
+
+        return indexes;
+    }
+
+    /**
+     * Returns the indexes that order the array, the array is not modified.
+     * O(NlogN). The sort is stable, ties are broken by the index.
+     *
+     * @param values The values to order
+     * @param descendentOrder True if the indexes will be ordered in descendent
+     * order of the values, false otherwise
+     * @return The indexes of the values in order
+     */
+    public static int[] argSort(int[] values, boolean descendentOrder) {
+
+        double[] keys = new double[values.length];
+
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = values[i];
+        }
+
+        return argSort(keys, descendentOrder);
+    }
+
+    /**
+     * Sorts a pair of arrays according to the keys. The value i is moved with
+     * the key i. O(NlogN). The sort is stable.
+     *
+     * @param keys The keys used to order
+     * @param values The values associated to the keys
+     * @param descendentOrder True if the arrays will be ordered in descendent
+     * order of the keys, false otherwise
+     */
+    public static void sort(double[] keys, int[] values, boolean descendentOrder) {
+
+        int[] order = argSort(keys, descendentOrder);
+
+        double[] keysCopy = keys.clone();
+        int[] valuesCopy = values.clone();
+
+        for (int i = 0; i < order.length; i++) {
+            keys[i] = keysCopy[order[i]];
+            values[i] = valuesCopy[order[i]];
+        }
+    }
+
+    /**
+     * Merge sort of the indexes array according to the values, from begin
+     * (inclusive) to end (exclusive).
+     */
+    private static void mergeSort(int[] indexes, int[] buffer, int begin, int end, double[] values, boolean descendentOrder) {
+
+        // small ranges are ordered by insertion
+        if (end - begin <= 16) {
+
+            for (int i = begin + 1; i < end; i++) {
+
+                int index = indexes[i];
+                int j = i - 1;
+
+                while (j >= begin && compare(values, indexes[j], index, descendentOrder) > 0) {
+                    indexes[j + 1] = indexes[j];
+                    --j;
+                }
+
+                indexes[j + 1] = index;
+            }
+
+            return;
+        }
+
+        int middle = (begin + end) >>> 1;
+
+        mergeSort(indexes, buffer, begin, middle, values, descendentOrder);
+        mergeSort(indexes, buffer, middle, end, values, descendentOrder);
+
+        // the halves are already in order
+        if (compare(values, indexes[middle - 1], indexes[middle], descendentOrder) <= 0) {
+            return;
+        }
+
+        System.arraycopy(indexes, begin, buffer, begin, end - begin);
+
+        int i = begin;
+        int j = middle;
+
+        for (int k = begin; k < end; k++) {
+
+            if (j >= end || (i < middle && compare(values, buffer[i], buffer[j], descendentOrder) <= 0)) {
+                indexes[k] = buffer[i++];
+            } else {
+                indexes[k] = buffer[j++];
+            }
+        }
+    }
+
+    /**
+     * Reverses the array from begin (inclusive) to end (exclusive).
+     */
+    private static void reverse(int[] array, int begin, int end) {
+
+        for (int i = begin, j = end - 1; i < j; i++, j--) {
+            int temp = array[i];
+            array[i] = array[j];
+            array[j] = temp;
+        }
+    }
+
+    /**
+     * Selects the indexes of the k best values of the array by means of a
+     * bounded heap. O(NlogK), it does not allocate an object per value.
+     *
+     * Ties are broken by the index, the lower index goes first, i.e. the
+     * result is the same that the first k elements of a stable sort. The NaN
+     * values are always placed at the end.
+     *
+     * @param values The values to analyze
+     * @param k The number of indexes to select
+     * @param descendentOrder True if the k greatest values are selected, false
+     * if the k smallest values are selected
+     * @return The indexes of the selected values, ordered from the best to the
+     * worst
+     */
+    public static int[] topK(double[] values, int k, boolean descendentOrder) {
+
+        k = Math.max(0, Math.min(k, values.length));
+
+        // the root of the heap stores the worst of the selected indexes
+        int[] heap = new int[k];
+        int size = 0;
+
+        for (int i = 0; i < values.length; i++) {
+
+            if (size < k) {
+
+                heap[size] = i;
+                siftUp(heap, size++, values, descendentOrder);
+
+            } else if (k > 0 && compare(values, i, heap[0], descendentOrder) < 0) {
+
+                heap[0] = i;
+                siftDown(heap, 0, size, values, descendentOrder);
+            }
+        }
+
+        // the worst index is extracted first
+        int[] selected = new int[size];
+
+        while (size > 0) {
+
+            selected[size - 1] = heap[0];
+            heap[0] = heap[--size];
+            siftDown(heap, 0, size, values, descendentOrder);
+        }
+
+        return selected;
+    }
+
+    /**
+     * Compares two positions of the array according to the order, the ties
+     * are broken by the index.
+     *
+     * @return A negative value if the position a goes before than b
+     */
+    private static int compare(double[] values, int a, int b, boolean descendentOrder) {
+
+        double va = values[a];
+        double vb = values[b];
+
+        boolean nanA = Double.isNaN(va);
+        boolean nanB = Double.isNaN(vb);
+
+        if (nanA != nanB) {
+            return nanA ? 1 : -1;
+        }
+
+        if (!nanA && va != vb) {
+
+            if (descendentOrder) {
+                return va > vb ? -1 : 1;
+            }
+
+            return va < vb ? -1 : 1;
+        }
+
+        return a < b ? -1 : (a > b ? 1 : 0);
+    }
+
+    private static void siftUp(int[] heap, int pos, double[] values, boolean descendentOrder) {
+
+        int index = heap[pos];
+
+        while (pos > 0) {
+
+            int parent = (pos - 1) >>> 1;
+
+            if (compare(values, heap[parent], index, descendentOrder) >= 0) {
+                break;
+            }
+
+            heap[pos] = heap[parent];
+            pos = parent;
+        }
+
+        heap[pos] = index;
+    }
+
+    private static void siftDown(int[] heap, int pos, int size, double[] values, boolean descendentOrder) {
+
+        int index = heap[pos];
+        int half = size >>> 1;
+
+        while (pos < half) {
+
+            int child = 2 * pos + 1;
+
+            if (child + 1 < size && compare(values, heap[child + 1], heap[child], descendentOrder) > 0) {
+                child++;
+            }
+
+            if (compare(values, heap[child], index, descendentOrder) <= 0) {
+                break;
+            }
+
+            heap[pos] = heap[child];
+            pos = child;
+        }
+
+        heap[pos] = index;
+    }
+
 }
@@ -0,0 +1,146 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jclal.util.distancefunction;
+
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of the contingency table of the Hamming distances. The table counted
+ * with the bits of the LabelVector words must be the same than the table
+ * counted over the arrays of booleans.
+ *
+ * @author Oscar Gabriel Reyes Pupo
+ * @author Eduardo Perez Perdomo
+ */
+public class AbstractHammingDistanceTest {
+
+    /**
+     * The number of labels around the boundaries of the words.
+     */
+    private static final int[] NUM_LABELS = {1, 2, 6, 63, 64, 65, 127, 128, 129, 200};
+
+    private static boolean[] randomLabels(Random random, int numLabels) {
+
+        boolean[] labels = new boolean[numLabels];
+
+        for (int l = 0; l < numLabels; l++) {
+            labels[l] = random.nextBoolean();
+        }
+
+        return labels;
+    }
+
+    private static double[] table(AbstractHammingDistance distance) {
+        return new double[]{distance.a, distance.b, distance.c, distance.d, distance.numLabels};
+    }
+
+    @Test
+    public void testContingencyTableMatchesBooleanArrays() {
+
+        Random random = new Random(1);
+
+        AbstractHammingDistance distance = new ClassicalHammingDistance();
+
+        for (int numLabels : NUM_LABELS) {
+
+            for (int test = 0; test < 50; test++) {
+
+                boolean[] i1 = randomLabels(random, numLabels);
+                boolean[] i2 = randomLabels(random, numLabels);
+
+                distance.contingencyTable(i1, i2);
+
+                double[] expected = table(distance);
+
+                distance.contingencyTable(new LabelVector(i1), new LabelVector(i2));
+
+                assertArrayEquals(expected, table(distance), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testDistancesMatchBooleanArrays() {
+
+        Random random = new Random(2);
+
+        AbstractHammingDistance[] distances = {new ClassicalHammingDistance(),
+            new EntropicDistance()};
+
+        for (AbstractHammingDistance distance : distances) {
+
+            for (int numLabels : NUM_LABELS) {
+
+                boolean[] i1 = randomLabels(random, numLabels);
+                boolean[][] others = new boolean[20][];
+
+                double[] expected = new double[others.length];
+
+                for (int i = 0; i < others.length; i++) {
+
+                    others[i] = randomLabels(random, numLabels);
+
+                    expected[i] = distance.distance(i1, others[i]);
+
+                    assertEquals(expected[i], distance.distance(new LabelVector(i1),
+                            new LabelVector(others[i])), 0);
+                }
+
+                assertArrayEquals(expected, distance.distances(i1, others), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testLabelVectorKeepsTheLabels() {
+
+        Random random = new Random(3);
+
+        for (int numLabels : NUM_LABELS) {
+
+            boolean[] labels = randomLabels(random, numLabels);
+
+            LabelVector vector = new LabelVector(labels);
+
+            int cardinality = 0;
+
+            for (int l = 0; l < numLabels; l++) {
+
+                assertEquals(labels[l], vector.get(l));
+
+                if (labels[l]) {
+                    ++cardinality;
+                }
+            }
+
+            assertEquals(numLabels, vector.getNumLabels());
+            assertEquals(cardinality, vector.cardinality());
+            assertEquals(numLabels, vector.toBooleanArray().length);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testClassicalHammingRejectsDifferentLengths() {
+        new ClassicalHammingDistance().distance(new LabelVector(64), new LabelVector(65));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEntropicRejectsDifferentLengths() {
+        new EntropicDistance().distance(new LabelVector(3), new LabelVector(4));
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jclal.util.distancefunction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SparseInstance;
+import weka.core.Utils;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of CosineDistance. The distances computed with the compiled
+ * instances must be the same than the distances of the original formula,
+ * that visits the attributes of the two instances one by one.
+ *
+ * @author Oscar Gabriel Reyes Pupo
+ * @author Eduardo Perez Perdomo
+ */
+public class CosineDistanceTest {
+
+    private static final double DELTA = 1e-12;
+
+    private static Instances randomInstances(Random random, int numInstances, boolean sparse) {
+
+        ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+
+        attributes.add(new Attribute("num0"));
+        attributes.add(new Attribute("nom", Arrays.asList("a", "b", "c")));
+        attributes.add(new Attribute("bin01", Arrays.asList("0", "1")));
+        attributes.add(new Attribute("num1"));
+        attributes.add(new Attribute("bin10", Arrays.asList("1", "0")));
+        attributes.add(new Attribute("class", Arrays.asList("x", "y")));
+
+        Instances instances = new Instances("random", attributes, numInstances);
+
+        instances.setClassIndex(attributes.size() - 1);
+
+        for (int i = 0; i < numInstances; i++) {
+
+            double[] values = new double[attributes.size()];
+
+            for (int a = 0; a < values.length; a++) {
+
+                Attribute attribute = attributes.get(a);
+
+                if (attribute.isNumeric()) {
+                    //some zeros, so the sparse instances omit values
+                    values[a] = random.nextInt(4) == 0 ? 0 : random.nextDouble() * 5 - 2;
+                } else {
+                    values[a] = random.nextInt(attribute.numValues());
+                }
+
+                if (a != instances.classIndex() && random.nextInt(10) == 0) {
+                    values[a] = Utils.missingValue();
+                }
+            }
+
+            Instance instance = new DenseInstance(1.0, values);
+
+            instances.add(sparse ? new SparseInstance(instance) : instance);
+        }
+
+        return instances;
+    }
+
+    /**
+     * The original local similarity, that checks the attribute for each pair
+     * of values.
+     */
+    private static double localSimilarity(Instances data, double[][] ranges,
+            boolean dontNormalize, int index, double val1, double val2) {
+
+        Attribute attribute = data.attribute(index);
+
+        if (Utils.isMissingValue(val1) || Utils.isMissingValue(val2)) {
+            return 0;
+        }
+
+        if (attribute.isNumeric()) {
+
+            if (dontNormalize) {
+                return val1 * val2;
+            }
+
+            return norm(ranges, index, val1) * norm(ranges, index, val2);
+        }
+
+        if ((int) val1 != (int) val2) {
+            return 0;
+        }
+
+        if (attribute.numValues() == 2
+                && ((attribute.value(0).equals("0") && attribute.value(1).equals("1"))
+                || (attribute.value(0).equals("1") && attribute.value(1).equals("0")))) {
+            return attribute.value((int) val1).equals("1") ? 1 : 0;
+        }
+
+        return 1;
+    }
+
+    private static double norm(double[][] ranges, int index, double value) {
+
+        double min = ranges[index][CosineDistance.R_MIN];
+        double max = ranges[index][CosineDistance.R_MAX];
+
+        if (Double.isNaN(min) || max == min) {
+            return 0;
+        }
+
+        return (value - min) / ranges[index][CosineDistance.R_WIDTH];
+    }
+
+    /**
+     * The original formula, over the stored values of the two instances.
+     */
+    private static double reference(Instances data, double[][] ranges, boolean dontNormalize,
+            Instance first, Instance second) {
+
+        int numAttributes = data.numAttributes();
+
+        double similarity = 0, norm2First = 0, norm2Second = 0;
+
+        for (int p1 = 0, p2 = 0; p1 < first.numValues() || p2 < second.numValues();) {
+
+            int firstI = p1 < first.numValues() ? first.index(p1) : numAttributes;
+            int secondI = p2 < second.numValues() ? second.index(p2) : numAttributes;
+
+            if (firstI == data.classIndex()) {
+                p1++;
+                continue;
+            }
+
+            if (secondI == data.classIndex()) {
+                p2++;
+                continue;
+            }
+
+            if (firstI == secondI) {
+
+                double v1 = first.valueSparse(p1++);
+                double v2 = second.valueSparse(p2++);
+
+                similarity += localSimilarity(data, ranges, dontNormalize, firstI, v1, v2);
+                norm2First += localSimilarity(data, ranges, dontNormalize, firstI, v1, v1);
+                norm2Second += localSimilarity(data, ranges, dontNormalize, secondI, v2, v2);
+
+            } else if (firstI > secondI) {
+
+                double v2 = second.valueSparse(p2++);
+
+                similarity += localSimilarity(data, ranges, dontNormalize, secondI, 0, v2);
+                norm2Second += localSimilarity(data, ranges, dontNormalize, secondI, v2, v2);
+
+            } else {
+
+                double v1 = first.valueSparse(p1++);
+
+                similarity += localSimilarity(data, ranges, dontNormalize, firstI, v1, 0);
+                norm2First += localSimilarity(data, ranges, dontNormalize, firstI, v1, v1);
+            }
+        }
+
+        return 1 - similarity / Math.sqrt(norm2First * norm2Second);
+    }
+
+    private static void assertSameDistances(CosineDistance distance, Instances data,
+            Instances instances) throws Exception {
+
+        for (int i = 0; i < instances.numInstances(); i++) {
+
+            for (int j = 0; j < instances.numInstances(); j++) {
+
+                Instance first = instances.instance(i);
+                Instance second = instances.instance(j);
+
+                double expected = reference(data, distance.getRanges(),
+                        distance.getDontNormalize(), first, second);
+
+                assertEquals(expected, distance.distance(first, second), DELTA);
+            }
+        }
+    }
+
+    @Test
+    public void testDenseInstancesMatchTheOriginalFormula() throws Exception {
+
+        Random random = new Random(1);
+
+        for (int test = 0; test < 10; test++) {
+
+            Instances instances = randomInstances(random, 2 + random.nextInt(40), false);
+
+            CosineDistance distance = new CosineDistance(instances);
+
+            assertSameDistances(distance, instances, instances);
+        }
+    }
+
+    @Test
+    public void testSparseInstancesMatchTheOriginalFormula() throws Exception {
+
+        Random random = new Random(2);
+
+        for (int test = 0; test < 10; test++) {
+
+            Instances instances = randomInstances(random, 2 + random.nextInt(40), true);
+
+            CosineDistance distance = new CosineDistance(instances);
+
+            assertSameDistances(distance, instances, instances);
+        }
+    }
+
+    @Test
+    public void testDontNormalizeMatchesTheOriginalFormula() throws Exception {
+
+        Instances instances = randomInstances(new Random(3), 30, false);
+
+        CosineDistance distance = new CosineDistance(instances);
+
+        assertSameDistances(distance, instances, instances);
+
+        distance.setDontNormalize(true);
+
+        assertSameDistances(distance, instances, instances);
+
+        distance.setDontNormalize(false);
+
+        assertSameDistances(distance, instances, instances);
+    }
+
+    @Test
+    public void testCompiledInstancesAreForgottenBySetInstances() throws Exception {
+
+        Random random = new Random(4);
+
+        Instances instances = randomInstances(random, 30, false);
+
+        CosineDistance distance = new CosineDistance(instances);
+
+        assertSameDistances(distance, instances, instances);
+
+        //other ranges, the same instance objects are asked again
+        Instances other = randomInstances(random, 30, false);
+
+        for (int i = 0; i < other.numInstances(); i++) {
+            other.instance(i).setValue(0, other.instance(i).value(0) * 10);
+        }
+
+        distance.setInstances(other);
+
+        assertSameDistances(distance, other, instances);
+    }
+
+    @Test
+    public void testCompiledInstancesAreForgottenByUpdate() throws Exception {
+
+        Random random = new Random(5);
+
+        Instances instances = randomInstances(random, 30, false);
+
+        CosineDistance distance = new CosineDistance(instances);
+
+        assertSameDistances(distance, instances, instances);
+
+        //an instance out of the ranges
+        Instance outlier = (Instance) instances.instance(0).copy();
+
+        outlier.setValue(0, 100);
+        outlier.setValue(3, -100);
+
+        distance.update(outlier);
+
+        assertSameDistances(distance, instances, instances);
+    }
+}
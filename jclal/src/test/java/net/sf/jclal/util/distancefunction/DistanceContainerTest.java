@@ -0,0 +1,144 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jclal.util.distancefunction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+import org.junit.Test;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.EuclideanDistance;
+import weka.core.Instances;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of the removal of instances from DistanceContainer. A batch removed
+ * with updateIndexes must leave the same accumulative values than removing
+ * the instances one by one.
+ *
+ * @author Oscar Gabriel Reyes Pupo
+ * @author Eduardo Perez Perdomo
+ */
+public class DistanceContainerTest {
+
+    private static Instances randomInstances(Random random, int numInstances) {
+
+        ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+
+        for (int a = 0; a < 3; a++) {
+            attributes.add(new Attribute("a" + a));
+        }
+
+        Instances instances = new Instances("random", attributes, numInstances);
+
+        for (int i = 0; i < numInstances; i++) {
+
+            double[] values = new double[attributes.size()];
+
+            for (int a = 0; a < values.length; a++) {
+                values[a] = random.nextDouble();
+            }
+
+            instances.add(new DenseInstance(1.0, values));
+        }
+
+        return instances;
+    }
+
+    private static DistanceContainer newContainer(Instances instances) throws Exception {
+
+        EuclideanDistance distance = new EuclideanDistance();
+
+        distance.setInstances(instances);
+
+        return new DistanceContainer(instances, distance, false);
+    }
+
+    @Test
+    public void testBatchRemovalMatchesOneByOne() throws Exception {
+
+        Random random = new Random(1);
+
+        for (int test = 0; test < 20; test++) {
+
+            Instances instances = randomInstances(random, 2 + random.nextInt(60));
+
+            DistanceContainer batch = newContainer(instances);
+
+            DistanceContainer oneByOne = newContainer(instances);
+
+            while (batch.getSize() > 0) {
+
+                ArrayList<Integer> removed = new ArrayList<Integer>();
+
+                for (int pos = 0; pos < batch.getSize(); pos++) {
+                    if (random.nextInt(3) == 0) {
+                        removed.add(pos);
+                    }
+                }
+
+                batch.updateIndexes(removed);
+
+                // from the biggest position, so the others do not change
+                ArrayList<Integer> ordered = new ArrayList<Integer>(removed);
+
+                Collections.sort(ordered, Collections.reverseOrder());
+
+                for (int pos : ordered) {
+                    oneByOne.updateIndex(pos);
+                }
+
+                assertEquals(oneByOne.getSize(), batch.getSize());
+
+                for (int pos = 0; pos < batch.getSize(); pos++) {
+                    assertEquals(oneByOne.index(pos), batch.index(pos));
+                    assertEquals(oneByOne.getAcumulativeValue(pos),
+                            batch.getAcumulativeValue(pos), 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAcumulativeValuesAfterRemoval() throws Exception {
+
+        Instances instances = randomInstances(new Random(2), 30);
+
+        DistanceContainer container = newContainer(instances);
+
+        ArrayList<Integer> removed = new ArrayList<Integer>();
+
+        removed.add(3);
+        removed.add(17);
+        removed.add(0);
+        removed.add(29);
+
+        container.updateIndexes(removed);
+
+        // the value of each remaining instance is the sum of its distances to
+        // the other remaining instances
+        for (int pos = 0; pos < container.getSize(); pos++) {
+
+            double expected = 0;
+
+            for (int other = 0; other < container.getSize(); other++) {
+                expected += container.getDistance(pos, other);
+            }
+
+            assertEquals(expected, container.getAcumulativeValue(pos), 1e-9);
+        }
+    }
+}
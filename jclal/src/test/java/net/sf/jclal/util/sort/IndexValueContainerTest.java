@@ -0,0 +1,210 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jclal.util.sort;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of the Fenwick tree of IndexValueContainer. The indexes must be the
+ * same than the indexes of the former implementation, that shifted the
+ * remaining indexes when an index was deleted.
+ *
+ * @author Oscar Gabriel Reyes Pupo
+ * @author Eduardo Perez Perdomo
+ */
+public class IndexValueContainerTest {
+
+    /**
+     * The former implementation: the remaining indexes are shifted and the
+     * deleted ones are moved to the end with the value -1.
+     */
+    private static class ShiftingIndexes {
+
+        private final int[] indexesChanges;
+
+        private int size;
+
+        ShiftingIndexes(int numElements) {
+
+            indexesChanges = new int[numElements];
+
+            for (int i = 0; i < numElements; i++) {
+                indexesChanges[i] = i;
+            }
+
+            size = numElements;
+        }
+
+        void deleteIndex(int pos) {
+
+            for (int i = pos; i < size - 1; i++) {
+                indexesChanges[i] = indexesChanges[i + 1];
+            }
+
+            indexesChanges[--size] = -1;
+        }
+
+        int index(int pos) {
+            return indexesChanges[pos];
+        }
+    }
+
+    private static IndexValueContainer newContainer(int numElements) {
+
+        IndexValueContainer container = new IndexValueContainer();
+
+        container.initIndexes(numElements);
+
+        container.acumulativeValue = new double[numElements];
+
+        for (int i = 0; i < numElements; i++) {
+            container.acumulativeValue[i] = i;
+        }
+
+        return container;
+    }
+
+    private static void assertSameIndexes(ShiftingIndexes expected, IndexValueContainer actual) {
+
+        assertEquals(expected.size, actual.getSize());
+
+        for (int pos = 0; pos < expected.size; pos++) {
+            assertEquals(expected.index(pos), actual.index(pos));
+        }
+
+        assertArrayEquals(expected.indexesChanges, actual.getIndexesChanges());
+    }
+
+    @Test
+    public void testDeleteIndexMatchesShiftingSemantics() {
+
+        Random random = new Random(1);
+
+        for (int test = 0; test < 200; test++) {
+
+            int numElements = 1 + random.nextInt(70);
+
+            ShiftingIndexes expected = new ShiftingIndexes(numElements);
+
+            IndexValueContainer actual = newContainer(numElements);
+
+            assertSameIndexes(expected, actual);
+
+            while (expected.size > 0) {
+
+                int pos = random.nextInt(expected.size);
+
+                expected.deleteIndex(pos);
+                actual.deleteIndex(pos);
+
+                assertSameIndexes(expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void testDeleteOrderedBatchesMatchesShiftingSemantics() {
+
+        Random random = new Random(2);
+
+        for (int test = 0; test < 200; test++) {
+
+            int numElements = 1 + random.nextInt(100);
+
+            ShiftingIndexes expected = new ShiftingIndexes(numElements);
+
+            IndexValueContainer actual = newContainer(numElements);
+
+            while (expected.size > 0) {
+
+                // a batch of distinct positions, deleted from the biggest one
+                ArrayList<Integer> batch = new ArrayList<Integer>();
+
+                for (int pos = 0; pos < expected.size; pos++) {
+                    if (random.nextInt(4) == 0) {
+                        batch.add(pos);
+                    }
+                }
+
+                for (int pos : actual.obtainOrdered(batch)) {
+                    expected.deleteIndex(pos);
+                    actual.deleteIndex(pos);
+                }
+
+                assertSameIndexes(expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void testAcumulativeValuesFollowTheIndexes() {
+
+        IndexValueContainer container = newContainer(6);
+
+        container.deleteIndex(1);
+        container.deleteIndex(3);
+
+        // remaining original indexes: 0, 2, 3, 5
+        assertEquals(0, container.getAcumulativeValue(0), 0);
+        assertEquals(2, container.getAcumulativeValue(1), 0);
+        assertEquals(3, container.getAcumulativeValue(2), 0);
+        assertEquals(5, container.getAcumulativeValue(3), 0);
+
+        container.setAcumulativeValue(2, 10);
+
+        assertEquals(10, container.acumulativeValue[3], 0);
+
+        // the removed instances are not considered
+        container.acumulativeValue[4] = 100;
+
+        assertEquals(10, container.getMaxAcumulativeValue(), 0);
+    }
+
+    @Test
+    public void testSetIndexesChangesRestoresTheIndexes() {
+
+        IndexValueContainer container = newContainer(5);
+
+        container.deleteIndex(0);
+        container.deleteIndex(2);
+
+        int[] saved = container.getIndexesChanges();
+
+        assertArrayEquals(new int[]{1, 2, 4, -1, -1}, saved);
+
+        IndexValueContainer restored = newContainer(5);
+
+        restored.setIndexesChanges(saved);
+
+        assertEquals(3, restored.getSize());
+
+        List<Integer> indexes = new ArrayList<Integer>();
+
+        for (int pos = 0; pos < restored.getSize(); pos++) {
+            indexes.add(restored.index(pos));
+        }
+
+        assertEquals("[1, 2, 4]", indexes.toString());
+
+        restored.deleteIndex(1);
+
+        assertArrayEquals(new int[]{1, 4, -1, -1, -1}, restored.getIndexesChanges());
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.jclal.util.sort;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the primitive ordering kernels of OrderUtils. The batch modes
+ * rely on the ties being broken by the lower index, as the stable merge sort
+ * of Containers does.
+ *
+ * @author Oscar Gabriel Reyes Pupo
+ * @author Eduardo Perez Perdomo
+ */
+public class OrderUtilsTest {
+
+    /**
+     * Random values with many ties, and NaN values if required.
+     */
+    private static double[] randomValues(Random random, int size, boolean nan) {
+
+        double[] values = new double[size];
+
+        for (int i = 0; i < size; i++) {
+            values[i] = nan && random.nextInt(8) == 0 ? Double.NaN : random.nextInt(6);
+        }
+
+        return values;
+    }
+
+    /**
+     * The indexes in the order of the stable merge sort of Containers.
+     */
+    private static int[] containerOrder(double[] values, boolean descendentOrder) {
+
+        List<Container> containers = new ArrayList<Container>();
+
+        for (int i = 0; i < values.length; i++) {
+            containers.add(new Container<Integer>(values[i], i));
+        }
+
+        OrderUtils.mergeSort(containers, descendentOrder);
+
+        int[] order = new int[values.length];
+
+        for (int i = 0; i < order.length; i++) {
+            order[i] = (Integer) containers.get(i).getValue();
+        }
+
+        return order;
+    }
+
+    @Test
+    public void testSortDoublesPlacesNaNAtTheEnd() {
+
+        double[] ascendent = {3, Double.NaN, 1, 2, Double.NaN, 0};
+
+        OrderUtils.sort(ascendent, false);
+
+        assertArrayEquals(new double[]{0, 1, 2, 3, Double.NaN, Double.NaN}, ascendent, 0);
+
+        double[] descendent = {3, Double.NaN, 1, 2, Double.NaN, 0};
+
+        OrderUtils.sort(descendent, true);
+
+        assertArrayEquals(new double[]{3, 2, 1, 0, Double.NaN, Double.NaN}, descendent, 0);
+    }
+
+    @Test
+    public void testSortIntegers() {
+
+        int[] ascendent = {4, -1, 7, 4, 0};
+
+        OrderUtils.sort(ascendent, false);
+
+        assertArrayEquals(new int[]{-1, 0, 4, 4, 7}, ascendent);
+
+        int[] descendent = {4, -1, 7, 4, 0};
+
+        OrderUtils.sort(descendent, true);
+
+        assertArrayEquals(new int[]{7, 4, 4, 0, -1}, descendent);
+    }
+
+    @Test
+    public void testArgSortBreaksTiesByIndex() {
+
+        double[] values = {2, 1, 2, 1, 3};
+
+        assertArrayEquals(new int[]{1, 3, 0, 2, 4}, OrderUtils.argSort(values, false));
+        assertArrayEquals(new int[]{4, 0, 2, 1, 3}, OrderUtils.argSort(values, true));
+
+        // the values are not modified
+        assertArrayEquals(new double[]{2, 1, 2, 1, 3}, values, 0);
+    }
+
+    @Test
+    public void testArgSortPlacesNaNAtTheEnd() {
+
+        double[] values = {Double.NaN, 1, Double.NaN, 0};
+
+        assertArrayEquals(new int[]{3, 1, 0, 2}, OrderUtils.argSort(values, false));
+        assertArrayEquals(new int[]{1, 3, 0, 2}, OrderUtils.argSort(values, true));
+    }
+
+    @Test
+    public void testArgSortMatchesContainerMergeSort() {
+
+        Random random = new Random(1);
+
+        for (int test = 0; test < 500; test++) {
+
+            double[] values = randomValues(random, random.nextInt(100), false);
+
+            for (boolean descendentOrder : new boolean[]{false, true}) {
+                assertArrayEquals(containerOrder(values, descendentOrder),
+                        OrderUtils.argSort(values, descendentOrder));
+            }
+        }
+    }
+
+    @Test
+    public void testArgSortIntegers() {
+
+        int[] values = {5, 2, 5, 9, 2};
+
+        assertArrayEquals(new int[]{1, 4, 0, 2, 3}, OrderUtils.argSort(values, false));
+        assertArrayEquals(new int[]{3, 0, 2, 1, 4}, OrderUtils.argSort(values, true));
+    }
+
+    @Test
+    public void testSortKeysAndValuesIsStable() {
+
+        double[] keys = {1, 0, 1, 0, 2};
+        int[] values = {10, 11, 12, 13, 14};
+
+        OrderUtils.sort(keys, values, false);
+
+        assertArrayEquals(new double[]{0, 0, 1, 1, 2}, keys, 0);
+        assertArrayEquals(new int[]{11, 13, 10, 12, 14}, values);
+
+        OrderUtils.sort(keys, values, true);
+
+        assertArrayEquals(new double[]{2, 1, 1, 0, 0}, keys, 0);
+        assertArrayEquals(new int[]{14, 10, 12, 11, 13}, values);
+    }
+
+    @Test
+    public void testTopKIsThePrefixOfTheStableOrder() {
+
+        Random random = new Random(2);
+
+        for (int test = 0; test < 2000; test++) {
+
+            double[] values = randomValues(random, random.nextInt(80), true);
+
+            int k = random.nextInt(12);
+
+            for (boolean descendentOrder : new boolean[]{false, true}) {
+
+                int[] order = OrderUtils.argSort(values, descendentOrder);
+
+                int[] expected = Arrays.copyOf(order, Math.min(k, values.length));
+
+                assertArrayEquals(expected, OrderUtils.topK(values, k, descendentOrder));
+            }
+        }
+    }
+
+    @Test
+    public void testTopKMatchesContainerMergeSort() {
+
+        Random random = new Random(3);
+
+        for (int test = 0; test < 1000; test++) {
+
+            double[] values = randomValues(random, 1 + random.nextInt(60), false);
+
+            int k = 1 + random.nextInt(10);
+
+            for (boolean descendentOrder : new boolean[]{false, true}) {
+
+                int[] order = containerOrder(values, descendentOrder);
+
+                assertArrayEquals(Arrays.copyOf(order, Math.min(k, values.length)),
+                        OrderUtils.topK(values, k, descendentOrder));
+            }
+        }
+    }
+
+    @Test
+    public void testTopKBounds() {
+
+        double[] values = {3, 1, 2};
+
+        assertEquals(0, OrderUtils.topK(values, 0, true).length);
+        assertEquals(0, OrderUtils.topK(new double[0], 5, true).length);
+        assertArrayEquals(new int[]{0, 2, 1}, OrderUtils.topK(values, 10, true));
+        assertArrayEquals(new int[]{1, 2, 0}, OrderUtils.topK(values, 10, false));
+
+        int[] best = OrderUtils.topK(new double[]{Double.NaN, 1, Double.NaN}, 2, true);
+
+        assertTrue(best[0] == 1 && best[1] == 0);
+    }
+}